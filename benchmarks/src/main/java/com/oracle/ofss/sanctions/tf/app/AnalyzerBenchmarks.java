@@ -0,0 +1,71 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The analyzer's scoring loop on in-memory inputs (no database). Scores are per run of {@code tokens} messages.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalyzerBenchmarks {
+
+    @Param({"10000"})
+    public int tokens;
+
+    @Param({"3"})
+    public int matchesPerToken;
+
+    @Param({"HEAP", "MAPPED"})
+    public String rowStore;
+
+    private BenchmarkData.AnalyzerInput input;
+    private ExecutorService executor;
+    private Properties props;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        input = BenchmarkData.analyzerInput(tokens, matchesPerToken);
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        props = new Properties();
+        props.setProperty(Constants.ROW_STORE, rowStore);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public ReportSummary scoreRun() throws IOException {
+        List<ReportRow> rows = ReportRowStore.newRowList(props);
+        try {
+            return AnalyzerMain.analyzeResults(input.tokens, input.columnNames, input.feedback,
+                    input.additionalData, "1", input.rawMessages, rows, executor).summary;
+        } finally {
+            ReportRowStore.release(rows);
+        }
+    }
+}
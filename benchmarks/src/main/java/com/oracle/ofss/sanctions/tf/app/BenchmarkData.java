@@ -0,0 +1,149 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Seeded synthetic inputs shaped like production data: multi-word watchlist names, a synonym lookup with a few
+ * thousand entries, a pacs.008-sized raw message template and WLS feedback with several matches per message.
+ */
+final class BenchmarkData {
+    static final long SEED = 20240601L;
+
+    private static final String[] SYLLABLES = {
+            "al", "an", "ar", "ba", "ben", "da", "el", "fa", "ha", "ib", "ja", "ka", "la", "ma", "mo", "na", "ol",
+            "ra", "sa", "sha", "ta", "ul", "va", "ya", "za", "ri", "ko", "mi", "no", "te"
+    };
+    private static final String[] WATCHLISTS = {"OFAC", "EU", "HMT", "UN", "WCPREM"};
+
+    private BenchmarkData() {
+    }
+
+    static String name(Random random, int words) {
+        StringBuilder name = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            if (w > 0) name.append(' ');
+            int syllables = 2 + random.nextInt(3);
+            for (int s = 0; s < syllables; s++) name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return name.toString().toUpperCase();
+    }
+
+    static List<String> names(int count, int words) {
+        Random random = new Random(SEED);
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) names.add(name(random, words));
+        return names;
+    }
+
+    /**
+     * Lookup id -> value id -> comma-separated synonyms, covering the words of {@code names} at the given rate.
+     */
+    static Map<String, Map<String, String>> synonymMap(List<String> names, int entries, double coverage) {
+        Random random = new Random(SEED + 1);
+        Map<String, Map<String, String>> synonymMap = new LinkedHashMap<>();
+        for (String lookupId : new String[]{"1", "3", "6"}) synonymMap.put(lookupId, new LinkedHashMap<>());
+        String[] lookupIds = synonymMap.keySet().toArray(new String[0]);
+        int valueId = 1;
+        for (String name : names) {
+            for (String word : name.split(" ")) {
+                if (random.nextDouble() >= coverage) continue;
+                synonymMap.get(lookupIds[random.nextInt(lookupIds.length)])
+                        .put(String.valueOf(valueId++), word + "," + name(random, 1) + "," + name(random, 1));
+            }
+        }
+        while (valueId <= entries) {
+            synonymMap.get(lookupIds[random.nextInt(lookupIds.length)])
+                    .put(String.valueOf(valueId++), name(random, 1) + "," + name(random, 1) + "," + name(random, 1));
+        }
+        return synonymMap;
+    }
+
+    static SourceInputModel sourceModel() {
+        StringBuilder raw = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Document xmlns=\"urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08\">\n<FIToFICstmrCdtTrf>\n");
+        raw.append("  <GrpHdr><MsgId>$IDEN$</MsgId><CreDtTm>2024-06-01T10:00:00</CreDtTm><NbOfTxs>1</NbOfTxs></GrpHdr>\n");
+        raw.append("  <CdtTrfTxInf>\n    <Dbtr><Nm>$NAME$</Nm><PstlAdr><Ctry>GB</Ctry></PstlAdr></Dbtr>\n");
+        for (int i = 0; i < 40; i++) {
+            raw.append("    <RmtInf><Ustrd>Invoice ").append(i).append(" settlement reference ABCDEFGHIJ").append(i).append("</Ustrd></RmtInf>\n");
+        }
+        raw.append("  </CdtTrfTxInf>\n</FIToFICstmrCdtTrf>\n</Document>");
+        Map<String, Object> additionalData = new HashMap<>();
+        additionalData.put("source", "benchmark");
+        return new SourceInputModel(raw.toString(), "TF", "GB", "O", additionalData);
+    }
+
+    /**
+     * Inputs of one analyzeResults call for {@code tokens} messages; every third message has no usable match.
+     */
+    static final class AnalyzerInput {
+        final List<Long> tokens = new ArrayList<>();
+        final Map<Long, Map<Long, Set<String>>> columnNames = new HashMap<>();
+        final Map<Long, JSONObject> feedback = new HashMap<>();
+        final Map<Long, JSONObject> additionalData = new HashMap<>();
+        final Map<Long, String> rawMessages = new HashMap<>();
+    }
+
+    static AnalyzerInput analyzerInput(int tokens, int matchesPerToken) {
+        Random random = new Random(SEED + 2);
+        AnalyzerInput input = new AnalyzerInput();
+        String raw = sourceModel().getRawMessage();
+        Map<String, Set<String>> columnSets = new HashMap<>();
+        long responseId = 1;
+        for (long token = 1; token <= tokens; token++) {
+            String uid = String.valueOf(100000 + random.nextInt(900000));
+            String watchlist = WATCHLISTS[random.nextInt(WATCHLISTS.length)];
+            String name = name(random, 3);
+            JSONObject additionalData = new JSONObject();
+            additionalData.put(Constants.UID, uid);
+            additionalData.put(Constants.WEBSERVICE, "NameAndAddress");
+            additionalData.put(Constants.WEBSERVICE_ID, "1");
+            additionalData.put(Constants.WATCHLIST_TYPE, watchlist);
+            additionalData.put(Constants.TAGNAME, "Nm");
+            additionalData.put(Constants.COLUMN, "V_NAME");
+            additionalData.put(Constants.VALUE, name);
+            additionalData.put(Constants.ORIGINAL_VALUE, name);
+            additionalData.put(Constants.MESSAGE_KEY_ADDITIONAL, "010624100000" + token);
+            additionalData.put(Constants.CED, random.nextInt(4));
+
+            JSONArray matches = new JSONArray();
+            Map<Long, Set<String>> responseColumns = new HashMap<>();
+            boolean hit = token % 3 != 0;
+            for (int m = 0; m < matchesPerToken; m++) {
+                boolean expected = hit && m == matchesPerToken - 1;
+                JSONObject match = new JSONObject();
+                match.put(Constants.MATCHED_WATCHLIST_ID, expected ? uid : String.valueOf(100000 + random.nextInt(900000)));
+                match.put(Constants.RESPONSE_ID, responseId);
+                match.put(Constants.WEBSERVICE_ID_FROM_MATCH, 1);
+                match.put("watchlistType", expected ? watchlist : WATCHLISTS[random.nextInt(WATCHLISTS.length)]);
+                match.put("tagName", "Nm,Dbtr");
+                match.put("score", 80 + random.nextInt(20));
+                matches.put(match);
+                responseColumns.put(responseId, AnalyzerMain.columnNameSet(expected ? "V_NAME,V_ALIAS" : "V_ALIAS", columnSets));
+                responseId++;
+            }
+            JSONObject feedback = new JSONObject();
+            feedback.put(Constants.MATCHES, matches);
+            feedback.put(Constants.MATCHING_STATUS, "MATCH");
+
+            input.tokens.add(token);
+            input.additionalData.put(token, additionalData);
+            input.feedback.put(token, feedback);
+            input.columnNames.put(token, responseColumns);
+            input.rawMessages.put(token, raw.replace("$NAME$", name));
+        }
+        return input;
+    }
+
+    static List<ReportRow> reportRows(int count) {
+        AnalyzerInput input = analyzerInput(count, 3);
+        return AnalyzerMain.analyzeResults(input.tokens, input.columnNames, input.feedback, input.additionalData, "1", input.rawMessages).reportRows;
+    }
+}
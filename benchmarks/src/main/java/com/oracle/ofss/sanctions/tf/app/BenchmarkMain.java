@@ -0,0 +1,138 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the benchmarks with the GC (allocation) profiler and compares the results with a recorded baseline.
+ *
+ * <pre>
+ * java -jar benchmarks.jar [-baseline] [-threshold pct] [include regex ...]
+ * </pre>
+ *
+ * Results go to {@code current.json} in the results folder (-Dbench.results, default benchmarks/results). With
+ * -baseline, or when there is no baseline yet, they become {@code baseline.json}. Otherwise each benchmark's time and
+ * allocated bytes per operation are compared with the baseline; anything more than the threshold (default 10%) worse
+ * is listed in {@code comparison.txt} and the exit code is 1.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        boolean recordBaseline = false;
+        double threshold = 10;
+        List<String> includes = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-baseline".equals(args[i])) recordBaseline = true;
+            else if ("-threshold".equals(args[i])) threshold = Double.parseDouble(args[++i]);
+            else includes.add(args[i]);
+        }
+
+        File resultsFolder = new File(System.getProperty("bench.results", "benchmarks/results"));
+        resultsFolder.mkdirs();
+        File current = new File(resultsFolder, "current.json");
+        File baseline = new File(resultsFolder, "baseline.json");
+
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(current.getPath());
+        if (includes.isEmpty()) options.include(BenchmarkMain.class.getPackage().getName() + ".*Benchmarks");
+        for (String include : includes) options.include(include);
+        new Runner(options.build()).run();
+
+        if (recordBaseline || !baseline.exists()) {
+            Files.copy(current.toPath(), baseline.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Baseline recorded: " + baseline.getPath());
+            return;
+        }
+        int regressions = compare(baseline, current, threshold, new File(resultsFolder, "comparison.txt"));
+        if (regressions > 0) System.exit(1);
+    }
+
+    /**
+     * Writes a per-benchmark comparison and returns how many benchmarks regressed beyond the threshold.
+     */
+    static int compare(File baselineFile, File currentFile, double thresholdPct, File reportFile) throws IOException {
+        Map<String, JsonNode> baseline = index(baselineFile);
+        Map<String, JsonNode> current = index(currentFile);
+        int regressions = 0;
+        try (PrintWriter report = new PrintWriter(reportFile, "UTF-8")) {
+            report.printf("%-90s %14s %14s %9s %14s %14s %9s%n", "benchmark", "base time", "time", "delta", "base B/op", "B/op", "delta");
+            for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+                JsonNode now = entry.getValue();
+                JsonNode before = baseline.get(entry.getKey());
+                if (before == null) {
+                    report.printf("%-90s %s%n", entry.getKey(), "(new, no baseline)");
+                    continue;
+                }
+                double timeDelta = delta(score(before), score(now), higherIsBetter(now));
+                double allocDelta = delta(allocation(before), allocation(now), false);
+                boolean regressed = timeDelta > thresholdPct || allocDelta > thresholdPct;
+                if (regressed) regressions++;
+                report.printf("%-90s %14.3f %14.3f %8.1f%% %14.0f %14.0f %8.1f%%%s%n", entry.getKey(), score(before), score(now), timeDelta,
+                        allocation(before), allocation(now), allocDelta, regressed ? "  REGRESSION" : "");
+            }
+            report.printf("%n%d regression(s) beyond %.1f%%%n", regressions, thresholdPct);
+        }
+        System.out.println(new String(Files.readAllBytes(reportFile.toPath()), "UTF-8"));
+        return regressions;
+    }
+
+    private static Map<String, JsonNode> index(File resultFile) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(resultFile)) {
+            StringBuilder key = new StringBuilder(result.get("benchmark").asText().replace(BenchmarkMain.class.getPackage().getName() + ".", ""));
+            JsonNode params = result.get("params");
+            if (params != null) {
+                for (Iterator<Map.Entry<String, JsonNode>> it = params.fields(); it.hasNext(); ) {
+                    Map.Entry<String, JsonNode> param = it.next();
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+                }
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+
+    private static double score(JsonNode result) {
+        return result.get("primaryMetric").get("score").asDouble();
+    }
+
+    private static boolean higherIsBetter(JsonNode result) {
+        return "thrpt".equals(result.get("mode").asText());
+    }
+
+    // Bytes allocated per operation; the metric name carries a leading middle dot in older JMH versions
+    private static double allocation(JsonNode result) {
+        JsonNode secondary = result.get("secondaryMetrics");
+        if (secondary == null) return 0;
+        for (Iterator<Map.Entry<String, JsonNode>> it = secondary.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> metric = it.next();
+            if (metric.getKey().endsWith("gc.alloc.rate.norm")) return metric.getValue().get("score").asDouble();
+        }
+        return 0;
+    }
+
+    // Percentage by which {@code now} is worse than {@code before} (negative = better)
+    private static double delta(double before, double now, boolean higherIsBetter) {
+        if (before == 0) return 0;
+        double change = (now - before) / before * 100;
+        return higherIsBetter ? -change : change;
+    }
+}
@@ -0,0 +1,214 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import org.json.JSONObject;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Round trip of {@link ExpectedOutcomeIndex}: writes plain and packed messages spread over several shards, reads them
+ * back with {@link ExpectedOutcomeIndex#additionalData} and {@link ExpectedOutcomeIndex#locate}, and reads the same
+ * entries from hand-written version 1 and 2 files. Throws on the first mismatch; needs no database.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.oracle.ofss.sanctions.tf.app.ExpectedOutcomeIndexCheck
+ * </pre>
+ */
+public class ExpectedOutcomeIndexCheck {
+
+    private static final int PLAIN_MESSAGES = 23;
+    private static final int PACKED_MESSAGES = 6;
+    private static final int SLOTS = 3;
+    private static final int ROW_LIMIT = 10;
+
+    public static void main(String[] args) throws Exception {
+        File folder = Files.createTempDirectory("expidx_check").toFile();
+        try {
+            List<SourceInputModel> messages = messages();
+            List<String> shardFiles = new ArrayList<>();
+            for (int s = 0; s < (messages.size() + ROW_LIMIT - 1) / ROW_LIMIT; s++) {
+                shardFiles.add("check_" + (s + 1) + Constants.JSON_EXT);
+            }
+            File current = new File(folder, "current");
+            current.mkdirs();
+            ExpectedOutcomeIndex.write(messages, new File(current, "check" + Constants.EXPECTED_INDEX_EXT), shardFiles, ROW_LIMIT);
+            int entries = verify(ExpectedOutcomeIndex.loadFolder(current), messages, shardFiles, ExpectedOutcomeIndex.VERSION);
+
+            for (int version = 1; version <= 2; version++) {
+                File old = new File(folder, "v" + version);
+                old.mkdirs();
+                writeOldVersion(messages, new File(old, "check" + Constants.EXPECTED_INDEX_EXT), shardFiles, version);
+                verify(ExpectedOutcomeIndex.loadFolder(old), messages, shardFiles, version);
+            }
+            System.out.println("ExpectedOutcomeIndex round trip OK: " + messages.size() + " messages, " + entries
+                    + " entries over " + shardFiles.size() + " shards, versions 1 to " + ExpectedOutcomeIndex.VERSION);
+        } finally {
+            for (File file : Files.walk(folder.toPath()).map(java.nio.file.Path::toFile).toArray(File[]::new)) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    private static List<SourceInputModel> messages() {
+        List<SourceInputModel> messages = new ArrayList<>();
+        int key = 0;
+        for (int m = 0; m < PLAIN_MESSAGES + PACKED_MESSAGES; m++) {
+            // Packed messages are interleaved with plain ones, so slots land in every shard
+            boolean packed = m % 5 == 4 && messages.stream().filter(ExpectedOutcomeIndexCheck::isPacked).count() < PACKED_MESSAGES;
+            Map<String, Object> additionalData;
+            if (packed) {
+                List<Map<String, Object>> slots = new ArrayList<>();
+                for (int k = 0; k < SLOTS; k++) {
+                    Map<String, Object> slot = expectation(++key);
+                    slot.put(Constants.SLOT, k + 1);
+                    slots.add(slot);
+                }
+                additionalData = new HashMap<>(slots.get(0));
+                additionalData.remove(Constants.SLOT);
+                additionalData.put(Constants.SLOTS, slots);
+            } else {
+                additionalData = expectation(++key);
+            }
+            messages.add(new SourceInputModel("{}", "", "", "", additionalData));
+        }
+        return messages;
+    }
+
+    private static Map<String, Object> expectation(int key) {
+        Map<String, Object> additionalData = new HashMap<>();
+        additionalData.put(Constants.MESSAGE_KEY_ADDITIONAL, "191026120000" + key);
+        additionalData.put(Constants.UID, String.valueOf(1000 + key % 7));
+        additionalData.put(Constants.COLUMN, key % 2 == 0 ? "V_NAME" : "N_UID");
+        additionalData.put(Constants.WATCHLIST_TYPE, "OFAC");
+        additionalData.put(Constants.WEBSERVICE_ID, "1");
+        additionalData.put(Constants.WEBSERVICE, "NameAndAddress");
+        additionalData.put(Constants.TAGNAME, "Nm");
+        additionalData.put(Constants.VALUE, "Jöhn Smith " + key);
+        additionalData.put(Constants.ORIGINAL_VALUE, "John Smith " + key);
+        additionalData.put(Constants.LOOKUP_ID, "NA");
+        additionalData.put(Constants.LOOKUP_VALUE_ID, "NA");
+        additionalData.put(Constants.CED, key % 4 - 1);
+        if (key % 3 != 0) {
+            additionalData.put(Constants.STRATUM, (key % 4 + 1) + ":" + (key % 2 + 1));
+            additionalData.put(Constants.STRATUM_SIZE, 100L * key);
+        }
+        return additionalData;
+    }
+
+    private static boolean isPacked(SourceInputModel message) {
+        return message.getAdditionalData().containsKey(Constants.SLOTS);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> entries(SourceInputModel message) {
+        return isPacked(message) ? (List<Map<String, Object>>) message.getAdditionalData().get(Constants.SLOTS) : List.of(message.getAdditionalData());
+    }
+
+    /**
+     * Checks every entry of every message against the index and returns the number of entries.
+     */
+    private static int verify(List<ExpectedOutcomeIndex> indexes, List<SourceInputModel> messages, List<String> shardFiles, int version) {
+        int entries = 0;
+        for (int m = 0; m < messages.size(); m++) {
+            for (Map<String, Object> expected : entries(messages.get(m))) {
+                String key = (String) expected.get(Constants.MESSAGE_KEY_ADDITIONAL);
+                JSONObject actual = ExpectedOutcomeIndex.additionalData(indexes, key);
+                check(actual != null, "v" + version + ": no additionalData for " + key);
+                for (String field : ExpectedOutcomeIndex.FIELDS) {
+                    check(expected.get(field).equals(actual.getString(field)), "v" + version + ": " + field + " of " + key + " is " + actual.opt(field));
+                }
+                check(expected.get(Constants.CED).equals(actual.getInt(Constants.CED)), "v" + version + ": ced of " + key);
+                boolean stratified = version >= 3 && expected.containsKey(Constants.STRATUM);
+                check(stratified == actual.has(Constants.STRATUM), "v" + version + ": stratum presence of " + key);
+                if (stratified) {
+                    check(expected.get(Constants.STRATUM).equals(actual.getString(Constants.STRATUM)), "v" + version + ": stratum of " + key);
+                    check(expected.get(Constants.STRATUM_SIZE).equals(actual.getLong(Constants.STRATUM_SIZE)), "v" + version + ": stratum size of " + key);
+                }
+
+                ExpectedOutcomeIndex.Location location = ExpectedOutcomeIndex.locate(indexes, key);
+                if (version < 2) {
+                    check(location == null, "v1: locate of " + key + " should be null");
+                } else {
+                    check(location != null, "v" + version + ": no location for " + key);
+                    check(shardFiles.get(m / ROW_LIMIT).equals(location.shardFile), "v" + version + ": shard of " + key + " is " + location.shardFile);
+                    check(m % ROW_LIMIT == location.ordinal, "v" + version + ": ordinal of " + key + " is " + location.ordinal);
+                }
+                entries++;
+            }
+        }
+        check(ExpectedOutcomeIndex.additionalData(indexes, "unknown") == null, "v" + version + ": unknown key found");
+        check(ExpectedOutcomeIndex.locate(indexes, "unknown") == null, "v" + version + ": unknown key located");
+        return entries;
+    }
+
+    /**
+     * Writes a version 1 (no shard and ordinal) or version 2 (no stratum) index in the documented layout.
+     */
+    private static void writeOldVersion(List<SourceInputModel> messages, File file, List<String> shardFiles, int version) throws IOException {
+        List<String> strings = new ArrayList<>();
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<long[]> records = new ArrayList<>(); // keyHash, message, then one string id per field
+        for (int m = 0; m < messages.size(); m++) {
+            for (Map<String, Object> entry : entries(messages.get(m))) {
+                long[] record = new long[2 + ExpectedOutcomeIndex.FIELDS.length + 1];
+                record[0] = ExpectedOutcomeIndex.keyHash((String) entry.get(Constants.MESSAGE_KEY_ADDITIONAL));
+                record[1] = m;
+                for (int f = 0; f < ExpectedOutcomeIndex.FIELDS.length; f++) {
+                    record[2 + f] = id(String.valueOf(entry.get(ExpectedOutcomeIndex.FIELDS[f])), strings, stringIds);
+                }
+                record[record.length - 1] = (Integer) entry.get(Constants.CED);
+                records.add(record);
+            }
+        }
+        int[] shardIds = new int[shardFiles.size()];
+        for (int s = 0; s < shardIds.length; s++) shardIds[s] = id(shardFiles.get(s), strings, stringIds);
+        records.sort((a, b) -> Long.compare(a[0], b[0]));
+
+        List<byte[]> bytes = new ArrayList<>();
+        int stringBytes = 0;
+        for (String string : strings) {
+            bytes.add(string.getBytes(StandardCharsets.UTF_8));
+            stringBytes += bytes.get(bytes.size() - 1).length;
+        }
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(ExpectedOutcomeIndex.MAGIC);
+            out.writeInt(version);
+            out.writeInt(records.size());
+            out.writeInt(strings.size());
+            out.writeInt(stringBytes);
+            int offset = 0;
+            for (byte[] string : bytes) {
+                out.writeInt(offset);
+                offset += string.length;
+            }
+            for (byte[] string : bytes) out.write(string);
+            for (long[] record : records) {
+                out.writeLong(record[0]);
+                for (int f = 2; f < record.length; f++) out.writeInt((int) record[f]);
+                if (version >= 2) {
+                    out.writeInt(shardIds[(int) record[1] / ROW_LIMIT]);
+                    out.writeInt((int) record[1] % ROW_LIMIT);
+                }
+            }
+        }
+    }
+
+    private static int id(String string, List<String> strings, Map<String, Integer> stringIds) {
+        return stringIds.computeIfAbsent(string, s -> {
+            strings.add(s);
+            return strings.size() - 1;
+        });
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,146 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Variant generation, message creation and JSON shard writing of {@link RawMessageGenerator}. Each string benchmark
+ * walks a fixed set of watchlist names, so a score is the cost of one name.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeneratorBenchmarks {
+
+    @Param({"3"})
+    public int wordsPerName;
+
+    private List<String> names;
+    private Map<String, Map<String, String>> synonymMap;
+    private SourceInputModel sourceModel;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        names = BenchmarkData.names(1024, wordsPerName);
+        synonymMap = BenchmarkData.synonymMap(names, 3000, 0.3);
+        sourceModel = BenchmarkData.sourceModel();
+    }
+
+    private String nextName() {
+        return names.get(next++ & 1023);
+    }
+
+    @Benchmark
+    public List<String> ced1Variants() {
+        return RawMessageGenerator.generate1CedVariants(nextName());
+    }
+
+    @Benchmark
+    public List<String> ced2Variants() {
+        return RawMessageGenerator.generate2CedVariants(nextName());
+    }
+
+    @Benchmark
+    public List<String> ced3Variants() {
+        return RawMessageGenerator.generate3CedVariants(nextName());
+    }
+
+    @Benchmark
+    public List<String> stopwordVariants() {
+        return RawMessageGenerator.generateStopwordVariants(nextName(), "AND");
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> synonymVariants() {
+        return RawMessageGenerator.generateSynonymVariantsWithInfo(nextName(), synonymMap);
+    }
+
+    /** All messages of one name as the generator emits them: exact, 1-3 CED and stopword variants. */
+    @Benchmark
+    public void createRawMessages(Blackhole blackhole) {
+        String name = nextName();
+        List<SourceInputModel> rawMessages = new ArrayList<>();
+        int count = create(name, name, 0, rawMessages, 0);
+        for (String variant : RawMessageGenerator.generate1CedVariants(name)) count = create(variant, name, 1, rawMessages, count);
+        for (String variant : RawMessageGenerator.generate2CedVariants(name)) count = create(variant, name, 2, rawMessages, count);
+        for (String variant : RawMessageGenerator.generate3CedVariants(name)) count = create(variant, name, 3, rawMessages, count);
+        for (String variant : RawMessageGenerator.generateStopwordVariants(name, "AND")) count = create(variant, name, -1, rawMessages, count);
+        blackhole.consume(rawMessages);
+    }
+
+    private int create(String value, String original, int ced, List<SourceInputModel> rawMessages, int count) {
+        return RawMessageGenerator.createRawMsg(RawMessageGenerator.cloneSourceModel(sourceModel), value, "123456", "$NAME$", "V_NAME",
+                "$IDEN$", "OFAC", rawMessages, count, original, ced, "123456", "Nm", "1", "NA", "NA", "010624100000", "NameAndAddress");
+    }
+
+    /**
+     * Writing generated messages to JSON shards of the default jsonObjectLimit.
+     */
+    @State(Scope.Benchmark)
+    public static class ShardState {
+        @Param({"5000"})
+        public int messages;
+
+        List<SourceInputModel> rawMessages;
+        Properties props;
+        File folder;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            SourceInputModel sourceModel = BenchmarkData.sourceModel();
+            rawMessages = new ArrayList<>(messages);
+            int count = 0;
+            for (String name : BenchmarkData.names(messages, 3)) {
+                count = RawMessageGenerator.createRawMsg(RawMessageGenerator.cloneSourceModel(sourceModel), name, "123456", "$NAME$", "V_NAME",
+                        "$IDEN$", "OFAC", rawMessages, count, name, 0, "123456", "Nm", "1", "NA", "NA", "010624100000", "NameAndAddress");
+            }
+            props = new Properties();
+            props.setProperty(Constants.GENERATOR_BATCH_TYPE, Constants.ISO20022);
+            props.setProperty(Constants.MIS_DATE, "20240601");
+            props.setProperty(Constants.RUN_NO, "1");
+            folder = Files.createTempDirectory("bench_shards").toFile();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            try (Stream<Path> paths = Files.walk(folder.toPath())) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<String> writeJsonShards(ShardState state) throws IOException {
+        return RawMessageGenerator.writeRawMessagesToJsonFile(state.rawMessages, state.props, "bench", new AtomicInteger(1), state.folder, 1);
+    }
+}
@@ -0,0 +1,78 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import java.util.Properties;
+
+/**
+ * Steps {@link LoadGenerator.TokenBucket} through a ramp {@link LoadGenerator.Profile} on a simulated clock, the way
+ * the load loop refills it, with one long stall in the middle of the ramp. Checks the ramp integral against a numeric
+ * one, that the stall runs a deficit which is repaid within the burst limit, that the bucket never runs ahead of the
+ * profile, and that the emitted total matches cumulative(duration). Throws on the first mismatch; needs no database.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.oracle.ofss.sanctions.tf.app.LoadGeneratorCheck
+ * </pre>
+ */
+public class LoadGeneratorCheck {
+
+    private static final String PROFILE = "10-200:20,200:10,200-50:10";
+    private static final double BURST_SECONDS = 0.5;
+    private static final long TICK_MILLIS = 10;
+    private static final long STALL_FROM_MILLIS = 12_000;
+    private static final long STALL_MILLIS = 3_000;
+
+    public static void main(String[] args) {
+        Properties props = new Properties();
+        props.setProperty(Constants.LOAD_PROFILE, PROFILE);
+        LoadGenerator.Profile profile = LoadGenerator.Profile.from(props);
+        double duration = profile.duration();
+        check(duration == 40, "duration is " + duration);
+
+        // 20 s ramping 10 to 200, 10 s flat at 200, 10 s ramping down to 50
+        double expected = 20 * 105 + 10 * 200 + 10 * 125;
+        check(Math.abs(profile.cumulative(duration) - expected) < 1e-6, "cumulative(duration) is " + profile.cumulative(duration));
+        double integral = 0;
+        for (int i = 0; i < 400_000; i++) {
+            integral += profile.rateAt((i + 0.5) / 10_000) / 10_000;
+            if (i % 10_000 == 9_999) {
+                double t = (i + 1) / 10_000.0;
+                check(Math.abs(integral - profile.cumulative(t)) < 1e-6, "cumulative(" + t + ") is " + profile.cumulative(t) + ", integral " + integral);
+            }
+        }
+        check(profile.rateAt(duration) == 0 && profile.cumulative(duration + 5) == profile.cumulative(duration), "profile runs past its end");
+
+        LoadGenerator.TokenBucket bucket = new LoadGenerator.TokenBucket(BURST_SECONDS);
+        long emitted = 0;
+        long lastMillis = 0;
+        double peakDeficit = 0;
+        double repaidAt = -1;
+        long durationMillis = Math.round(duration * 1000);
+        for (long now = TICK_MILLIS; now <= durationMillis; now += now == STALL_FROM_MILLIS ? STALL_MILLIS : TICK_MILLIS) {
+            double elapsed = now / 1000.0;
+            double last = lastMillis / 1000.0;
+            bucket.refill(profile.cumulative(elapsed) - profile.cumulative(last), profile.rateAt(elapsed), elapsed - last);
+            lastMillis = now;
+            emitted += bucket.take();
+            check(emitted <= profile.cumulative(elapsed) + 1e-6, "emitted " + emitted + " ahead of the profile at " + elapsed);
+            check(emitted >= profile.cumulative(elapsed) - bucket.deficit() - 1, "emitted " + emitted + " lost tokens at " + elapsed);
+            peakDeficit = Math.max(peakDeficit, bucket.deficit());
+            if (peakDeficit > 0 && repaidAt < 0 && bucket.deficit() < 1e-9) repaidAt = elapsed;
+        }
+
+        // The stall accrues 3 s of a 124-152/s rate into a bucket capped at half a second of it; the rest is repaid at
+        // no less than one bucket of the (rising) rate per second
+        double stallEnd = (STALL_FROM_MILLIS + STALL_MILLIS) / 1000.0;
+        double capacity = profile.rateAt(stallEnd) * BURST_SECONDS;
+        check(Math.abs(peakDeficit - (profile.cumulative(stallEnd) - profile.cumulative(STALL_FROM_MILLIS / 1000.0) - capacity)) < 1,
+                "stall ran a deficit of " + peakDeficit);
+        check(repaidAt > stallEnd && repaidAt <= stallEnd + peakDeficit / capacity + TICK_MILLIS / 1000.0,
+                "deficit of " + peakDeficit + " repaid at " + repaidAt);
+        check(bucket.deficit() < 1e-9, "deficit left at the end: " + bucket.deficit());
+        check(Math.abs(emitted - expected) < 1, "emitted " + emitted + " of " + expected);
+        System.out.println("LoadGenerator profile and token bucket OK: " + emitted + " of " + expected + " messages, stall deficit "
+                + Math.round(peakDeficit) + " repaid " + String.format("%.2f", repaidAt - stallEnd) + " s after the stall");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
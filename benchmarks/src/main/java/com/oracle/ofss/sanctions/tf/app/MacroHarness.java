@@ -0,0 +1,242 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end macro benchmark on an embedded H2 database (Oracle mode) in place of the shared Oracle instance:
+ * synthetic watchlist -> generator -> simulated screening of two engines -> analyzer, with wall time, throughput,
+ * peak heap and GC time per phase.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.oracle.ofss.sanctions.tf.app.MacroHarness
+ *      [-rows 10000] [-synonyms] [-packing 2] [-workdir dir] [-keep] [-results file]
+ * </pre>
+ *
+ * -rows is the number of watchlist records (10k to 10M); the generator emits about 19 messages per record (the exact
+ * name and six variants at each of three edit distances), plus synonym variants with -synonyms. -packing n (up to 4)
+ * puts n test values in the party names of each message, so screening sees about 1/n of the messages and the
+ * analyzer scores n rows per message. The workspace (bin, out and
+ * the database) is a temporary folder unless -workdir is given, and is removed at the end unless -keep is given.
+ * Stopword generation is not covered: its lookup query samples with DBMS_RANDOM, which H2 does not provide.
+ */
+public class MacroHarness {
+
+    private static final long OS_RUN_SKEY = 1;
+    private static final long OT_RUN_SKEY = 2;
+    private static final String CONFIG_NAME = "macro";
+
+    private final List<ObjectNode> phases = new ArrayList<>();
+    private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    public static void main(String[] args) throws Exception {
+        int rows = 10_000;
+        boolean synonyms = false;
+        int packingSlots = 0;
+        boolean keep = false;
+        File workdir = null;
+        File resultsFile = new File("benchmarks/results/macro.json");
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-rows": rows = Integer.parseInt(args[++i].replace("_", "")); break;
+                case "-synonyms": synonyms = true; break;
+                case "-packing": packingSlots = Integer.parseInt(args[++i]); break;
+                case "-keep": keep = true; break;
+                case "-workdir": workdir = new File(args[++i]); break;
+                case "-results": resultsFile = new File(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (packingSlots < 0 || packingSlots > SyntheticDatabase.SLOT_PARTIES.length) {
+            throw new IllegalArgumentException("-packing takes 1 to " + SyntheticDatabase.SLOT_PARTIES.length + " slots");
+        }
+        File workspace = workdir != null ? workdir : Files.createTempDirectory("macro_bench").toFile();
+        try {
+            new MacroHarness().run(workspace, rows, synonyms, packingSlots, resultsFile);
+        } finally {
+            SQLUtility.useDataSource(null);
+            if (!keep && workdir == null) delete(workspace);
+        }
+    }
+
+    void run(File workspace, int rows, boolean synonyms, int packingSlots, File resultsFile) throws Exception {
+        File bin = new File(workspace, Constants.BIN_FOLDER_NAME);
+        File out = new File(workspace, Constants.OUTPUT_FOLDER_NAME);
+        bin.mkdirs();
+        out.mkdirs();
+        Constants.PARENT_DIRECTORY = workspace;
+        Constants.BIN_DIR_PATH = bin.getPath();
+        Constants.COMMON_CONFIG_FILE_PATH = new File(bin, "common.properties").getPath();
+        Constants.OUTPUT_FOLDER = out;
+
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:file:" + new File(workspace, "db/macro").getAbsolutePath() + ";MODE=Oracle;LOCK_TIMEOUT=60000");
+        config.setUsername("sa");
+        config.setMaximumPoolSize(20);
+        config.setMinimumIdle(2);
+        SQLUtility.useDataSource(new HikariDataSource(config));
+
+        Properties common = new Properties();
+        common.setProperty(CONFIG_NAME + ".enabled", Constants.YES);
+        common.setProperty(Constants.GENERATOR_BATCH_TYPE, Constants.ISO20022);
+        common.setProperty(Constants.ANALYZER_BATCH_TYPE, Constants.ISO20022);
+        common.setProperty(Constants.MIS_DATE, "20240601");
+        common.setProperty(Constants.RUN_NO, "1");
+        common.setProperty(Constants.OS_RUN_SKEY, String.valueOf(OS_RUN_SKEY));
+        common.setProperty(Constants.OT_RUN_SKEY, String.valueOf(OT_RUN_SKEY));
+        common.setProperty(Constants.JSON_OBJJECT_LIMIT, "5000");
+        common.setProperty(Constants.EXCEL_ROW_LIMIT, "100000");
+        Properties specific = new Properties();
+        specific.setProperty(Constants.WATCHLIST_TYPE, SyntheticDatabase.WATCHLIST_TYPE);
+        specific.setProperty(Constants.TAGNAME, "Nm");
+        specific.setProperty(Constants.WEBSERVICE, "NameAndAddress");
+        specific.setProperty(Constants.WEBSERVICE_ID, "1");
+        specific.setProperty(Constants.REPLACE_SRC + "[0]", "$IDEN$");
+        specific.setProperty(Constants.REPLACE_TARGET_COLUMN + "[0]", Constants.NUID);
+        specific.setProperty(Constants.REPLACE_SRC + "[1]", "$NAME$");
+        specific.setProperty(Constants.REPLACE_TARGET_COLUMN + "[1]", "V_NAME");
+        specific.setProperty(Constants.CED1, Constants.YES);
+        specific.setProperty(Constants.CED2, Constants.YES);
+        specific.setProperty(Constants.CED3, Constants.YES);
+        specific.setProperty("synonym", synonyms ? Constants.YES : Constants.NO);
+        specific.setProperty("stopword", Constants.NO);
+        for (int k = 1; k <= packingSlots; k++) {
+            specific.setProperty(Constants.PACKING_SLOT + "[" + k + "]" + Constants.PACKING_SLOT_TOKEN, SyntheticDatabase.slotToken(k));
+            specific.setProperty(Constants.PACKING_SLOT + "[" + k + "]" + Constants.PACKING_SLOT_TAGNAME, SyntheticDatabase.SLOT_PARTIES[k - 1]);
+        }
+        store(common, new File(Constants.COMMON_CONFIG_FILE_PATH));
+        store(specific, new File(bin, CONFIG_NAME + ".properties"));
+        SyntheticDatabase.writeSourceFile(new File(bin, CONFIG_NAME + " source.json"), packingSlots);
+
+        final int watchlistRows = rows;
+        phase("load watchlist", rows, () -> {
+            try (Connection connection = SQLUtility.getDbConnection()) {
+                SyntheticDatabase.createSchema(connection);
+                SyntheticDatabase.fillWatchlist(connection, watchlistRows);
+            }
+            return watchlistRows;
+        });
+        long[] messages = new long[1];
+        phase("generate", 0, () -> {
+            messages[0] = RawMessageGeneratorMain.run(AnalyzerMain.loadProperties());
+            return messages[0];
+        });
+        List<File> shards = new ArrayList<>();
+        for (String entry : Files.readAllLines(new File(out, Constants.FILE_NAME_LIST).toPath(), StandardCharsets.UTF_8)) {
+            shards.add(new File(out, "20240601_" + entry + Constants.JSON_EXT));
+        }
+        phase("screen", 0, () -> {
+            try (Connection connection = SQLUtility.getDbConnection()) {
+                long screened = SyntheticDatabase.screen(connection, shards, OS_RUN_SKEY, 1, 0.97);
+                screened += SyntheticDatabase.screen(connection, shards, OT_RUN_SKEY, 1 + messages[0], 0.92);
+                return screened;
+            }
+        });
+        phase("analyze", 2 * messages[0], () -> {
+            AnalyzerMain.run(AnalyzerMain.loadProperties());
+            return 2 * messages[0];
+        });
+
+        ObjectNode result = mapper.createObjectNode();
+        result.put("watchlistRows", rows);
+        result.put("messages", messages[0]);
+        result.put("synonyms", synonyms);
+        result.put("packingSlots", packingSlots);
+        result.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        result.put("maxHeapMb", Runtime.getRuntime().maxMemory() >> 20);
+        ArrayNode phaseArray = result.putArray("phases");
+        phases.forEach(phaseArray::add);
+        resultsFile.getAbsoluteFile().getParentFile().mkdirs();
+        mapper.writeValue(resultsFile, result);
+
+        System.out.printf("%n%-16s %12s %10s %14s %13s %10s %8s%n", "phase", "items", "wall s", "items/s", "peak heap MB", "GC ms", "GCs");
+        for (ObjectNode phase : phases) {
+            System.out.printf("%-16s %12d %10.2f %14.0f %13d %10d %8d%n", phase.get("phase").asText(), phase.get("items").asLong(),
+                    phase.get("wallMs").asLong() / 1000.0, phase.get("itemsPerSecond").asDouble(), phase.get("peakHeapMb").asLong(),
+                    phase.get("gcMs").asLong(), phase.get("gcCount").asLong());
+        }
+        System.out.println("Results written to " + resultsFile.getPath());
+    }
+
+    interface Phase {
+        long run() throws Exception;
+    }
+
+    /**
+     * Runs one phase and records its wall time, the peak heap reached during it and the GC time it caused.
+     * {@code items} is used for the throughput when the phase itself returns 0.
+     */
+    private void phase(String name, long items, Phase body) throws Exception {
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        long gcMs = gcTime();
+        long gcCount = gcCount();
+        long start = System.nanoTime();
+        long processed = body.run();
+        long wallMs = (System.nanoTime() - start) / 1_000_000;
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) peakHeap += pool.getPeakUsage().getUsed();
+
+        long count = processed > 0 ? processed : items;
+        ObjectNode phase = mapper.createObjectNode();
+        phase.put("phase", name);
+        phase.put("items", count);
+        phase.put("wallMs", wallMs);
+        phase.put("itemsPerSecond", wallMs == 0 ? 0 : count * 1000.0 / wallMs);
+        phase.put("peakHeapMb", peakHeap >> 20);
+        phase.put("gcMs", gcTime() - gcMs);
+        phase.put("gcCount", gcCount() - gcCount);
+        phases.add(phase);
+    }
+
+    private static long gcTime() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) total += Math.max(0, gc.getCollectionTime());
+        return total;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) total += Math.max(0, gc.getCollectionCount());
+        return total;
+    }
+
+    private static void store(Properties props, File file) throws IOException {
+        try (FileWriter writer = new FileWriter(file)) {
+            props.store(writer, "Macro benchmark");
+        }
+    }
+
+    private static void delete(File folder) throws IOException {
+        try (Stream<Path> paths = Files.walk(folder.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
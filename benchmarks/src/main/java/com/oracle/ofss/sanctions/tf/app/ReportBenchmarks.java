@@ -0,0 +1,70 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Report rows of one run written as split workbooks (10000 rows per file) by both Excel writers. Single-shot, since
+ * one call writes several files.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReportBenchmarks {
+
+    @Param({"20000"})
+    public int rows;
+
+    @Param({"DIRECT", "POI"})
+    public String writer;
+
+    private List<ReportRow> reportRows;
+    private Properties props;
+    private File folder;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        reportRows = BenchmarkData.reportRows(rows);
+        props = new Properties();
+        props.setProperty(Constants.EXCEL_WRITER, writer);
+        folder = Files.createTempDirectory("bench_excel").toFile();
+        Constants.OUTPUT_FOLDER = folder;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(folder.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public void writeSplitExcel() throws IOException {
+        AnalyzerMain.writeSplitExcel(reportRows, "20240601", "1", Constants.ISO20022, "Specific Count",
+                Constants.OS_SHEET_NAME, 10000, props);
+    }
+}
@@ -0,0 +1,205 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Schema and data of the embedded stand-in for the screening database: one synthetic watchlist table, the lookup
+ * tables used for synonyms, and the batch, feedback and WLS-response tables that a screening run fills. Only the
+ * columns the generator and analyzer read are created.
+ */
+final class SyntheticDatabase {
+    static final String WATCHLIST_TYPE = "OFAC";
+    static final String WATCHLIST_TABLE = "FCC_WL_OFAC";
+    static final String BATCH_TABLE = "FCC_TF_XML_BATCH_TRXN";
+
+    private static final int BATCH_SIZE = 1000;
+    private static final String[] NOISE_WATCHLISTS = {"EU", "HMT", "UN"};
+    // Party elements holding the packing slot placeholders, one per slot; each is also the slot's tagName
+    static final String[] SLOT_PARTIES = {"Dbtr", "Cdtr", "UltmtDbtr", "UltmtCdtr"};
+
+    private SyntheticDatabase() {
+    }
+
+    static void createSchema(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE " + WATCHLIST_TABLE + " (N_UID NUMBER(19) PRIMARY KEY, V_NAME VARCHAR2(400), V_COUNTRY VARCHAR2(10))");
+            statement.execute("CREATE TABLE fcc_idx_m_lookup (N_LOOKUP_ID NUMBER(10) PRIMARY KEY, F_IS_SYNONYM CHAR(1))");
+            statement.execute("CREATE TABLE FCC_IDX_M_LOOKUP_VALUES (N_LOOKUP_VALUE_ID NUMBER(10) PRIMARY KEY, N_LOOKUP_ID NUMBER(10), V_LOOKUP_VALUES VARCHAR2(4000))");
+            statement.execute("CREATE TABLE " + BATCH_TABLE + " (N_GRP_MSG_ID NUMBER(19) PRIMARY KEY, N_RUN_SKEY NUMBER(19), C_RAW_MSG CLOB)");
+            statement.execute("CREATE INDEX IX_BATCH_RUN ON " + BATCH_TABLE + " (N_RUN_SKEY, N_GRP_MSG_ID)");
+            statement.execute("CREATE TABLE fcc_tf_feedback (N_TRAX_TOKEN NUMBER(19), V_MSG_CATEGORY VARCHAR2(20), C_FEEDBACK_MESSAGE CLOB)");
+            statement.execute("CREATE INDEX IX_FEEDBACK_TOKEN ON fcc_tf_feedback (N_TRAX_TOKEN, V_MSG_CATEGORY)");
+            statement.execute("CREATE TABLE fcc_tf_rt_wls_response (N_GRP_MSG_ID NUMBER(19), N_RESPONSE_ID NUMBER(19), V_COLUMN_NAME VARCHAR2(400), N_MSG_CATEGORY NUMBER(5))");
+            statement.execute("CREATE INDEX IX_WLS_TOKEN ON fcc_tf_rt_wls_response (N_GRP_MSG_ID, N_MSG_CATEGORY)");
+        }
+    }
+
+    /** Fills the watchlist with {@code rows} multi-word names and a synonym lookup over a share of their words. */
+    static void fillWatchlist(Connection connection, int rows) throws SQLException {
+        Random random = new Random(BenchmarkData.SEED);
+        List<String> synonymSource = new ArrayList<>();
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + WATCHLIST_TABLE + " VALUES (?, ?, ?)")) {
+            for (int uid = 1; uid <= rows; uid++) {
+                String name = BenchmarkData.name(random, 2 + random.nextInt(2));
+                if (synonymSource.size() < 5000) synonymSource.add(name);
+                insert.setLong(1, uid);
+                insert.setString(2, name);
+                insert.setString(3, "GB");
+                insert.addBatch();
+                if (uid % BATCH_SIZE == 0) insert.executeBatch();
+            }
+            insert.executeBatch();
+        }
+        Map<String, Map<String, String>> synonyms = BenchmarkData.synonymMap(synonymSource, 2000, 0.3);
+        try (PreparedStatement lookup = connection.prepareStatement("INSERT INTO fcc_idx_m_lookup VALUES (?, 'Y')");
+             PreparedStatement value = connection.prepareStatement("INSERT INTO FCC_IDX_M_LOOKUP_VALUES VALUES (?, ?, ?)")) {
+            for (Map.Entry<String, Map<String, String>> entry : synonyms.entrySet()) {
+                lookup.setLong(1, Long.parseLong(entry.getKey()));
+                lookup.executeUpdate();
+                for (Map.Entry<String, String> synonym : entry.getValue().entrySet()) {
+                    value.setLong(1, Long.parseLong(synonym.getKey()));
+                    value.setLong(2, Long.parseLong(entry.getKey()));
+                    value.setString(3, synonym.getValue());
+                    value.addBatch();
+                }
+            }
+            value.executeBatch();
+        }
+    }
+
+    /**
+     * Stands in for the screening engine: loads every message of the generated shards into the batch table under
+     * {@code runSkey} and writes the feedback and WLS responses an engine of the given recall would produce. The
+     * expected watchlist record is found with a probability that falls with the edit distance, and every message
+     * also gets up to two unrelated matches. Returns the number of messages screened.
+     */
+    static long screen(Connection connection, List<File> shards, long runSkey, long firstToken, double recall) throws IOException, SQLException {
+        Random random = new Random(BenchmarkData.SEED + runSkey);
+        JsonFactory factory = new ObjectMapper().getFactory();
+        long token = firstToken;
+        long responseId = firstToken * 4;
+        try (PreparedStatement batch = connection.prepareStatement("INSERT INTO " + BATCH_TABLE + " VALUES (?, ?, ?)");
+             PreparedStatement feedback = connection.prepareStatement("INSERT INTO fcc_tf_feedback VALUES (?, ?, ?)");
+             PreparedStatement wls = connection.prepareStatement("INSERT INTO fcc_tf_rt_wls_response VALUES (?, ?, ?, ?)")) {
+            for (File shard : shards) {
+                try (JsonParser parser = factory.createParser(shard)) {
+                    if (parser.nextToken() != JsonToken.START_ARRAY) throw new IOException("Expected a JSON array in " + shard);
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        JsonNode message = parser.readValueAsTree();
+                        JsonNode additionalData = message.get("additionalData");
+                        batch.setLong(1, token);
+                        batch.setLong(2, runSkey);
+                        batch.setString(3, message.toString());
+                        batch.addBatch();
+
+                        JSONArray matches = new JSONArray();
+                        // A packed message is screened once, with one chance of a hit per slot
+                        JsonNode slots = additionalData.path(Constants.SLOTS);
+                        for (JsonNode expected : slots.isArray() ? slots : List.of(additionalData)) {
+                            int ced = expected.path(Constants.CED).asInt();
+                            double hitRate = recall * (ced == 0 ? 1.0 : ced < 0 ? 0.85 : 1.0 - 0.15 * ced);
+                            if (random.nextDouble() < hitRate) {
+                                matches.put(match(responseId, expected.path(Constants.UID).asText(), WATCHLIST_TYPE, expected));
+                                addWls(wls, token, responseId++, random.nextInt(10) == 0 ? "V_ALIAS" : expected.path(Constants.COLUMN).asText());
+                            }
+                        }
+                        for (int noise = random.nextInt(3); noise > 0; noise--) {
+                            matches.put(match(responseId, String.valueOf(1_000_000_000L + random.nextInt(1_000_000)),
+                                    NOISE_WATCHLISTS[random.nextInt(NOISE_WATCHLISTS.length)], additionalData));
+                            addWls(wls, token, responseId++, "V_NAME");
+                        }
+                        JSONObject response = new JSONObject();
+                        response.put(Constants.MATCHING_STATUS, matches.length() > 0 ? "MATCH" : "NO_MATCH");
+                        response.put(Constants.MATCHES, matches);
+                        feedback.setLong(1, token);
+                        feedback.setString(2, Constants.SEPA);
+                        feedback.setString(3, response.toString());
+                        feedback.addBatch();
+
+                        if (++token % BATCH_SIZE == 0) {
+                            batch.executeBatch();
+                            feedback.executeBatch();
+                            wls.executeBatch();
+                        }
+                    }
+                }
+            }
+            batch.executeBatch();
+            feedback.executeBatch();
+            wls.executeBatch();
+        }
+        return token - firstToken;
+    }
+
+    private static JSONObject match(long responseId, String uid, String watchlistType, JsonNode additionalData) {
+        JSONObject match = new JSONObject();
+        match.put(Constants.RESPONSE_ID, responseId);
+        match.put(Constants.MATCHED_WATCHLIST_ID, uid);
+        match.put("watchlistType", watchlistType);
+        match.put(Constants.WEBSERVICE_ID_FROM_MATCH, additionalData.path(Constants.WEBSERVICE_ID).asInt(1));
+        match.put("tagName", additionalData.path(Constants.TAGNAME).asText());
+        return match;
+    }
+
+    private static void addWls(PreparedStatement wls, long token, long responseId, String columnName) throws SQLException {
+        wls.setLong(1, token);
+        wls.setLong(2, responseId);
+        wls.setString(3, columnName);
+        wls.setInt(4, Constants.THREE);
+        wls.addBatch();
+    }
+
+    /**
+     * The generator's source template: a small pacs.008 message with the name and identifier placeholders. With
+     * packing slots, the party names are the slot placeholders ({@link #SLOT_PARTIES}) instead.
+     */
+    static void writeSourceFile(File file, int packingSlots) throws IOException {
+        StringBuilder parties = new StringBuilder();
+        if (packingSlots == 0) {
+            parties.append("<Dbtr><Nm>$NAME$</Nm><PstlAdr><Ctry>GB</Ctry></PstlAdr></Dbtr>");
+        }
+        for (int k = 1; k <= packingSlots; k++) {
+            String party = SLOT_PARTIES[k - 1];
+            parties.append('<').append(party).append("><Nm>").append(slotToken(k)).append("</Nm></").append(party).append('>');
+        }
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = new JsonFactory().createGenerator(json)) {
+            generator.writeStartObject();
+            generator.writeStringField("rawMessage", "<Document><FIToFICstmrCdtTrf><GrpHdr><MsgId>$IDEN$</MsgId></GrpHdr>"
+                    + "<CdtTrfTxInf>" + parties
+                    + "<RmtInf><Ustrd>Invoice 4711 settlement</Ustrd></RmtInf></CdtTrfTxInf></FIToFICstmrCdtTrf></Document>");
+            generator.writeStringField("businessDomainCode", "TF");
+            generator.writeStringField("jurisdictionCode", "GB");
+            generator.writeStringField("messageDirection", "O");
+            generator.writeObjectFieldStart("additionalData");
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        Files.write(file.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String slotToken(int slot) {
+        return "$SLOT" + slot + "$";
+    }
+}
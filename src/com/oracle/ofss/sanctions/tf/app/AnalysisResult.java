@@ -0,0 +1,18 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import java.util.List;
+
+/**
+ * Row-level report and single-pass aggregates produced by analysing one run skey.
+ */
+public class AnalysisResult {
+    public final String runSkey;
+    public final List<ReportRow> reportRows;
+    public final ReportSummary summary;
+
+    public AnalysisResult(String runSkey, List<ReportRow> reportRows, ReportSummary summary) {
+        this.runSkey = runSkey;
+        this.reportRows = reportRows;
+        this.summary = summary;
+    }
+}
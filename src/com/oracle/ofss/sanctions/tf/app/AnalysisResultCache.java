@@ -0,0 +1,304 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local store of per-token analysis results, keyed by (run skey, token), so repeated analyses of the same run skey
+ * only re-fetch and re-score tokens whose feedback or WLS responses changed.
+ *
+ * <p>One append-only file per run skey under {@code out/cache}. It has a header (magic, format version,
+ * {@link #SCORING_VERSION}), followed by records of
+ * {@code int length, long token, long fingerprint, <scored ReportRow fields>}. The message and feedback text, up to
+ * 32 KB each, are left out; rows come back without them and the analyzer reads them from the database when a report
+ * needs them. Existing records are read through
+ * memory-mapped segments and the newest record for a token wins. A file written with a different scoring version is
+ * discarded, so bump {@link #SCORING_VERSION} whenever the rules in analyzeResults change.
+ */
+public class AnalysisResultCache implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisResultCache.class);
+
+    private static final int MAGIC = 0x52455343; // "RESC"
+    // 2: fingerprints hash the whole feedback CLOB and the WLS response rows
+    // 3: records end with the sampling stratum and its size
+    // 4: records leave out the message and feedback text
+    private static final int FORMAT_VERSION = 4;
+    static final int SCORING_VERSION = 2;
+    private static final int HEADER_SIZE = 12;
+    private static final long SEGMENT_SIZE = 1L << 30;
+    // DBMS_CRYPTO.HASH_SH1, as a literal since package constants cannot be referenced from SQL
+    private static final int HASH_SH1 = 3;
+
+    private final File file;
+    private final String runSkey;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final Map<Long, long[]> index = new HashMap<>(); // token -> {offset, fingerprint}
+    private long mappedLength;
+    private long records;
+
+    private AnalysisResultCache(File file, String runSkey) throws IOException {
+        this.file = file;
+        this.runSkey = runSkey;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    public static AnalysisResultCache open(String batchTable, String runSkey, int msgCategory) throws IOException {
+        File cacheDir = new File(Constants.OUTPUT_FOLDER, Constants.RESULT_CACHE_FOLDER_NAME);
+        if (!cacheDir.exists()) {
+            cacheDir.mkdirs();
+        }
+        File file = new File(cacheDir, batchTable + "_" + msgCategory + "_" + runSkey + ".rcache");
+        AnalysisResultCache cache = new AnalysisResultCache(file, runSkey);
+        cache.load();
+        return cache;
+    }
+
+    private void load() throws IOException {
+        long size = channel.size();
+        if (size >= HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() == MAGIC && header.getInt() == FORMAT_VERSION && header.getInt() == SCORING_VERSION) {
+                mapExisting(size);
+                logger.info("Result cache {} loaded: {} tokens", file.getName(), index.size());
+                return;
+            }
+            logger.info("Result cache {} was written by another format or scoring version, discarding it", file.getName());
+        }
+        channel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(SCORING_VERSION).flip();
+        channel.write(header, 0);
+    }
+
+    private void mapExisting(long size) throws IOException {
+        for (long position = 0; position < size; position += SEGMENT_SIZE) {
+            segments.add(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, size - position)));
+        }
+        mappedLength = size;
+        long offset = HEADER_SIZE;
+        while (offset + 20 <= size) {
+            int length = readInt(offset);
+            if (length <= 0 || offset + 4 + length > size) {
+                // Torn write from an interrupted run; everything from here on is dropped
+                logger.warn("Result cache {} truncated at offset {}", file.getName(), offset);
+                channel.truncate(offset);
+                break;
+            }
+            long token = readLong(offset + 4);
+            long fingerprint = readLong(offset + 12);
+            index.put(token, new long[]{offset, fingerprint});
+            records++;
+            offset += 4 + length;
+        }
+    }
+
+    public boolean contains(long token, long fingerprint) {
+        long[] entry = index.get(token);
+        return entry != null && entry[1] == fingerprint;
+    }
+
+    /**
+     * Returns the cached row for the token if its feedback fingerprint is unchanged, otherwise null. Its message and
+     * feedback are null.
+     */
+    public ReportRow get(long token, long fingerprint) throws IOException {
+        long[] entry = index.get(token);
+        if (entry == null || entry[1] != fingerprint) return null;
+        int length = readInt(entry[0]);
+        ByteBuffer record = readBytes(entry[0] + 4, length);
+        record.getLong(); // token
+        record.getLong(); // fingerprint
+        ReportRow row = new ReportRow(0, getString(record), null, getString(record), getString(record),
+                getString(record), getString(record), getString(record), getString(record), token, runSkey,
+                record.getInt(), getString(record), record.getInt(), null, getString(record),
+                getString(record), getString(record), record.get() == 1);
+        row.ruleType = getString(record);
+        row.stratum = getString(record);
+        row.stratumSize = record.getLong();
+        return row;
+    }
+
+    public void put(ReportRow row, long fingerprint) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + length(row.sourceInput) + length(row.targetInput));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0); // length placeholder
+        out.writeLong(row.transactionToken);
+        out.writeLong(fingerprint);
+        putString(out, row.ruleName);
+        putString(out, row.tag);
+        putString(out, row.sourceInput);
+        putString(out, row.targetInput);
+        putString(out, row.targetColumn);
+        putString(out, row.watchlist);
+        putString(out, row.nUid);
+        out.writeInt(row.matchCount);
+        putString(out, row.feedbackStatus);
+        out.writeInt(row.specificMatches);
+        putString(out, row.testStatus);
+        putString(out, row.comments);
+        putString(out, row.messageKey);
+        out.writeByte(row.isColumnMismatch ? 1 : 0);
+        putString(out, row.ruleType);
+        putString(out, row.stratum);
+        out.writeLong(row.stratumSize);
+        out.flush();
+
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        record.putInt(0, record.capacity() - 4);
+        long offset = channel.size();
+        while (record.hasRemaining()) {
+            channel.write(record, offset + record.position());
+        }
+        index.put(row.transactionToken, new long[]{offset, fingerprint});
+        records++;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        segments.clear();
+        channel.force(false);
+        channel.close();
+        // Rewrite when superseded records outnumber live ones
+        if (records > 2L * index.size() && !index.isEmpty()) {
+            compact();
+        }
+    }
+
+    private void compact() throws IOException {
+        File compacted = new File(file.getPath() + ".tmp");
+        try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(compacted.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            source.transferTo(0, HEADER_SIZE, target);
+            ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+            for (long[] entry : index.values()) {
+                lengthBuffer.clear();
+                source.read(lengthBuffer, entry[0]);
+                lengthBuffer.flip();
+                source.transferTo(entry[0], 4 + lengthBuffer.getInt(), target);
+            }
+        }
+        Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        logger.info("Result cache {} compacted from {} to {} records", file.getName(), records, index.size());
+    }
+
+    /**
+     * Per-token fingerprints of everything scoring reads besides the raw message: a SHA-1 of each whole feedback
+     * CLOB (DBMS_CRYPTO, so no CLOB content is transferred) and the count, highest response id and a hash of the
+     * response ids and column names of the token's WLS response rows. Tokens without feedback or responses get 0 for
+     * that part. Needs EXECUTE on DBMS_CRYPTO.
+     */
+    public static Map<Long, Long> fetchFingerprints(Connection connection, String batchTable, String runSkey, int msgCategory, String msgCategoryString) throws Exception {
+        String query = "SELECT b.N_GRP_MSG_ID, " +
+                       "DBMS_CRYPTO.HASH(f.C_FEEDBACK_MESSAGE, " + HASH_SH1 + "), " +
+                       "w.WLS_COUNT, w.WLS_MAX_ID, w.WLS_HASH " +
+                       "FROM " + batchTable + " b " +
+                       "LEFT JOIN fcc_tf_feedback f ON b.N_GRP_MSG_ID = f.N_TRAX_TOKEN AND f.V_MSG_CATEGORY = ? " +
+                       "LEFT JOIN (SELECT N_GRP_MSG_ID, COUNT(*) WLS_COUNT, MAX(N_RESPONSE_ID) WLS_MAX_ID, " +
+                       "           SUM(ORA_HASH(N_RESPONSE_ID || ':' || V_COLUMN_NAME)) WLS_HASH " +
+                       "           FROM fcc_tf_rt_wls_response " +
+                       "           WHERE n_msg_category = ? AND N_GRP_MSG_ID IN (SELECT N_GRP_MSG_ID FROM " + batchTable + " WHERE N_RUN_SKEY = ?) " +
+                       "           GROUP BY N_GRP_MSG_ID) w ON b.N_GRP_MSG_ID = w.N_GRP_MSG_ID " +
+                       "WHERE b.N_RUN_SKEY = ?";
+        Map<Long, Long> fingerprints = new HashMap<>();
+        try (PreparedStatement pst = connection.prepareStatement(query)) {
+            pst.setFetchSize(10000);
+            pst.setString(1, msgCategoryString);
+            pst.setInt(2, msgCategory);
+            pst.setLong(3, Long.parseLong(runSkey));
+            pst.setLong(4, Long.parseLong(runSkey));
+            try (ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) {
+                    long token = rs.getLong(1);
+                    long fingerprint = 0;
+                    byte[] feedbackHash = rs.getBytes(2);
+                    if (feedbackHash != null && feedbackHash.length >= 8) {
+                        fingerprint = ByteBuffer.wrap(feedbackHash).getLong();
+                    }
+                    long wlsCount = rs.getLong(3);
+                    if (!rs.wasNull()) {
+                        fingerprint += ((wlsCount * 31 + rs.getLong(4)) * 31 + rs.getLong(5)) * 0x9E3779B97F4A7C15L;
+                    }
+                    // Several feedback rows per token: combine order-independently
+                    fingerprints.merge(token, fingerprint, Long::sum);
+                }
+            }
+        }
+        return fingerprints;
+    }
+
+    private int readInt(long offset) throws IOException {
+        return readBytes(offset, 4).getInt();
+    }
+
+    private long readLong(long offset) throws IOException {
+        return readBytes(offset, 8).getLong();
+    }
+
+    private ByteBuffer readBytes(long offset, int length) throws IOException {
+        int segment = (int) (offset / SEGMENT_SIZE);
+        int segmentOffset = (int) (offset % SEGMENT_SIZE);
+        if (offset + length <= mappedLength && segmentOffset + length <= SEGMENT_SIZE) {
+            ByteBuffer view = segments.get(segment).duplicate();
+            view.position(segmentOffset).limit(segmentOffset + length);
+            return view.slice();
+        }
+        // Records appended in this run, or straddling a segment boundary
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of result cache " + file.getName());
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void putString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
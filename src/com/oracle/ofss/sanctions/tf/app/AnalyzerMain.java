@@ -14,21 +14,43 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
 
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 public class AnalyzerMain {
     private static Logger logger = LoggerFactory.getLogger(AnalyzerMain.class);
+    private static final int WLS_IN_BATCH_SIZE = 1000;
+    // Tokens scored between releases of their fetched data when rows go to a ReportRowStore
+    private static final int SCORE_BATCH_SIZE = 10000;
+
+    // One CPU-bound scoring pool for the JVM, shared by every run skey analysed at the same time
+    private static volatile ExecutorService scoringExecutor;
     public static void main(String[] args) throws Exception {
         logger.info("Hello World from Analyzer Main!!!");
+        run(loadProperties());
+    }
+
+    /**
+     * Runs one analysis as configured by the properties. Used by main and by {@link JobDaemon}, which passes
+     * common.properties with the job's overrides on top.
+     */
+    public static void run(Properties props) throws Exception {
+        FlightRecording recording = FlightRecording.start(props, "analyzer");
+        try {
+            analyze(props);
+        } finally {
+            if (recording != null) recording.close();
+        }
+    }
 
-        Properties props = loadProperties();
+    private static void analyze(Properties props) throws Exception {
         String osRunSkey = props.getProperty(Constants.OS_RUN_SKEY);
         String otRunSkey = props.getProperty(Constants.OT_RUN_SKEY);
         String batchType = props.getProperty(Constants.ANALYZER_BATCH_TYPE);
@@ -40,109 +62,317 @@ public class AnalyzerMain {
         String misDate = props.getProperty(Constants.MIS_DATE);
         String runNo = props.getProperty(Constants.RUN_NO);
 
-        List<ReportRow> osReportRows = null;
-        List<ReportRow> otReportRows = null;
+        String matchHeader = "Specific Count";
 
-        try (Connection connection = SQLUtility.getDbConnection()) {
-            if (osRunSkey != null && !osRunSkey.isEmpty()) {
-                osReportRows = processForRunSkey(connection, osRunSkey, batchType, msgCategory, msgCategoryString);
-            }
-            if (otRunSkey != null && !otRunSkey.isEmpty()) {
-                otReportRows = processForRunSkey(connection, otRunSkey, batchType, msgCategory, msgCategoryString);
-            }
-        } catch (Exception e) {
-            logger.error("Error during database operations: {}", e.getMessage(), e);
-            throw e;
+        if (Constants.YES.equalsIgnoreCase(props.getProperty(Constants.FOLLOW_MODE))) {
+            followRuns(osRunSkey, otRunSkey, batchType, msgCategory, msgCategoryString, misDate, runNo, matchHeader, excelRowLimit, props);
+            return;
+        }
+
+        String runSkeys = props.getProperty(Constants.RUN_SKEYS, "").trim();
+        if (!runSkeys.isEmpty()) {
+            BatchRunAnalyzer.analyze(runSkeys, batchType, msgCategory, msgCategoryString, misDate, runNo, matchHeader, excelRowLimit, props);
+            return;
+        }
+
+        // Both engines are analysed concurrently, each on its own pooled connection and half of the fetch connections
+        ExecutorService runExecutor = Executors.newFixedThreadPool(2);
+        Properties runProps = BatchRunAnalyzer.runProperties(props, 2);
+        AnalysisResult osResult;
+        AnalysisResult otResult;
+        try {
+            CompletableFuture<AnalysisResult> osFuture = analyzeAsync(osRunSkey, batchType, msgCategory, msgCategoryString, runProps, runExecutor);
+            CompletableFuture<AnalysisResult> otFuture = analyzeAsync(otRunSkey, batchType, msgCategory, msgCategoryString, runProps, runExecutor);
+            osResult = osFuture.join();
+            otResult = otFuture.join();
+        } catch (CompletionException e) {
+            logger.error("Error during database operations: {}", e.getCause().getMessage(), e.getCause());
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            runExecutor.shutdown();
         }
 
 //        String matchHeader = (osReportRows != null || otReportRows != null) ? "# " + Constants.getMatchHeaderSuffix(webServiceId, watchListType) + " "+ Constants.MATCHES : null;
-        String matchHeader = "Specific Count";
-        if (osReportRows != null) {
-            writeSplitExcel(osReportRows, misDate, runNo, batchType, matchHeader, Constants.OS_SHEET_NAME, excelRowLimit);
+        if (osResult != null) {
+            writeReports(osResult.reportRows, misDate, runNo, batchType, matchHeader, Constants.OS_SHEET_NAME, excelRowLimit, props);
+            osResult.summary.write(analysisFilePrefix(misDate, runNo, batchType, Constants.OS_SHEET_NAME), Constants.OS_SHEET_NAME);
         }
-        if (otReportRows != null) {
-            writeSplitExcel(otReportRows, misDate, runNo, batchType, matchHeader, Constants.OT_SHEET_NAME, excelRowLimit);
+        if (otResult != null) {
+            writeReports(otResult.reportRows, misDate, runNo, batchType, matchHeader, Constants.OT_SHEET_NAME, excelRowLimit, props);
+            otResult.summary.write(analysisFilePrefix(misDate, runNo, batchType, Constants.OT_SHEET_NAME), Constants.OT_SHEET_NAME);
         }
+        if (osResult != null && otResult != null) {
+            EngineComparisonReport.writeComparison(osResult.reportRows, otResult.reportRows, misDate, runNo, batchType, excelRowLimit);
+        }
+        if (osResult != null) ReportRowStore.release(osResult.reportRows);
+        if (otResult != null) ReportRowStore.release(otResult.reportRows);
+
+    }
+
+    private static void followRuns(String osRunSkey, String otRunSkey, String batchType, int msgCategory, String msgCategoryString,
+                                   String misDate, String runNo, String matchHeader, int excelRowLimit, Properties props) throws Exception {
+        ExecutorService followExecutor = Executors.newFixedThreadPool(2);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        String[][] runs = {{osRunSkey, Constants.OS_SHEET_NAME}, {otRunSkey, Constants.OT_SHEET_NAME}};
+        for (String[] run : runs) {
+            if (run[0] == null || run[0].isEmpty()) continue;
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    FollowAnalyzer.follow(run[0], batchType, msgCategory, msgCategoryString, run[1], misDate, runNo, matchHeader, excelRowLimit, props);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, followExecutor));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            logger.error("Error in follow mode: {}", e.getCause().getMessage(), e.getCause());
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            followExecutor.shutdown();
+        }
+    }
 
+    private static CompletableFuture<AnalysisResult> analyzeAsync(String runSkey, String batchType, int msgCategory, String msgCategoryString,
+                                                                   Properties props, ExecutorService executor) {
+        if (runSkey == null || runSkey.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try (Connection connection = SQLUtility.getDbConnection()) {
+                return processForRunSkey(connection, runSkey, batchType, msgCategory, msgCategoryString, props);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
     }
 
-    private static List<ReportRow> processForRunSkey(Connection connection, String runSkey, String batchType, int msgCategory, String msgCategoryString) throws Exception {
+    static AnalysisResult processForRunSkey(Connection connection, String runSkey, String batchType, int msgCategory, String msgCategoryString, Properties props) throws Exception {
+        AnalyzerPhaseEvent event = new AnalyzerPhaseEvent(AnalyzerPhaseEvent.RUN, runSkey);
+        event.begin();
+        AnalysisResult result;
+        if (Constants.YES.equalsIgnoreCase(props.getProperty(Constants.RESULT_CACHE))) {
+            result = processWithResultCache(connection, runSkey, batchType, msgCategory, msgCategoryString, props);
+        } else {
+            result = fullFetch(connection, runSkey, batchType, msgCategory, msgCategoryString, props);
+        }
+        if (event.shouldCommit()) {
+            event.items = result.reportRows.size();
+            event.commit();
+        }
+        return result;
+    }
+
+    private static AnalysisResult fullFetch(Connection connection, String runSkey, String batchType, int msgCategory, String msgCategoryString, Properties props) throws Exception {
+        if (Constants.NO.equalsIgnoreCase(props.getProperty(Constants.PARTITIONED_FETCH))) {
+            return fetchAndAnalyze(connection, runSkey, batchType, msgCategory, msgCategoryString, props);
+        }
+        return PartitionedRunFetcher.fetchAndAnalyze(connection, runSkey, batchType, msgCategory, msgCategoryString, props);
+    }
+
+    /**
+     * Re-uses cached rows for tokens whose feedback and WLS response fingerprint is unchanged since the last analysis
+     * of this run skey, and only fetches and scores the rest. When most tokens changed, the normal bulk fetch is
+     * cheaper than IN lists.
+     */
+    private static AnalysisResult processWithResultCache(Connection connection, String runSkey, String batchType, int msgCategory, String msgCategoryString, Properties props) throws Exception {
+        long startTime = System.currentTimeMillis();
+        String batchTable = batchTable(batchType);
+        double maxStaleRatio = Double.parseDouble(props.getProperty(Constants.RESULT_CACHE_MAX_STALE_PCT, "50")) / 100.0;
+
+        Map<Long, Long> fingerprints = AnalysisResultCache.fetchFingerprints(connection, batchTable, runSkey, msgCategory, msgCategoryString);
+        if (fingerprints.isEmpty()) {
+            throw new Exception("No data found for runSkey: " + runSkey);
+        }
+
+        try (AnalysisResultCache cache = AnalysisResultCache.open(batchTable, runSkey, msgCategory)) {
+            List<Long> staleTokens = new ArrayList<>();
+            for (Map.Entry<Long, Long> entry : fingerprints.entrySet()) {
+                if (!cache.contains(entry.getKey(), entry.getValue())) {
+                    staleTokens.add(entry.getKey());
+                }
+            }
+            logger.info("Result cache for run skey {}: {} of {} tokens reused, {} to score", runSkey,
+                    fingerprints.size() - staleTokens.size(), fingerprints.size(), staleTokens.size());
+
+            if (staleTokens.size() > fingerprints.size() * maxStaleRatio) {
+                AnalysisResult scored = fullFetch(connection, runSkey, batchType, msgCategory, msgCategoryString, props);
+                cacheRows(cache, scored.reportRows, fingerprints);
+                return scored;
+            }
+
+            List<ReportRow> reportRows = ReportRowStore.newRowList(props);
+            ReportSummary summary = new ReportSummary();
+            List<ReportRow> cachedRows = new ArrayList<>();
+            for (Map.Entry<Long, Long> entry : fingerprints.entrySet()) {
+                ReportRow cached = cache.get(entry.getKey(), entry.getValue());
+                if (cached != null) {
+                    cachedRows.add(cached);
+                    summary.accept(cached, cached.ruleType);
+                }
+            }
+            if (ReportSinks.needsText(props)) {
+                addWithText(connection, batchTable, msgCategoryString, cachedRows, reportRows);
+            } else {
+                reportRows.addAll(cachedRows);
+            }
+            if (!staleTokens.isEmpty()) {
+                Map<Long, String> tokenToRawMsg = new HashMap<>();
+                Map<Long, JSONObject> tokenToAdditionalDataMap = new HashMap<>();
+                Map<Long, JSONObject> feedbackMap = new HashMap<>();
+                fetchByTokens(connection, batchTable, staleTokens, msgCategoryString, tokenToRawMsg, tokenToAdditionalDataMap, feedbackMap);
+                Map<Long, Map<Long, Set<String>>> columnNames = getBulkColumnNameWLSParallel(connection, staleTokens, msgCategory, fetchParallelism(props));
+                logger.info("DB queries took: {} ms", (System.currentTimeMillis() - startTime));
+                AnalysisResult scored = analyzeResults(staleTokens, columnNames, feedbackMap, tokenToAdditionalDataMap, runSkey, tokenToRawMsg);
+                cacheRows(cache, scored.reportRows, fingerprints);
+                reportRows.addAll(scored.reportRows);
+                summary.merge(scored.summary);
+            }
+            return new AnalysisResult(runSkey, reportRows, summary);
+        }
+    }
+
+    /**
+     * Adds cached rows to {@code target} with their message and feedback text read back from the database, 1000
+     * tokens at a time, so only one batch of text is on the heap before the row store spills it.
+     */
+    private static void addWithText(Connection connection, String batchTable, String msgCategoryString,
+                                    List<ReportRow> rows, List<ReportRow> target) throws Exception {
+        long startTime = System.currentTimeMillis();
+        int batchSize = 1000;
+        for (int i = 0; i < rows.size(); i += batchSize) {
+            List<ReportRow> batch = rows.subList(i, Math.min(i + batchSize, rows.size()));
+            List<Long> tokens = new ArrayList<>(batch.size());
+            for (ReportRow row : batch) tokens.add(row.transactionToken);
+            Map<Long, String> tokenToRawMsg = new HashMap<>();
+            Map<Long, JSONObject> feedbackMap = new HashMap<>();
+            fetchByTokens(connection, batchTable, tokens, msgCategoryString, tokenToRawMsg, new HashMap<>(), feedbackMap);
+            for (ReportRow row : batch) {
+                row.message = tokenToRawMsg.getOrDefault(row.transactionToken, "");
+                row.feedback = feedbackText(feedbackMap.get(row.transactionToken));
+                target.add(row);
+            }
+        }
+        logger.info("Text of {} cached rows read back in {} ms", rows.size(), (System.currentTimeMillis() - startTime));
+    }
+
+    private static void cacheRows(AnalysisResultCache cache, List<ReportRow> rows, Map<Long, Long> fingerprints) throws IOException {
+        // The cache holds one row per token, so packed messages (a row per slot) are always re-scored
+        Map<Long, Integer> rowsPerToken = new HashMap<>();
+        for (ReportRow row : rows) {
+            rowsPerToken.merge(row.transactionToken, 1, Integer::sum);
+        }
+        for (ReportRow row : rows) {
+            // Processing errors are not cached so they are retried next time
+            if (!"ERROR".equals(row.ruleType) && rowsPerToken.get(row.transactionToken) == 1) {
+                cache.put(row, fingerprints.getOrDefault(row.transactionToken, 0L));
+            }
+        }
+    }
+
+    private static AnalysisResult fetchAndAnalyze(Connection connection, String runSkey, String batchType, int msgCategory, String msgCategoryString, Properties props) throws Exception {
         long startTime = System.currentTimeMillis();
 
-        String batchTable = batchType.equalsIgnoreCase("ISO20022") ? "FCC_TF_XML_BATCH_TRXN" : "FCC_TF_ACH_BATCH_TRXN";
+        String batchTable = batchTable(batchType);
 
-        String query = "SELECT " +
-                       "b.N_GRP_MSG_ID, " +
-                       "b.C_RAW_MSG, " +
-                       "f.C_FEEDBACK_MESSAGE " +
-                       "FROM " + batchTable + " b " +
-                       "LEFT JOIN fcc_tf_feedback f ON b.N_GRP_MSG_ID = f.N_TRAX_TOKEN AND f.V_MSG_CATEGORY = ? " +
-                       "WHERE b.N_RUN_SKEY = ? ";
+        // Raw messages are read from the batch table alone so each C_RAW_MSG CLOB crosses the wire once per token,
+        // however many feedback rows the token has. With an expected-outcome index only the message key is read.
+        List<ExpectedOutcomeIndex> expected = ExpectedOutcomeIndex.load(props);
+        String rawMsgQuery = "SELECT b.N_GRP_MSG_ID, " + rawMsgColumn(expected) + " " +
+                             "FROM " + batchTable + " b " +
+                             "WHERE b.N_RUN_SKEY = ? ";
+        String feedbackQuery = "SELECT f.N_TRAX_TOKEN, f.C_FEEDBACK_MESSAGE " +
+                               "FROM " + batchTable + " b " +
+                               "JOIN fcc_tf_feedback f ON b.N_GRP_MSG_ID = f.N_TRAX_TOKEN AND f.V_MSG_CATEGORY = ? " +
+                               "WHERE b.N_RUN_SKEY = ? ";
 
         Set<Long> allTokens = new HashSet<>();
         Map<Long, String> tokenToRawMsg = new HashMap<>();
         Map<Long, JSONObject> feedbackMap = new HashMap<>();
         Map<Long, JSONObject> tokenToAdditionalDataMap = new HashMap<>();
+        List<Long> unindexedTokens = new ArrayList<>();
+
+        // The raw message and feedback queries are independent, so the feedback runs on a second pooled connection
+        Callable<Void> rawFetch = () -> {
+            AnalyzerPhaseEvent rawEvent = new AnalyzerPhaseEvent(AnalyzerPhaseEvent.RAW_FETCH, runSkey);
+            rawEvent.begin();
+            try (PreparedStatement pst = connection.prepareStatement(rawMsgQuery)) {
+                pst.setFetchSize(5000); // Increased fetch size for better performance
+                pst.setLong(1, Long.parseLong(runSkey));
+                try (ResultSet rs = pst.executeQuery()) {
+                    int tokenIdx = rs.findColumn("N_GRP_MSG_ID");
+                    int rawMsgIdx = rs.findColumn(expected != null ? "MESSAGE_KEY" : "C_RAW_MSG");
+                    while (rs.next()) {
+                        long token = rs.getLong(tokenIdx);
 
-        try (PreparedStatement pst = connection.prepareStatement(query)) {
-            pst.setFetchSize(5000); // Increased fetch size for better performance
-            pst.setString(1, msgCategoryString);
-            pst.setLong(2, Long.parseLong(runSkey));
-            try (ResultSet rs = pst.executeQuery()) {
-                while (rs.next()) {
-                    long token = rs.getLong("N_GRP_MSG_ID");
+                        // Collect all unique tokens
+                        if (!allTokens.add(token)) {
+                            continue;
+                        }
 
-                    // Collect all unique tokens
-                    allTokens.add(token);
+                        if (expected != null) {
+                            readExpectedOutcome(expected, token, rs.getString(rawMsgIdx), tokenToRawMsg, tokenToAdditionalDataMap, unindexedTokens);
+                            continue;
+                        }
 
-                    // Raw Msg - store even if null, will be handled as empty string
-                    if (!tokenToRawMsg.containsKey(token)) {
-                        String rawMsg = rs.getString("C_RAW_MSG");
+                        // Raw Msg - store even if null, will be handled as empty string
+                        String rawMsg = rs.getString(rawMsgIdx);
                         tokenToRawMsg.put(token, rawMsg != null ? rawMsg : "");
                         if (rawMsg == null) {
                             logger.debug("Token {} has null raw message, stored as empty string", token);
                         }
-                    }
 
-                    // Feedback - always store feedback data
-                    String feedbackJson = rs.getString("C_FEEDBACK_MESSAGE");
-                    if (feedbackJson != null && !feedbackJson.isEmpty()) {
-                        feedbackMap.put(token, new JSONObject(feedbackJson));
-                    } else {
-                        // Always ensure feedback data exists
-                        feedbackMap.put(token, new JSONObject("{\"message\": \"No feedback found\", \"matches\": []}"));
-                        logger.debug("Token {} has no feedback data, stored default feedback", token);
+                        // Additional Data - extract from raw message
+                        long parseStart = System.nanoTime();
+                        tokenToAdditionalDataMap.put(token, extractAdditionalData(token, rawMsg));
+                        rawEvent.parseTime += System.nanoTime() - parseStart;
                     }
-
-                    // Additional Data - extract from raw message
-                    String rawMsgStr = rs.getString("C_RAW_MSG");
-                    if (rawMsgStr != null && !rawMsgStr.isEmpty() && !tokenToAdditionalDataMap.containsKey(token)) {
-                        try {
-                            JSONObject rawMessageObj = new JSONObject(rawMsgStr);
-                            if (rawMessageObj.has("additionalData")) {
-                                JSONObject additionalData = rawMessageObj.getJSONObject("additionalData");
-                                tokenToAdditionalDataMap.put(token, additionalData);
-                            } else {
-                                // No additionalData field in raw message
-                                tokenToAdditionalDataMap.put(token, new JSONObject());
-                                logger.debug("Token {} has no additionalData field in raw message, initialized empty object", token);
-                            }
-                        } catch (Exception e) {
-                            // Error parsing raw message JSON or extracting additionalData
-                            tokenToAdditionalDataMap.put(token, new JSONObject());
-                            logger.warn("Token {} failed to parse additional data from raw message: {}", token, e.getMessage());
+                }
+            } catch (Exception e) {
+                logger.error("Error in raw message fetch: {}", e.getMessage(), e);
+                throw e;
+            }
+            if (!unindexedTokens.isEmpty()) {
+                logger.warn("{} tokens of run skey {} are not in the expected-outcome index, reading their raw messages", unindexedTokens.size(), runSkey);
+                fetchRawMessagesByTokens(connection, batchTable, unindexedTokens, tokenToRawMsg, tokenToAdditionalDataMap);
+            }
+            rawEvent.items = allTokens.size();
+            rawEvent.commit();
+            return null;
+        };
+        Callable<Void> feedbackFetch = () -> {
+            AnalyzerPhaseEvent feedbackEvent = new AnalyzerPhaseEvent(AnalyzerPhaseEvent.FEEDBACK_FETCH, runSkey);
+            feedbackEvent.begin();
+            try (Connection feedbackConnection = SQLUtility.getDbConnection();
+                 PreparedStatement pst = feedbackConnection.prepareStatement(feedbackQuery)) {
+                pst.setFetchSize(5000);
+                pst.setString(1, msgCategoryString);
+                pst.setLong(2, Long.parseLong(runSkey));
+                try (ResultSet rs = pst.executeQuery()) {
+                    int tokenIdx = rs.findColumn("N_TRAX_TOKEN");
+                    int feedbackIdx = rs.findColumn("C_FEEDBACK_MESSAGE");
+                    while (rs.next()) {
+                        long token = rs.getLong(tokenIdx);
+                        String feedbackJson = rs.getString(feedbackIdx);
+                        if (feedbackJson != null && !feedbackJson.isEmpty()) {
+                            long parseStart = System.nanoTime();
+                            feedbackMap.put(token, new JSONObject(feedbackJson));
+                            feedbackEvent.parseTime += System.nanoTime() - parseStart;
                         }
-                    } else if (!tokenToAdditionalDataMap.containsKey(token)) {
-                        // Initialize empty additional data if not present
-                        tokenToAdditionalDataMap.put(token, new JSONObject());
-                        logger.debug("Token {} has no raw message, initialized empty additional data object", token);
                     }
                 }
+            } catch (Exception e) {
+                logger.error("Error in feedback fetch: {}", e.getMessage(), e);
+                throw e;
             }
-        } catch (Exception e) {
-            logger.error("Error in combined data fetch: {}", e.getMessage(), e);
-            throw e;
-        }
+            feedbackEvent.items = feedbackMap.size();
+            feedbackEvent.commit();
+            return null;
+        };
+        DbTasks.invokeAll(List.of(rawFetch, feedbackFetch), 2);
+
+        fillDefaultFeedback(allTokens, feedbackMap);
 
         List<Long> transactionTokens = new ArrayList<>(allTokens);
 
@@ -150,21 +380,238 @@ public class AnalyzerMain {
             throw new Exception("No data found for runSkey: " + runSkey);
         }
 
-        Map<Long, Map<Long, String>> tokenToResponseIdToColumnNamesMap = getBulkColumnNameWLS(connection, transactionTokens, msgCategory);
+        Map<Long, Map<Long, Set<String>>> tokenToResponseIdToColumnNamesMap;
+        AnalyzerPhaseEvent wlsEvent = new AnalyzerPhaseEvent(AnalyzerPhaseEvent.WLS_FETCH, runSkey);
+        wlsEvent.begin();
+        String wlsFetchMode = props.getProperty(Constants.WLS_FETCH_MODE, Constants.WLS_FETCH_MODE_JOIN);
+        if (Constants.WLS_FETCH_MODE_IN.equalsIgnoreCase(wlsFetchMode)) {
+            tokenToResponseIdToColumnNamesMap = getBulkColumnNameWLSParallel(connection, transactionTokens, msgCategory, fetchParallelism(props));
+        } else {
+            int partitions = Integer.parseInt(props.getProperty(Constants.FETCH_PARTITIONS, String.valueOf(Constants.DEFAULT_FETCH_PARTITIONS)));
+            tokenToResponseIdToColumnNamesMap = getBulkColumnNameWLSByJoin(runSkey, batchTable, transactionTokens, msgCategory, partitions, fetchParallelism(props));
+        }
+        wlsEvent.items = tokenToResponseIdToColumnNamesMap.size();
+        wlsEvent.commit();
 
         long dbEndTime = System.currentTimeMillis();
         logger.info("DB queries took: {} ms", (dbEndTime - startTime));
-        return analyzeResults(transactionTokens, tokenToResponseIdToColumnNamesMap, feedbackMap, tokenToAdditionalDataMap, runSkey, tokenToRawMsg);
+        // Raw messages are handed to the row store as rows are scored, so the map can be dropped right after analysis
+        List<ReportRow> rowTarget = ReportRowStore.newRowList(props);
+        return analyzeResults(transactionTokens, tokenToResponseIdToColumnNamesMap, feedbackMap, tokenToAdditionalDataMap, runSkey, tokenToRawMsg,
+                rowTarget instanceof ReportRowStore ? rowTarget : null);
+    }
+
+    /**
+     * The expected webServiceId as an int, or null when it is blank or not numeric (such tokens never match).
+     */
+    private static Integer parseWebServiceId(String webServiceId) {
+        try {
+            return webServiceId.isEmpty() ? null : Integer.valueOf(webServiceId.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static String batchTable(String batchType) {
+        return batchType.equalsIgnoreCase("ISO20022") ? "FCC_TF_XML_BATCH_TRXN" : "FCC_TF_ACH_BATCH_TRXN";
     }
 
-    private static List<ReportRow> analyzeResults(List<Long> transactionTokens, Map<Long, Map<Long, String>> tokenToResponseIdToColumnNamesMap,
+    /**
+     * Fetches raw messages (and their additionalData) and feedback for an explicit set of tokens, in 1000-token IN lists.
+     * Used where only part of a run skey is (re-)analysed.
+     */
+    static void fetchByTokens(Connection connection, String batchTable, List<Long> tokens, String msgCategoryString,
+                              Map<Long, String> tokenToRawMsg, Map<Long, JSONObject> tokenToAdditionalDataMap,
+                              Map<Long, JSONObject> feedbackMap) throws Exception {
+        fetchRawMessagesByTokens(connection, batchTable, tokens, tokenToRawMsg, tokenToAdditionalDataMap);
+        int batchSize = 1000;
+        for (int i = 0; i < tokens.size(); i += batchSize) {
+            List<Long> batch = tokens.subList(i, Math.min(i + batchSize, tokens.size()));
+            String placeholders = String.join(",", Collections.nCopies(batch.size(), "?"));
+            String feedbackQuery = "SELECT N_TRAX_TOKEN, C_FEEDBACK_MESSAGE FROM fcc_tf_feedback WHERE V_MSG_CATEGORY = ? AND N_TRAX_TOKEN IN (" + placeholders + ")";
+            try (PreparedStatement pst = connection.prepareStatement(feedbackQuery)) {
+                pst.setFetchSize(batchSize);
+                pst.setString(1, msgCategoryString);
+                for (int j = 0; j < batch.size(); j++) {
+                    pst.setLong(j + 2, batch.get(j));
+                }
+                try (ResultSet rs = pst.executeQuery()) {
+                    while (rs.next()) {
+                        String feedbackJson = rs.getString(2);
+                        if (feedbackJson != null && !feedbackJson.isEmpty()) {
+                            feedbackMap.put(rs.getLong(1), new JSONObject(feedbackJson));
+                        }
+                    }
+                }
+            }
+        }
+        fillDefaultFeedback(tokens, feedbackMap);
+    }
+
+    /**
+     * Reads raw messages and their additionalData for an explicit set of tokens, in 1000-token IN lists.
+     * Tokens missing from the batch table get an empty message.
+     */
+    static void fetchRawMessagesByTokens(Connection connection, String batchTable, List<Long> tokens,
+                                         Map<Long, String> tokenToRawMsg, Map<Long, JSONObject> tokenToAdditionalDataMap) throws Exception {
+        int batchSize = 1000;
+        for (int i = 0; i < tokens.size(); i += batchSize) {
+            List<Long> batch = tokens.subList(i, Math.min(i + batchSize, tokens.size()));
+            String placeholders = String.join(",", Collections.nCopies(batch.size(), "?"));
+            String rawMsgQuery = "SELECT N_GRP_MSG_ID, C_RAW_MSG FROM " + batchTable + " WHERE N_GRP_MSG_ID IN (" + placeholders + ")";
+            try (PreparedStatement pst = connection.prepareStatement(rawMsgQuery)) {
+                pst.setFetchSize(batchSize);
+                for (int j = 0; j < batch.size(); j++) {
+                    pst.setLong(j + 1, batch.get(j));
+                }
+                try (ResultSet rs = pst.executeQuery()) {
+                    while (rs.next()) {
+                        long token = rs.getLong(1);
+                        if (tokenToRawMsg.containsKey(token)) continue;
+                        String rawMsg = rs.getString(2);
+                        tokenToRawMsg.put(token, rawMsg != null ? rawMsg : "");
+                        tokenToAdditionalDataMap.put(token, extractAdditionalData(token, rawMsg));
+                    }
+                }
+            }
+        }
+        for (long token : tokens) {
+            if (!tokenToRawMsg.containsKey(token)) {
+                tokenToRawMsg.put(token, "");
+                tokenToAdditionalDataMap.put(token, new JSONObject());
+            }
+        }
+    }
+
+    /**
+     * Select-list column for the raw message query: the CLOB itself, or only its message key when the expected
+     * outcomes come from an {@link ExpectedOutcomeIndex}.
+     */
+    static String rawMsgColumn(List<ExpectedOutcomeIndex> expected) {
+        return expected != null
+                ? "JSON_VALUE(b.C_RAW_MSG, '$.additionalData.messageKey' RETURNING VARCHAR2(100)) AS MESSAGE_KEY"
+                : "b.C_RAW_MSG";
+    }
+
+    /**
+     * Fills the additionalData of a token from the expected-outcome index. The report's Message column stays empty
+     * in this mode. Tokens whose key is not indexed are collected so their raw message can be read instead.
+     */
+    static void readExpectedOutcome(List<ExpectedOutcomeIndex> expected, long token, String messageKey,
+                                    Map<Long, String> tokenToRawMsg, Map<Long, JSONObject> tokenToAdditionalDataMap,
+                                    List<Long> unindexedTokens) {
+        JSONObject additionalData = ExpectedOutcomeIndex.additionalData(expected, messageKey);
+        if (additionalData == null) {
+            unindexedTokens.add(token);
+            return;
+        }
+        tokenToRawMsg.put(token, "");
+        tokenToAdditionalDataMap.put(token, additionalData);
+    }
+
+    // Feedback - always ensure feedback data exists
+    // The feedback column of a report row; Excel cells hold at most 32767 characters
+    static String feedbackText(JSONObject feedback) {
+        String text = feedback.toString();
+        return text.length() > 32767 ? "Value too large check feedback table" : text;
+    }
+
+    static void fillDefaultFeedback(Collection<Long> tokens, Map<Long, JSONObject> feedbackMap) {
+        for (long token : tokens) {
+            if (!feedbackMap.containsKey(token)) {
+                feedbackMap.put(token, new JSONObject("{\"message\": \"No feedback found\", \"matches\": []}"));
+                logger.debug("Token {} has no feedback data, stored default feedback", token);
+            }
+        }
+    }
+
+    static JSONObject extractAdditionalData(long token, String rawMsg) {
+        if (rawMsg == null || rawMsg.isEmpty()) {
+            // Initialize empty additional data if not present
+            logger.debug("Token {} has no raw message, initialized empty additional data object", token);
+            return new JSONObject();
+        }
+        try {
+            JSONObject rawMessageObj = new JSONObject(rawMsg);
+            if (rawMessageObj.has("additionalData")) {
+                return rawMessageObj.getJSONObject("additionalData");
+            }
+            // No additionalData field in raw message
+            logger.debug("Token {} has no additionalData field in raw message, initialized empty object", token);
+        } catch (Exception e) {
+            // Error parsing raw message JSON or extracting additionalData
+            logger.warn("Token {} failed to parse additional data from raw message: {}", token, e.getMessage());
+        }
+        return new JSONObject();
+    }
+
+    static AnalysisResult analyzeResults(List<Long> transactionTokens, Map<Long, Map<Long, Set<String>>> tokenToResponseIdToColumnNamesMap,
                                                   Map<Long, JSONObject> feedbackMap, Map<Long, JSONObject> tokenToAdditionalDataMap,
                                                   String runSkey, Map<Long, String> tokenToRawMsg) {
+        return analyzeResults(transactionTokens, tokenToResponseIdToColumnNamesMap, feedbackMap, tokenToAdditionalDataMap, runSkey, tokenToRawMsg, null);
+    }
+
+    /**
+     * Scores every token. Rows go straight into {@code rowStore} when one is given (it must accept concurrent adds),
+     * so a worker's row is not kept on the heap once scored, and the tokens' entries are removed from the maps
+     * batch by batch as they are scored; otherwise they are collected into an ArrayList.
+     */
+    static AnalysisResult analyzeResults(List<Long> transactionTokens, Map<Long, Map<Long, Set<String>>> tokenToResponseIdToColumnNamesMap,
+                                                  Map<Long, JSONObject> feedbackMap, Map<Long, JSONObject> tokenToAdditionalDataMap,
+                                                  String runSkey, Map<Long, String> tokenToRawMsg, List<ReportRow> rowStore) {
+        return analyzeResults(transactionTokens, tokenToResponseIdToColumnNamesMap, feedbackMap, tokenToAdditionalDataMap, runSkey, tokenToRawMsg, rowStore, scoringExecutor());
+    }
+
+    /**
+     * The shared scoring pool, one thread per processor. Its threads are daemons, so the pool is never shut down.
+     */
+    static ExecutorService scoringExecutor() {
+        ExecutorService executor = scoringExecutor;
+        if (executor == null) {
+            synchronized (AnalyzerMain.class) {
+                executor = scoringExecutor;
+                if (executor == null) {
+                    executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+                        Thread thread = new Thread(task, "scoring");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    scoringExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Connections one run skey may use for its parallel fetches: analyzer.fetchParallelism, by default half the pool.
+     * {@link BatchRunAnalyzer} lowers it so that all runs in flight fit in the pool together.
+     */
+    static int fetchParallelism(Properties props) {
+        return Math.max(1, Integer.parseInt(props.getProperty(Constants.FETCH_PARALLELISM,
+                String.valueOf(SQLUtility.getMaximumPoolSize() / 2)).trim()));
+    }
+
+    /**
+     * As above, scoring on the given executor.
+     */
+    static AnalysisResult analyzeResults(List<Long> transactionTokens, Map<Long, Map<Long, Set<String>>> tokenToResponseIdToColumnNamesMap,
+                                                  Map<Long, JSONObject> feedbackMap, Map<Long, JSONObject> tokenToAdditionalDataMap,
+                                                  String runSkey, Map<Long, String> tokenToRawMsg, List<ReportRow> rowStore, ExecutorService executor) {
         long startTime = System.currentTimeMillis();
+        AnalyzerPhaseEvent event = new AnalyzerPhaseEvent(AnalyzerPhaseEvent.SCORE, runSkey);
+        event.begin();
         // Parallel processing of each trxn token
-        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
         List<CompletableFuture<Void>> futures = new ArrayList<>();
+        int scored = 0;
         ConcurrentLinkedQueue<ReportRow> queue = new ConcurrentLinkedQueue<>();
+        // Aggregates are accumulated per worker thread and merged once all tokens are scored
+        ConcurrentLinkedQueue<ReportSummary> threadSummaries = new ConcurrentLinkedQueue<>();
+        ThreadLocal<ReportSummary> threadSummary = ThreadLocal.withInitial(() -> {
+            ReportSummary summary = new ReportSummary();
+            threadSummaries.add(summary);
+            return summary;
+        });
         for (long transactionToken : transactionTokens) {
             CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
                 String uid = "";
@@ -177,136 +624,143 @@ public class AnalyzerMain {
                 String targetInput = "";
                 String messageKey = "";
                 int ced = 0;
+                String stratum = null;
+                long stratumSize = 0;
                 try {
                     // Always process every token - no early returns
                     JSONObject eachResponse = feedbackMap.get(transactionToken);
-                    JSONObject additionalData = tokenToAdditionalDataMap.get(transactionToken);
-
-                    // Extract additional data if available
-                    if (additionalData != null) {
-                        uid = additionalData.optString(Constants.UID, "");
-                        webService = additionalData.optString(Constants.WEBSERVICE, "");
-                        webServiceId = additionalData.optString(Constants.WEBSERVICE_ID, "");
-                        watchListType = additionalData.optString(Constants.WATCHLIST_TYPE, "");
-                        tagName = additionalData.optString(Constants.TAGNAME, "");
-                        targetColumnName = additionalData.optString(Constants.COLUMN, "");
-                        sourceInput = additionalData.optString(Constants.VALUE, "");
-                        targetInput = additionalData.optString(Constants.ORIGINAL_VALUE, "");
-                        messageKey = additionalData.optString(Constants.MESSAGE_KEY_ADDITIONAL, "");
-                        ced = additionalData.optInt(Constants.CED, 0);
-                    } else {
-                        targetColumnName = "";
-                    }
+                    JSONObject tokenAdditionalData = tokenToAdditionalDataMap.get(transactionToken);
+                    // A packed message carries one expectation per slot, each scored as its own row
+                    JSONArray slots = tokenAdditionalData == null ? null : tokenAdditionalData.optJSONArray(Constants.SLOTS);
+                    int expectations = slots == null ? 1 : slots.length();
+                    for (int slot = 0; slot < expectations; slot++) {
+                        JSONObject additionalData = slots == null ? tokenAdditionalData : slots.getJSONObject(slot);
 
-                    // Check if we have feedback data and matches
-                    boolean hasFeedback = eachResponse != null ;//&& eachResponse.has(Constants.MATCHES);
-                    JSONArray matches = hasFeedback && eachResponse.has(Constants.MATCHES) ? eachResponse.getJSONArray(Constants.MATCHES) : new JSONArray();
-                    int matchCount = matches.length();
-
-                    String testStatus;
-                    String comments;
-                    int truePositives = 0;
-                    boolean isColumnMismatch = false;
-                    int filteredCount = 0;
-                    String feedbackStatus = "";
-                    String feedback = "";
-
-                    if (!hasFeedback) {
-                        // No feedback data - mark as FAIL
-                        testStatus = Constants.FAIL;
-                        comments = "No feedback data available";
-                        feedbackStatus = eachResponse.optString(Constants.MATCHING_STATUS, "");
-                        feedback = eachResponse.toString();
-                        if (feedback.length() > 32767) {
-                            feedback = "Value too large check feedback table";
-                        }
-                        logger.debug("Token {} has no feedback data, marking as FAIL", transactionToken);
-                    } else if (matches.length() == 0) {
-                        // Has feedback but no matches - mark as FAIL
-                        testStatus = Constants.FAIL;
-                        comments = "No matches found in feedback";
-                        feedbackStatus = eachResponse.optString(Constants.MATCHING_STATUS, "");
-                        feedback = eachResponse.toString();
-                        if (feedback.length() > 32767) {
-                            feedback = "Value too large check feedback table";
+                        // Extract additional data if available
+                        if (additionalData != null) {
+                            uid = additionalData.optString(Constants.UID, "");
+                            webService = additionalData.optString(Constants.WEBSERVICE, "");
+                            webServiceId = additionalData.optString(Constants.WEBSERVICE_ID, "");
+                            watchListType = additionalData.optString(Constants.WATCHLIST_TYPE, "");
+                            tagName = additionalData.optString(Constants.TAGNAME, "");
+                            targetColumnName = additionalData.optString(Constants.COLUMN, "");
+                            sourceInput = additionalData.optString(Constants.VALUE, "");
+                            targetInput = additionalData.optString(Constants.ORIGINAL_VALUE, "");
+                            messageKey = additionalData.optString(Constants.MESSAGE_KEY_ADDITIONAL, "");
+                            ced = additionalData.optInt(Constants.CED, 0);
+                            stratum = additionalData.optString(Constants.STRATUM, null);
+                            stratumSize = additionalData.optLong(Constants.STRATUM_SIZE, 0);
+                        } else {
+                            targetColumnName = "";
                         }
-                        logger.debug("Token {} has feedback but no matches, marking as FAIL", transactionToken);
-                    } else {
-                        // Has feedback and matches - perform analysis
-                        logger.debug("Token {} has {} matches, performing analysis", transactionToken, matches.length());
 
-                        Map<Long, String> responseIdColumnNamesMap = tokenToResponseIdToColumnNamesMap.getOrDefault(transactionToken, Collections.emptyMap());
+                        // Check if we have feedback data and matches
+                        boolean hasFeedback = eachResponse != null ;//&& eachResponse.has(Constants.MATCHES);
+                        JSONArray matches = hasFeedback && eachResponse.has(Constants.MATCHES) ? eachResponse.getJSONArray(Constants.MATCHES) : new JSONArray();
+                        int matchCount = matches.length();
 
-                        for (int i = 0; i < matches.length(); i++) {
-                            JSONObject match = matches.getJSONObject(i);
-                            String tagNameCsv = match.optString("tagName", "");
-                            Set<String> tagNames = Arrays.stream(tagNameCsv.split(",")).map(String::trim).collect(Collectors.toSet());
+                        String testStatus;
+                        String comments;
+                        int truePositives = 0;
+                        boolean isColumnMismatch = false;
+                        int filteredCount = 0;
+                        String feedbackStatus = "";
+                        String feedback = "";
 
-                            String targetUid = match.getString(Constants.MATCHED_WATCHLIST_ID);
-                            Long responseId = match.getLong(Constants.RESPONSE_ID);
-                            String columnNameWls = responseIdColumnNamesMap.get(responseId);
-                            Set<String> columnNames = columnNameWls != null ? Arrays.stream(columnNameWls.split(",")).collect(Collectors.toSet()) : Collections.emptySet();
+                        if (!hasFeedback) {
+                            // No feedback data - mark as FAIL
+                            testStatus = Constants.FAIL;
+                            comments = "No feedback data available";
+                            feedbackStatus = eachResponse.optString(Constants.MATCHING_STATUS, "");
+                            feedback = feedbackText(eachResponse);
+                            logger.debug("Token {} has no feedback data, marking as FAIL", transactionToken);
+                        } else if (matches.length() == 0) {
+                            // Has feedback but no matches - mark as FAIL
+                            testStatus = Constants.FAIL;
+                            comments = "No matches found in feedback";
+                            feedbackStatus = eachResponse.optString(Constants.MATCHING_STATUS, "");
+                            feedback = feedbackText(eachResponse);
+                            logger.debug("Token {} has feedback but no matches, marking as FAIL", transactionToken);
+                        } else {
+                            // Has feedback and matches - perform analysis
+                            logger.debug("Token {} has {} matches, performing analysis", transactionToken, matches.length());
 
-                            // Filtered count for OS # ... matches
-                            if (String.valueOf(match.optInt(Constants.WEBSERVICE_ID_FROM_MATCH)).equals(webServiceId) &&
-                                    (!webServiceId.equals("3") && !webServiceId.equals("4") || match.optString("watchlistType").equalsIgnoreCase(watchListType))) {
-                                filteredCount++;
-                            }
+                            Map<Long, Set<String>> responseIdColumnNamesMap = tokenToResponseIdToColumnNamesMap.getOrDefault(transactionToken, Collections.emptyMap());
+                            // Expected values are normalised once per token so the per-match checks below do not allocate
+                            Integer expectedWebServiceId = parseWebServiceId(webServiceId);
+                            boolean checkWatchlistForFilter = expectedWebServiceId != null && (expectedWebServiceId == 3 || expectedWebServiceId == 4);
+                            String targetColumnKey = targetColumnName.trim().toLowerCase(Locale.ROOT);
+
+                            for (int i = 0; i < matches.length(); i++) {
+                                JSONObject match = matches.getJSONObject(i);
+                                String matchWatchlistType = match.optString("watchlistType");
+
+                                // Filtered count for OS # ... matches
+                                if (expectedWebServiceId != null && match.optInt(Constants.WEBSERVICE_ID_FROM_MATCH) == expectedWebServiceId &&
+                                        (!checkWatchlistForFilter || matchWatchlistType.equalsIgnoreCase(watchListType))) {
+                                    filteredCount++;
+                                }
 
-                            boolean flag = uid.equals(targetUid)
-                                    && watchListType.equalsIgnoreCase(match.optString("watchlistType"))
-                                    && webServiceId.equalsIgnoreCase(String.valueOf(match.getInt(Constants.WEBSERVICE_ID_FROM_MATCH)))
-                                    && tagNames.contains(tagName);
-
-                            if (flag) {
-                                if (columnNames.stream().anyMatch(col -> col.equalsIgnoreCase(targetColumnName))) { // Case-insensitive match
-                                    truePositives++;
-                                    isColumnMismatch = false;
-                                    break; // Early exit if we only need count >=1
-                                } else {
-                                    isColumnMismatch = true;
+                                String targetUid = match.getString(Constants.MATCHED_WATCHLIST_ID);
+                                long responseId = match.getLong(Constants.RESPONSE_ID);
+                                boolean flag = uid.equals(targetUid)
+                                        && watchListType.equalsIgnoreCase(matchWatchlistType)
+                                        && expectedWebServiceId != null && match.getInt(Constants.WEBSERVICE_ID_FROM_MATCH) == expectedWebServiceId
+                                        && csvContains(match.optString("tagName", ""), tagName);
+
+                                if (flag) {
+                                    Set<String> columnNames = responseIdColumnNamesMap.getOrDefault(responseId, Collections.emptySet());
+                                    if (columnNames.contains(targetColumnKey)) { // Case-insensitive match
+                                        truePositives++;
+                                        isColumnMismatch = false;
+                                        break; // Early exit if we only need count >=1
+                                    } else {
+                                        isColumnMismatch = true;
+                                    }
                                 }
                             }
-                        }
 
-                        testStatus = truePositives > 0 || isColumnMismatch ? Constants.PASS : Constants.FAIL;
-                        feedbackStatus = eachResponse.optString(Constants.MATCHING_STATUS, "");
-                        feedback = eachResponse.toString();
-                        if (feedback.length() > 32767) {
-                            feedback = "Value too large check feedback table";
-                        }
+                            testStatus = truePositives > 0 || isColumnMismatch ? Constants.PASS : Constants.FAIL;
+                            feedbackStatus = eachResponse.optString(Constants.MATCHING_STATUS, "");
+                            feedback = feedbackText(eachResponse);
 
-                        if (Constants.PASS.equalsIgnoreCase(testStatus)) {
-                            if (isColumnMismatch) comments = Constants.COLUMN_MISMATCH_COMMENT;
-                            else comments = "";
-                        } else {
-                            comments = Constants.NO_MATCH_COMMENT;
-                        }
+                            if (Constants.PASS.equalsIgnoreCase(testStatus)) {
+                                if (isColumnMismatch) comments = Constants.COLUMN_MISMATCH_COMMENT;
+                                else comments = "";
+                            } else {
+                                comments = Constants.NO_MATCH_COMMENT;
+                            }
 
-                        logger.info("Status for transaction token {}: {} (True positives: {}, Filtered: {})",
-                                  transactionToken, testStatus, truePositives, filteredCount);
-                        if (Constants.FAIL.equalsIgnoreCase(testStatus)) {
-                            logger.info("isColumnMismatch for token {}: {}", transactionToken, isColumnMismatch);
+                            logger.info("Status for transaction token {}: {} (True positives: {}, Filtered: {})",
+                                      transactionToken, testStatus, truePositives, filteredCount);
+                            if (Constants.FAIL.equalsIgnoreCase(testStatus)) {
+                                logger.info("isColumnMismatch for token {}: {}", transactionToken, isColumnMismatch);
+                            }
                         }
-                    }
 
-                    // Determine rule name based on CED
-                    String type = "";
-                    if (ced == 0) type = Constants.EXACT;
-                    else if (ced > 0) type = Constants.FUZZY + ced + Constants.CED;
-                    else if (ced == -1) type = "STOPWORD";
-                    else if (ced == -2) type = "SYNONYM";
+                        // Determine rule name based on CED
+                        String type = "";
+                        if (ced == 0) type = Constants.EXACT;
+                        else if (ced > 0) type = Constants.FUZZY + ced + Constants.CED;
+                        else if (ced == -1) type = "STOPWORD";
+                        else if (ced == -2) type = "SYNONYM";
 
-                    String ruleName = webService + " " + type;
-                    String message = tokenToRawMsg.getOrDefault(transactionToken, "");
+                        String ruleName = webService + " " + type;
+                        String message = tokenToRawMsg.getOrDefault(transactionToken, "");
 
-                    // Always create a ReportRow for every token
-                    ReportRow row = new ReportRow(0, ruleName, message, tagName, sourceInput, targetInput,
-                            targetColumnName, watchListType, uid, transactionToken, runSkey,
-                            matchCount, feedbackStatus, filteredCount, feedback, testStatus, comments, messageKey, isColumnMismatch);
-                    queue.add(row);
+                        // Always create a ReportRow for every token
+                        ReportRow row = new ReportRow(0, ruleName, message, tagName, sourceInput, targetInput,
+                                targetColumnName, watchListType, uid, transactionToken, runSkey,
+                                matchCount, feedbackStatus, filteredCount, feedback, testStatus, comments, messageKey, isColumnMismatch);
+                        row.ruleType = type;
+                        row.stratum = stratum;
+                        row.stratumSize = stratumSize;
+                        if (rowStore != null) rowStore.add(row);
+                        else queue.add(row);
+                        threadSummary.get().accept(row, type);
 
-                    logger.debug("ReportRow created for token: {} with status: {}", transactionToken, testStatus);
+                        logger.debug("ReportRow created for token: {} with status: {}", transactionToken, testStatus);
+                    }
 
                 } catch (Exception e) {
                     logger.error("Error processing transaction token {}: {}", transactionToken, e.getMessage(), e);
@@ -316,8 +770,13 @@ public class AnalyzerMain {
                         ReportRow errorRow = new ReportRow(0, "ERROR", message, tagName, "", "", "",
                                 watchListType, "", transactionToken, runSkey,
                                 0, "ERROR", 0, "Processing failed: " + e.getMessage(),
-                                Constants.FAIL, "Processing error", "", false);
-                        queue.add(errorRow);
+                                Constants.FAIL, "Processing error", messageKey, false);
+                        errorRow.ruleType = "ERROR";
+                        errorRow.stratum = stratum;
+                        errorRow.stratumSize = stratumSize;
+                        if (rowStore != null) rowStore.add(errorRow);
+                        else queue.add(errorRow);
+                        threadSummary.get().accept(errorRow, errorRow.ruleType);
                         logger.warn("Created error ReportRow for token: {}", transactionToken);
                     } catch (Exception inner) {
                         logger.error("Failed to create error ReportRow for token: {}", transactionToken, inner);
@@ -325,144 +784,293 @@ public class AnalyzerMain {
                 }
             }, executor);
             futures.add(future);
+            if (rowStore != null && futures.size() == SCORE_BATCH_SIZE) {
+                awaitScoring(futures);
+                scored = release(transactionTokens, scored, scored + futures.size(),
+                        List.of(tokenToResponseIdToColumnNamesMap, feedbackMap, tokenToAdditionalDataMap, tokenToRawMsg));
+                futures.clear();
+            }
         }
 
         // Wait for all tasks to complete
+        awaitScoring(futures);
+
+        List<ReportRow> reportRows = rowStore != null ? rowStore : new ArrayList<>(queue);
+//        reportRows.sort(Comparator.comparingLong(rr -> rr.transactionToken));
+        ReportSummary summary = new ReportSummary();
+        for (ReportSummary partial : threadSummaries) {
+            summary.merge(partial);
+        }
+        event.items = transactionTokens.size();
+        event.commit();
+        long endTime = System.currentTimeMillis();
+        logger.info("Analysis processing took: {} ms", (endTime - startTime));
+        return new AnalysisResult(runSkey, reportRows, summary);
+    }
+
+    private static void awaitScoring(List<CompletableFuture<Void>> futures) {
         try {
             CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
         } catch (Exception e) {
             logger.error("Error during parallel processing: {}", e.getMessage(), e);
-        } finally {
-            executor.shutdown();
         }
+    }
 
-        List<ReportRow> reportRows = new ArrayList<>(queue);
-//        reportRows.sort(Comparator.comparingLong(rr -> rr.transactionToken));
-        long endTime = System.currentTimeMillis();
-        logger.info("Analysis processing took: {} ms", (endTime - startTime));
-        return reportRows;
+    // With a row store the rows are off the heap, so the fetched data of a scored batch is dropped as well. Called
+    // only when no scoring task is running, since the maps are plain HashMaps.
+    private static int release(List<Long> tokens, int from, int to, List<Map<Long, ?>> maps) {
+        for (Long token : tokens.subList(from, to)) {
+            for (Map<Long, ?> map : maps) {
+                map.remove(token);
+            }
+        }
+        return to;
     }
 
-    private static void writeSplitExcel(List<ReportRow> reportRows, String misDate, String runNo, String batchType, String matchHeader, String type, int rowLimit) throws IOException {
-        if (reportRows == null || reportRows.isEmpty()) return;
+    static void writeReports(List<ReportRow> reportRows, String misDate, String runNo, String batchType, String matchHeader, String type, int rowLimit, Properties props) throws IOException {
         long startTime = System.currentTimeMillis();
+        try (ReportSinks sinks = ReportSinks.open(props, misDate, runNo, batchType, matchHeader, type, rowLimit, reportRows)) {
+            for (ReportRow row : reportRows) {
+                sinks.accept(row);
+            }
+        }
+        logger.info("{} report writing took: {} ms", type, (System.currentTimeMillis() - startTime));
+    }
 
-        String prefix;
+    static String analysisFilePrefix(String misDate, String runNo, String batchType, String type) {
         if ("ISO20022".equalsIgnoreCase(batchType)) {
-            prefix = misDate + "_RUN" + runNo + "_STG_ANALYSIS_" + type;
+            return misDate + "_RUN" + runNo + "_STG_ANALYSIS_" + type;
         } else if ("NACHA".equalsIgnoreCase(batchType)) {
-            prefix = misDate + "_RUN" + runNo + "_ACH_ANALYSIS_" + type;
+            return misDate + "_RUN" + runNo + "_ACH_ANALYSIS_" + type;
         } else {
             throw new IllegalArgumentException("Invalid batchType");
         }
+    }
+
+    static void writeSplitExcel(List<ReportRow> reportRows, String misDate, String runNo, String batchType, String matchHeader, String type, int rowLimit, Properties props) throws IOException {
+        if (reportRows == null || reportRows.isEmpty()) return;
+        long startTime = System.currentTimeMillis();
+
+        String prefix = analysisFilePrefix(misDate, runNo, batchType, type);
 
         int fileCount = (int) Math.ceil((double) reportRows.size() / rowLimit);
+        boolean directWriter = !Constants.EXCEL_WRITER_POI.equalsIgnoreCase(props.getProperty(Constants.EXCEL_WRITER, Constants.EXCEL_WRITER_DIRECT));
+        int parallelism = excelWriteParallelism(reportRows, rowLimit, fileCount, directWriter, props);
+        logger.info("Writing {} {} workbook(s) with {} parallel writer(s)", fileCount, type, parallelism);
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
         for (int i = 0; i < fileCount; i++) {
             int start = i * rowLimit;
             int end = Math.min(start + rowLimit, reportRows.size());
             List<ReportRow> chunk = reportRows.subList(start, end);
 
             String fileName = (fileCount > 1) ? prefix + "_" + (i + 1) + Constants.XLSX_EXT : prefix + Constants.XLSX_EXT;
-
-            try (SXSSFWorkbook wb = new SXSSFWorkbook(100)) { // Streaming workbook, keep 100 rows in memory
-                Sheet sheet = wb.createSheet(type);
-
-                Font boldFont = wb.createFont();
-                boldFont.setBold(true);
-
-                CellStyle highlightGreen = wb.createCellStyle();
-                highlightGreen.setFillForegroundColor(IndexedColors.BRIGHT_GREEN.getIndex());
-                highlightGreen.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-                highlightGreen.setFont(boldFont);
-
-                CellStyle highlightRed = wb.createCellStyle();
-                highlightRed.setFillForegroundColor(IndexedColors.RED.getIndex());
-                highlightRed.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-                highlightRed.setFont(boldFont);
-
-                CellStyle highlightYellow = wb.createCellStyle();
-                highlightYellow.setFillForegroundColor(IndexedColors.YELLOW.getIndex());
-                highlightYellow.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-                highlightYellow.setFont(boldFont);
-
-                String[] headers = {
-                        Constants.SEQ_NO,
-                        Constants.RULE,
-                        Constants.MESSAGE,
-                        Constants.TAG,
-                        Constants.SOURCE_INPUT,
-                        Constants.TARGET_INPUT,
-                        Constants.TARGET_COLUMN,
-                        Constants.WATCHLIST,
-                        Constants.NUID,
-                        Constants.TRXN_TOKEN,
-                        Constants.RUN_SKEY,
-                        Constants.MATCH_COUNT,
-                        Constants.FEEDBACK_STATUS,
-                        matchHeader,
-                        Constants.FEEDBACK,
-                        Constants.TEST_STATUS,
-                        Constants.COMMENTS,
-                        Constants.MESSAGE_KEY
-                };
-                Row headerRow = sheet.createRow(0);
-                for (int j = 0; j < headers.length; j++) {
-                    headerRow.createCell(j).setCellValue(headers[j]);
+            File outputFile = new File(Constants.OUTPUT_FOLDER, fileName);
+            futures.add(CompletableFuture.runAsync(() -> {
+                AnalyzerPhaseEvent event = new AnalyzerPhaseEvent(AnalyzerPhaseEvent.EXCEL_WRITE, null);
+                event.begin();
+                try {
+                    if (directWriter) {
+                        ReportXlsxWriter.write(chunk, outputFile, matchHeader, type);
+                    } else {
+                        writeExcelChunk(chunk, outputFile, matchHeader, type);
+                    }
+                    if (event.shouldCommit()) {
+                        event.report = type + " " + outputFile.getName();
+                        event.items = chunk.size();
+                        event.commit();
+                    }
+                } catch (IOException e) {
+                    throw new CompletionException(e);
                 }
+            }, executor));
+        }
 
-                int rowNum = 1;
-                for (ReportRow rr : chunk) {
-                    Row row = sheet.createRow(rowNum);
-                    row.createCell(0).setCellValue(rowNum);
-                    row.createCell(1).setCellValue(rr.ruleName);
-                    row.createCell(2).setCellValue(rr.message);
-                    row.createCell(3).setCellValue(rr.tag);
-                    row.createCell(4).setCellValue(rr.sourceInput);
-                    row.createCell(5).setCellValue(rr.targetInput);
-                    row.createCell(6).setCellValue(rr.targetColumn);
-                    row.createCell(7).setCellValue(rr.watchlist);
-                    row.createCell(8).setCellValue(rr.nUid);
-                    row.createCell(9).setCellValue(rr.transactionToken);
-                    row.createCell(10).setCellValue(rr.runSkey);
-                    row.createCell(11).setCellValue(rr.matchCount);
-                    row.createCell(12).setCellValue(rr.feedbackStatus);
-                    row.createCell(13).setCellValue(rr.specificMatches);
-                    row.createCell(14).setCellValue(rr.feedback);
-                    row.createCell(15).setCellValue(rr.testStatus);
-
-                    if (Constants.PASS.equalsIgnoreCase(rr.testStatus)) {
-                        if (rr.isColumnMismatch) {
-                            row.getCell(15).setCellStyle(highlightYellow);
-                        } else {
-                            row.getCell(15).setCellStyle(highlightGreen);
-                        }
-                    } else  {
-                        row.getCell(15).setCellStyle(highlightRed);
-                    }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            logger.error("Error writing {} Excel reports: {}", type, e.getCause().getMessage(), e.getCause());
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        long endTime = System.currentTimeMillis();
+        logger.info("Excel writing took: {} ms", (endTime - startTime));
+    }
 
-                    row.createCell(16).setCellValue(rr.comments);
-                    row.createCell(17).setCellValue(rr.messageKey);
-                    rowNum++;
-                }
+    /**
+     * Number of workbooks to write at once: bounded by CPU count, by the heap each SXSSF row window needs and by the
+     * compressed temp files each workbook keeps on disk until it is zipped into its .xlsx.
+     * The direct writer streams straight into the zip, so it only needs its shared-strings table and buffers.
+     */
+    private static int excelWriteParallelism(List<ReportRow> reportRows, int rowLimit, int fileCount, boolean directWriter, Properties props) {
+        // Sample the row sizes rather than walking every row
+        int sampleStep = Math.max(1, reportRows.size() / 1000);
+        long sampledChars = 0;
+        int sampled = 0;
+        for (int i = 0; i < reportRows.size(); i += sampleStep) {
+            sampledChars += estimateRowChars(reportRows.get(i));
+            sampled++;
+        }
+        long avgRowChars = Math.max(1, sampledChars / Math.max(1, sampled));
+
+        // SXSSF keeps 100 rows in memory as UTF-16 plus cell objects, and each workbook carries its own styles and zip buffers
+        long heapPerWorkbook = directWriter ? (2L << 20) : 100 * avgRowChars * 2 * 3 + (8L << 20);
+        // Compressed temp sheet XML, roughly a third of the raw chunk text
+        long tempDiskPerWorkbook = directWriter ? 0 : (long) Math.min(rowLimit, reportRows.size()) * (avgRowChars + 18 * 40) / 3;
+
+        long memoryBudget = Long.parseLong(props.getProperty(Constants.EXCEL_WRITE_MEMORY_BUDGET_MB, "-1")) << 20;
+        if (memoryBudget < 0) {
+            memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+        }
+        long tempDiskBudget = Long.parseLong(props.getProperty(Constants.EXCEL_TEMP_DISK_BUDGET_MB, "-1")) << 20;
+        if (tempDiskBudget < 0) {
+            tempDiskBudget = new File(System.getProperty("java.io.tmpdir")).getUsableSpace() / 2;
+        }
+
+        long byMemory = memoryBudget / heapPerWorkbook;
+        long byDisk = tempDiskBudget / Math.max(1, tempDiskPerWorkbook);
+        long parallelism = Math.min(Runtime.getRuntime().availableProcessors(), Math.min(byMemory, byDisk));
+        return (int) Math.max(1, Math.min(parallelism, fileCount));
+    }
 
-                File outputFile = new File(Constants.OUTPUT_FOLDER, fileName);
-                try (FileOutputStream fos = new FileOutputStream(outputFile)) {
-                    wb.write(fos);
+    private static long estimateRowChars(ReportRow rr) {
+        return length(rr.ruleName) + length(rr.message) + length(rr.tag) + length(rr.sourceInput) + length(rr.targetInput)
+                + length(rr.targetColumn) + length(rr.watchlist) + length(rr.nUid) + length(rr.runSkey)
+                + length(rr.feedbackStatus) + length(rr.feedback) + length(rr.testStatus) + length(rr.comments)
+                + length(rr.messageKey) + 40;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static void writeExcelChunk(List<ReportRow> chunk, File outputFile, String matchHeader, String type) throws IOException {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(100)) { // Streaming workbook, keep 100 rows in memory
+            wb.setCompressTempFiles(true);
+            Sheet sheet = wb.createSheet(type);
+
+            Font boldFont = wb.createFont();
+            boldFont.setBold(true);
+
+            CellStyle highlightGreen = wb.createCellStyle();
+            highlightGreen.setFillForegroundColor(IndexedColors.BRIGHT_GREEN.getIndex());
+            highlightGreen.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+            highlightGreen.setFont(boldFont);
+
+            CellStyle highlightRed = wb.createCellStyle();
+            highlightRed.setFillForegroundColor(IndexedColors.RED.getIndex());
+            highlightRed.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+            highlightRed.setFont(boldFont);
+
+            CellStyle highlightYellow = wb.createCellStyle();
+            highlightYellow.setFillForegroundColor(IndexedColors.YELLOW.getIndex());
+            highlightYellow.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+            highlightYellow.setFont(boldFont);
+
+            String[] headers = {
+                    Constants.SEQ_NO,
+                    Constants.RULE,
+                    Constants.MESSAGE,
+                    Constants.TAG,
+                    Constants.SOURCE_INPUT,
+                    Constants.TARGET_INPUT,
+                    Constants.TARGET_COLUMN,
+                    Constants.WATCHLIST,
+                    Constants.NUID,
+                    Constants.TRXN_TOKEN,
+                    Constants.RUN_SKEY,
+                    Constants.MATCH_COUNT,
+                    Constants.FEEDBACK_STATUS,
+                    matchHeader,
+                    Constants.FEEDBACK,
+                    Constants.TEST_STATUS,
+                    Constants.COMMENTS,
+                    Constants.MESSAGE_KEY
+            };
+            Row headerRow = sheet.createRow(0);
+            for (int j = 0; j < headers.length; j++) {
+                headerRow.createCell(j).setCellValue(headers[j]);
+            }
+
+            int rowNum = 1;
+            for (ReportRow rr : chunk) {
+                Row row = sheet.createRow(rowNum);
+                row.createCell(0).setCellValue(rowNum);
+                row.createCell(1).setCellValue(rr.ruleName);
+                row.createCell(2).setCellValue(rr.message);
+                row.createCell(3).setCellValue(rr.tag);
+                row.createCell(4).setCellValue(rr.sourceInput);
+                row.createCell(5).setCellValue(rr.targetInput);
+                row.createCell(6).setCellValue(rr.targetColumn);
+                row.createCell(7).setCellValue(rr.watchlist);
+                row.createCell(8).setCellValue(rr.nUid);
+                row.createCell(9).setCellValue(rr.transactionToken);
+                row.createCell(10).setCellValue(rr.runSkey);
+                row.createCell(11).setCellValue(rr.matchCount);
+                row.createCell(12).setCellValue(rr.feedbackStatus);
+                row.createCell(13).setCellValue(rr.specificMatches);
+                row.createCell(14).setCellValue(rr.feedback);
+                row.createCell(15).setCellValue(rr.testStatus);
+
+                if (Constants.PASS.equalsIgnoreCase(rr.testStatus)) {
+                    if (rr.isColumnMismatch) {
+                        row.getCell(15).setCellStyle(highlightYellow);
+                    } else {
+                        row.getCell(15).setCellStyle(highlightGreen);
+                    }
+                } else  {
+                    row.getCell(15).setCellStyle(highlightRed);
                 }
-                logger.info("Excel report generated at: {}", outputFile.getAbsolutePath());
+
+                row.createCell(16).setCellValue(rr.comments);
+                row.createCell(17).setCellValue(rr.messageKey);
+                rowNum++;
+            }
+
+            try (FileOutputStream fos = new FileOutputStream(outputFile)) {
+                wb.write(fos);
+            } finally {
+                wb.dispose(); // Remove the compressed temp files as soon as the workbook is written
             }
+            logger.info("Excel report generated at: {}", outputFile.getAbsolutePath());
         }
-        long endTime = System.currentTimeMillis();
-        logger.info("Excel writing took: {} ms", (endTime - startTime));
     }
 
-    private static Map<Long, Map<Long, String>> getBulkColumnNameWLS(Connection connection, List<Long> transactionTokens, int msgCategory) throws Exception {
-        Map<Long, Map<Long, String>> tokenToColumnMap = new HashMap<>();
+    /**
+     * {@link #getBulkColumnNameWLS} with the IN-list chunks spread over up to {@code parallelism} connections, for
+     * callers that are not themselves one of several fetch workers. Small token lists stay on the caller's connection.
+     */
+    static Map<Long, Map<Long, Set<String>>> getBulkColumnNameWLSParallel(Connection connection, List<Long> transactionTokens, int msgCategory, int parallelism) throws Exception {
+        if (transactionTokens.size() <= WLS_IN_BATCH_SIZE || parallelism == 1) {
+            return getBulkColumnNameWLS(connection, transactionTokens, msgCategory);
+        }
+        int chunks = (transactionTokens.size() + WLS_IN_BATCH_SIZE - 1) / WLS_IN_BATCH_SIZE;
+        int sliceSize = ((chunks + parallelism - 1) / parallelism) * WLS_IN_BATCH_SIZE;
+        List<Callable<Map<Long, Map<Long, Set<String>>>>> tasks = new ArrayList<>();
+        for (int i = 0; i < transactionTokens.size(); i += sliceSize) {
+            List<Long> slice = transactionTokens.subList(i, Math.min(i + sliceSize, transactionTokens.size()));
+            tasks.add(() -> {
+                try (Connection sliceConnection = SQLUtility.getDbConnection()) {
+                    return getBulkColumnNameWLS(sliceConnection, slice, msgCategory);
+                }
+            });
+        }
+        Map<Long, Map<Long, Set<String>>> tokenToColumnMap = new HashMap<>();
+        for (Map<Long, Map<Long, Set<String>>> sliceMap : DbTasks.invokeAll(tasks, parallelism)) {
+            tokenToColumnMap.putAll(sliceMap);
+        }
+        return tokenToColumnMap;
+    }
+
+    static Map<Long, Map<Long, Set<String>>> getBulkColumnNameWLS(Connection connection, List<Long> transactionTokens, int msgCategory) throws Exception {
+        Map<Long, Map<Long, Set<String>>> tokenToColumnMap = new HashMap<>();
         if (transactionTokens.isEmpty()) return tokenToColumnMap;
+        Map<String, Set<String>> columnSets = new HashMap<>();
         // Batch in chunks to avoid IN clause limits
-        int batchSize = 1000;
-        for (int i = 0; i < transactionTokens.size(); i += batchSize) {
-            List<Long> batch = transactionTokens.subList(i, Math.min(i + batchSize, transactionTokens.size()));
+        for (int i = 0; i < transactionTokens.size(); i += WLS_IN_BATCH_SIZE) {
+            List<Long> batch = transactionTokens.subList(i, Math.min(i + WLS_IN_BATCH_SIZE, transactionTokens.size()));
             String placeholders = String.join(",", Collections.nCopies(batch.size(), "?"));
             String query = "SELECT N_GRP_MSG_ID, N_RESPONSE_ID, V_COLUMN_NAME FROM fcc_tf_rt_wls_response WHERE n_grp_msg_id IN (" + placeholders + ") AND n_msg_category = ?";
             try (PreparedStatement pst = connection.prepareStatement(query)) {
@@ -476,7 +1084,7 @@ public class AnalyzerMain {
                         long token = rs.getLong("N_GRP_MSG_ID");
                         long responseId = rs.getLong("N_RESPONSE_ID");
                         String columnName = rs.getString("V_COLUMN_NAME");
-                        tokenToColumnMap.computeIfAbsent(token, k -> new HashMap<>()).put(responseId, columnName);
+                        tokenToColumnMap.computeIfAbsent(token, k -> new HashMap<>()).put(responseId, columnNameSet(columnName, columnSets));
                     }
                 }
             } catch (Exception e) {
@@ -487,7 +1095,121 @@ public class AnalyzerMain {
         return tokenToColumnMap;
     }
 
-    private static Properties loadProperties() throws IOException {
+    /**
+     * Fetches the same token -> responseId -> column name data as {@link #getBulkColumnNameWLS} but joins
+     * fcc_tf_rt_wls_response against the batch table on N_RUN_SKEY instead of binding 1000-token IN lists.
+     * The token space is split into contiguous N_GRP_MSG_ID ranges, each fetched on its own pooled connection.
+     */
+    private static Map<Long, Map<Long, Set<String>>> getBulkColumnNameWLSByJoin(String runSkey, String batchTable, List<Long> transactionTokens, int msgCategory, int partitions,
+                                                                              int maxConnections) throws Exception {
+        Map<Long, Map<Long, Set<String>>> tokenToColumnMap = new HashMap<>();
+        if (transactionTokens.isEmpty()) return tokenToColumnMap;
+        long startTime = System.currentTimeMillis();
+
+        List<long[]> ranges = splitTokenRanges(transactionTokens, partitions);
+        String query = "SELECT w.N_GRP_MSG_ID, w.N_RESPONSE_ID, w.V_COLUMN_NAME " +
+                       "FROM fcc_tf_rt_wls_response w " +
+                       "JOIN " + batchTable + " b ON b.N_GRP_MSG_ID = w.N_GRP_MSG_ID " +
+                       "WHERE b.N_RUN_SKEY = ? AND w.n_msg_category = ? AND b.N_GRP_MSG_ID BETWEEN ? AND ?";
+
+        int parallelism = Math.max(1, Math.min(ranges.size(), maxConnections));
+        List<Callable<Map<Long, Map<Long, Set<String>>>>> tasks = new ArrayList<>();
+        for (long[] range : ranges) {
+            tasks.add(() -> {
+                Map<Long, Map<Long, Set<String>>> partitionMap = new HashMap<>();
+                Map<String, Set<String>> columnSets = new HashMap<>();
+                try (Connection connection = SQLUtility.getDbConnection();
+                     PreparedStatement pst = connection.prepareStatement(query)) {
+                    pst.setFetchSize(5000);
+                    pst.setLong(1, Long.parseLong(runSkey));
+                    pst.setInt(2, msgCategory);
+                    pst.setLong(3, range[0]);
+                    pst.setLong(4, range[1]);
+                    try (ResultSet rs = pst.executeQuery()) {
+                        while (rs.next()) {
+                            long token = rs.getLong(1);
+                            long responseId = rs.getLong(2);
+                            String columnName = rs.getString(3);
+                            partitionMap.computeIfAbsent(token, k -> new HashMap<>()).put(responseId, columnNameSet(columnName, columnSets));
+                        }
+                    }
+                } catch (Exception e) {
+                    logger.error("Error in getBulkColumnNameWLSByJoin for range {}-{}: {}", range[0], range[1], e.getMessage(), e);
+                    throw e;
+                }
+                return partitionMap;
+            });
+        }
+
+        for (Map<Long, Map<Long, Set<String>>> partitionMap : DbTasks.invokeAll(tasks, parallelism)) {
+            tokenToColumnMap.putAll(partitionMap);
+        }
+        logger.info("WLS column names fetched over {} ranges with {} connections in {} ms", ranges.size(), parallelism, (System.currentTimeMillis() - startTime));
+        return tokenToColumnMap;
+    }
+
+    /**
+     * Parses a V_COLUMN_NAME CSV once into a lower-cased set, shared between responses with the same CSV, so the
+     * matcher can test the target column with a single lookup.
+     */
+    static Set<String> columnNameSet(String columnNameCsv, Map<String, Set<String>> columnSets) {
+        if (columnNameCsv == null) return Collections.emptySet();
+        return columnSets.computeIfAbsent(columnNameCsv, csv -> {
+            Set<String> columns = new HashSet<>();
+            for (String column : csv.split(",")) {
+                columns.add(column.trim().toLowerCase(Locale.ROOT));
+            }
+            return columns;
+        });
+    }
+
+    /**
+     * True if {@code value} is one of the comma-separated, whitespace-trimmed entries of {@code csv}, without splitting it.
+     */
+    static boolean csvContains(String csv, String value) {
+        int start = 0;
+        int length = csv.length();
+        while (start <= length) {
+            int end = csv.indexOf(',', start);
+            if (end < 0) end = length;
+            int from = start;
+            int to = end;
+            while (from < to && csv.charAt(from) <= ' ') from++;
+            while (to > from && csv.charAt(to - 1) <= ' ') to--;
+            if (to - from == value.length() && csv.regionMatches(from, value, 0, value.length())) {
+                return true;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Splits the [min, max] N_GRP_MSG_ID span of the given tokens into at most {@code partitions} contiguous, inclusive ranges.
+     */
+    private static List<long[]> splitTokenRanges(List<Long> transactionTokens, int partitions) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (long token : transactionTokens) {
+            min = Math.min(min, token);
+            max = Math.max(max, token);
+        }
+        return splitTokenRanges(min, max, partitions);
+    }
+
+    static List<long[]> splitTokenRanges(long min, long max, int partitions) {
+        List<long[]> ranges = new ArrayList<>();
+        long span = max - min + 1;
+        long step = Math.max(1, (span + Math.max(1, partitions) - 1) / Math.max(1, partitions));
+        for (long lo = min; lo <= max; lo += step) {
+            long hi = Math.min(max, lo + step - 1);
+            ranges.add(new long[]{lo, hi});
+            if (hi == max) break;
+        }
+        return ranges;
+    }
+
+    static Properties loadProperties() throws IOException {
         Properties props = new Properties();
         try (FileReader reader = new FileReader(Constants.COMMON_CONFIG_FILE_PATH)) {
             props.load(reader);
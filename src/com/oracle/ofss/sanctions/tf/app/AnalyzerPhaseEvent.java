@@ -0,0 +1,54 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for one unit of analyzer work: a whole run skey, the raw message, feedback and WLS fetches of a
+ * partition, a scoring pass or one Excel workbook.
+ */
+@Name("com.oracle.ofss.sanctions.tf.AnalyzerPhase")
+@Label("Analyzer Phase")
+@Category({"Batch Message Processor", "Analyzer"})
+public class AnalyzerPhaseEvent extends jdk.jfr.Event {
+    static final String RUN = "run";
+    static final String RAW_FETCH = "rawFetch";
+    static final String FEEDBACK_FETCH = "feedbackFetch";
+    static final String WLS_FETCH = "wlsFetch";
+    static final String SCORE = "score";
+    static final String EXCEL_WRITE = "excelWrite";
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Run Skey")
+    String runSkey;
+
+    @Label("Report")
+    @Description("Report type and file, for Excel writing")
+    String report;
+
+    @Label("Partition Start")
+    @Description("First token of the partition, or the modulus with HASH splitting")
+    long partitionStart;
+
+    @Label("Partition End")
+    @Description("Last token of the partition, or the bucket with HASH splitting")
+    long partitionEnd;
+
+    @Label("Items")
+    long items;
+
+    @Label("Parse Time")
+    @Description("Time spent parsing raw message or feedback JSON within this event")
+    @Timespan(Timespan.NANOSECONDS)
+    long parseTime;
+
+    AnalyzerPhaseEvent(String phase, String runSkey) {
+        this.phase = phase;
+        this.runSkey = runSkey;
+    }
+}
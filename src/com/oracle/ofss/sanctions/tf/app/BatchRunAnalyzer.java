@@ -0,0 +1,143 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Analyses a list of run skeys (analyzer.runSkeys, e.g. {@code 101,105-110}) in one JVM over the shared pool.
+ * A fair semaphore bounds how many runs hold database connections at once, and grants permits in submission order.
+ * The pool is split between the runs in flight (see {@link #runProperties}) and all runs score on one shared
+ * CPU pool. Report writing happens after the permit is released, so it overlaps with the next
+ * run's queries. Each run gets its own reports and summary, and a combined summary adds a per-run-skey breakdown.
+ */
+public class BatchRunAnalyzer {
+    private static final Logger logger = LoggerFactory.getLogger(BatchRunAnalyzer.class);
+
+    public static void analyze(String runSkeySpec, String batchType, int msgCategory, String msgCategoryString,
+                               String misDate, String runNo, String matchHeader, int excelRowLimit, Properties props) throws Exception {
+        long startTime = System.currentTimeMillis();
+        List<String> runSkeys = parseRunSkeys(runSkeySpec);
+        int defaultConcurrency = Math.max(1, SQLUtility.getMaximumPoolSize() / 4);
+        int concurrency = Integer.parseInt(props.getProperty(Constants.RUN_CONCURRENCY, String.valueOf(defaultConcurrency)));
+        Semaphore permits = new Semaphore(Math.max(1, concurrency), true);
+        Properties runProps = runProperties(props, concurrency);
+        logger.info("Analysing {} run skeys with at most {} in flight, {} fetch connections each", runSkeys.size(), concurrency,
+                AnalyzerMain.fetchParallelism(runProps));
+
+        // Twice the permits so one run can write its reports while another holds the permit
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(runSkeys.size(), concurrency * 2)));
+        Map<String, ReportSummary> summaries = new ConcurrentSkipListMap<>();
+        Map<String, String> failures = new ConcurrentSkipListMap<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (String runSkey : runSkeys) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                String type = Constants.RUN_SKEY_TYPE_PREFIX + runSkey;
+                try {
+                    AnalysisResult result;
+                    permits.acquire();
+                    try (Connection connection = SQLUtility.getDbConnection()) {
+                        long runStart = System.currentTimeMillis();
+                        result = AnalyzerMain.processForRunSkey(connection, runSkey, batchType, msgCategory, msgCategoryString, runProps);
+                        logger.info("Run skey {} analysed in {} ms", runSkey, (System.currentTimeMillis() - runStart));
+                    } finally {
+                        permits.release();
+                    }
+                    try {
+                        AnalyzerMain.writeReports(result.reportRows, misDate, runNo, batchType, matchHeader, type, excelRowLimit, props);
+                        result.summary.write(AnalyzerMain.analysisFilePrefix(misDate, runNo, batchType, type), type);
+                    } finally {
+                        ReportRowStore.release(result.reportRows);
+                    }
+                    summaries.put(runSkey, result.summary);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failures.put(runSkey, "interrupted");
+                } catch (Exception e) {
+                    // One bad run skey must not cost the rest of the nightly suite
+                    logger.error("Run skey {} failed: {}", runSkey, e.getMessage(), e);
+                    failures.put(runSkey, String.valueOf(e.getMessage()));
+                }
+            }, executor));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } finally {
+            executor.shutdown();
+        }
+
+        ReportSummary combined = new ReportSummary();
+        for (Map.Entry<String, ReportSummary> entry : summaries.entrySet()) {
+            combined.mergeRun(entry.getKey(), entry.getValue());
+        }
+        combined.write(AnalyzerMain.analysisFilePrefix(misDate, runNo, batchType, Constants.COMBINED_TYPE), Constants.COMBINED_TYPE);
+        logger.info("Batch analysis finished: {} of {} run skeys in {} s", summaries.size(), runSkeys.size(),
+                (System.currentTimeMillis() - startTime) / 1000L);
+        if (!failures.isEmpty()) {
+            throw new Exception("Analysis failed for run skeys " + failures);
+        }
+    }
+
+    /**
+     * Splits the pool between the runs in flight: each run holds its own connection plus up to fetchParallelism
+     * fetch connections, so without an explicit analyzer.fetchParallelism that is (pool - runs) / runs. Scoring
+     * runs on the analyzer's shared pool.
+     */
+    static Properties runProperties(Properties props, int concurrency) {
+        int poolSize = SQLUtility.getMaximumPoolSize();
+        int runs = Math.max(1, concurrency);
+        if (props.getProperty(Constants.FETCH_PARALLELISM) != null) {
+            int fetchParallelism = AnalyzerMain.fetchParallelism(props);
+            if (runs * (1 + fetchParallelism) > poolSize) {
+                logger.warn("{} runs with {}={} need up to {} connections, the pool has {}", runs, Constants.FETCH_PARALLELISM,
+                        fetchParallelism, runs * (1 + fetchParallelism), poolSize);
+            }
+            return props;
+        }
+        Properties runProps = new Properties();
+        runProps.putAll(props);
+        runProps.setProperty(Constants.FETCH_PARALLELISM, String.valueOf(Math.max(1, (poolSize - runs) / runs)));
+        return runProps;
+    }
+
+    /**
+     * Parses a comma-separated list of run skeys and inclusive ranges ({@code 101,105-110}), keeping the first
+     * occurrence of each.
+     */
+    static List<String> parseRunSkeys(String spec) {
+        Set<String> runSkeys = new LinkedHashSet<>();
+        for (String part : spec.split(",")) {
+            String item = part.trim();
+            if (item.isEmpty()) continue;
+            int dash = item.indexOf('-', 1);
+            if (dash > 0) {
+                long from = Long.parseLong(item.substring(0, dash).trim());
+                long to = Long.parseLong(item.substring(dash + 1).trim());
+                if (to < from) {
+                    throw new IllegalArgumentException("Invalid run skey range: " + item);
+                }
+                for (long runSkey = from; runSkey <= to; runSkey++) {
+                    runSkeys.add(String.valueOf(runSkey));
+                }
+            } else {
+                runSkeys.add(String.valueOf(Long.parseLong(item)));
+            }
+        }
+        if (runSkeys.isEmpty()) {
+            throw new IllegalArgumentException("No run skeys in " + Constants.RUN_SKEYS + ": " + spec);
+        }
+        return new ArrayList<>(runSkeys);
+    }
+}
@@ -0,0 +1,303 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Writes report rows to a compact typed columnar file (.rcol).
+ *
+ * <pre>
+ * header    : int MAGIC, int VERSION, int columnCount, columnCount x (UTF name, byte type)
+ * row group : byte ROW_GROUP, int rows, then each column in schema order:
+ *             INT    rows x int          LONG   rows x long
+ *             BOOL   ceil(rows/8) bytes  DICT   rows x int code (-1 = null)
+ *             STRING rows x (int byteLength (-1 = null), UTF-8 bytes)
+ * footer    : byte END, long totalRows, per DICT column: int size, size x (int byteLength, UTF-8 bytes),
+ *             long footerOffset, int MAGIC
+ * </pre>
+ *
+ * Low-cardinality string columns are dictionary encoded; the dictionaries are written once in the footer.
+ */
+public class ColumnarReportSink implements ReportSink {
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarReportSink.class);
+
+    static final int MAGIC = 0x52434F4C; // "RCOL"
+    static final int VERSION = 1;
+    static final byte ROW_GROUP = 1;
+    static final byte END = 2;
+
+    static final byte INT = 0;
+    static final byte LONG = 1;
+    static final byte BOOL = 2;
+    static final byte DICT = 3;
+    static final byte STRING = 4;
+
+    private static final int ROW_GROUP_SIZE = 65536;
+
+    // Schema, in ReportRow order
+    private static final String[] NAMES = {
+            "seqNo", "ruleName", "message", "tag", "sourceInput", "targetInput", "targetColumn", "watchlist", "nUid",
+            "transactionToken", "runSkey", "matchCount", "feedbackStatus", "specificMatches", "feedback", "testStatus",
+            "comments", "messageKey", "isColumnMismatch"
+    };
+    private static final byte[] TYPES = {
+            INT, DICT, STRING, DICT, STRING, STRING, DICT, DICT, STRING,
+            LONG, DICT, INT, DICT, INT, STRING, DICT,
+            DICT, STRING, BOOL
+    };
+
+    private final File outputFile;
+    private final FileOutputStream fileOut;
+    private final DataOutputStream out;
+    private final StringDictionary[] dictionaries = new StringDictionary[TYPES.length];
+
+    private final int[] seqNos = new int[ROW_GROUP_SIZE];
+    private final long[] tokens = new long[ROW_GROUP_SIZE];
+    private final int[] matchCounts = new int[ROW_GROUP_SIZE];
+    private final int[] specificMatches = new int[ROW_GROUP_SIZE];
+    private final boolean[] columnMismatches = new boolean[ROW_GROUP_SIZE];
+    private final int[][] dictCodes = new int[TYPES.length][];
+    private final String[][] strings = new String[TYPES.length][];
+    private int buffered;
+    private long totalRows;
+
+    public ColumnarReportSink(File outputFile) throws IOException {
+        this.outputFile = outputFile;
+        this.fileOut = new FileOutputStream(outputFile);
+        this.out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+        for (int c = 0; c < TYPES.length; c++) {
+            if (TYPES[c] == DICT) {
+                dictionaries[c] = new StringDictionary();
+                dictCodes[c] = new int[ROW_GROUP_SIZE];
+            } else if (TYPES[c] == STRING) {
+                strings[c] = new String[ROW_GROUP_SIZE];
+            }
+        }
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(NAMES.length);
+        for (int c = 0; c < NAMES.length; c++) {
+            out.writeUTF(NAMES[c]);
+            out.writeByte(TYPES[c]);
+        }
+    }
+
+    @Override
+    public void accept(ReportRow rr) throws IOException {
+        int i = buffered++;
+        seqNos[i] = (int) (totalRows + i + 1);
+        dict(1, i, rr.ruleName);
+        strings[2][i] = rr.message;
+        dict(3, i, rr.tag);
+        strings[4][i] = rr.sourceInput;
+        strings[5][i] = rr.targetInput;
+        dict(6, i, rr.targetColumn);
+        dict(7, i, rr.watchlist);
+        strings[8][i] = rr.nUid;
+        tokens[i] = rr.transactionToken;
+        dict(10, i, rr.runSkey);
+        matchCounts[i] = rr.matchCount;
+        dict(12, i, rr.feedbackStatus);
+        specificMatches[i] = rr.specificMatches;
+        strings[14][i] = rr.feedback;
+        dict(15, i, rr.testStatus);
+        dict(16, i, rr.comments);
+        strings[17][i] = rr.messageKey;
+        columnMismatches[i] = rr.isColumnMismatch;
+        if (buffered == ROW_GROUP_SIZE) {
+            flushRowGroup();
+        }
+    }
+
+    private void dict(int column, int row, String value) {
+        dictCodes[column][row] = dictionaries[column].encode(value);
+    }
+
+    private void flushRowGroup() throws IOException {
+        if (buffered == 0) return;
+        out.writeByte(ROW_GROUP);
+        out.writeInt(buffered);
+        for (int c = 0; c < TYPES.length; c++) {
+            switch (TYPES[c]) {
+                case INT:
+                    int[] ints = c == 0 ? seqNos : (c == 11 ? matchCounts : specificMatches);
+                    for (int i = 0; i < buffered; i++) out.writeInt(ints[i]);
+                    break;
+                case LONG:
+                    for (int i = 0; i < buffered; i++) out.writeLong(tokens[i]);
+                    break;
+                case BOOL:
+                    for (int i = 0; i < buffered; i += 8) {
+                        int bits = 0;
+                        for (int b = 0; b < 8 && i + b < buffered; b++) {
+                            if (columnMismatches[i + b]) bits |= 1 << b;
+                        }
+                        out.writeByte(bits);
+                    }
+                    break;
+                case DICT:
+                    for (int i = 0; i < buffered; i++) out.writeInt(dictCodes[c][i]);
+                    break;
+                default:
+                    for (int i = 0; i < buffered; i++) {
+                        writeString(out, strings[c][i]);
+                        strings[c][i] = null;
+                    }
+            }
+        }
+        totalRows += buffered;
+        buffered = 0;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushRowGroup();
+            out.flush();
+            long footerOffset = fileOut.getChannel().position();
+            out.writeByte(END);
+            out.writeLong(totalRows);
+            for (int c = 0; c < TYPES.length; c++) {
+                if (TYPES[c] != DICT) continue;
+                StringDictionary dictionary = dictionaries[c];
+                out.writeInt(dictionary.size());
+                for (int code = 0; code < dictionary.size(); code++) {
+                    writeString(out, dictionary.decode(code));
+                }
+            }
+            out.writeLong(footerOffset);
+            out.writeInt(MAGIC);
+        } finally {
+            out.close();
+        }
+        logger.info("Columnar report generated at: {} ({} rows)", outputFile.getAbsolutePath(), totalRows);
+    }
+
+    /**
+     * Reads a .rcol file back, row by row. {@code seqNo} is restored from the file.
+     */
+    public static void forEachRow(File file, Consumer<ReportRow> consumer) throws IOException {
+        List<List<String>> dictionaryValues = new ArrayList<>();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(raf.length() - 12);
+            long footerOffset = raf.readLong();
+            if (raf.readInt() != MAGIC) {
+                throw new IOException("Not a columnar report file: " + file);
+            }
+            raf.seek(footerOffset);
+            if (raf.readByte() != END) {
+                throw new IOException("Corrupt columnar report footer: " + file);
+            }
+            raf.readLong();
+            for (byte type : TYPES) {
+                if (type != DICT) continue;
+                int size = raf.readInt();
+                List<String> values = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    int len = raf.readInt();
+                    byte[] bytes = new byte[len];
+                    raf.readFully(bytes);
+                    values.add(new String(bytes, StandardCharsets.UTF_8));
+                }
+                dictionaryValues.add(values);
+            }
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unsupported columnar report file: " + file);
+            }
+            int columns = in.readInt();
+            for (int c = 0; c < columns; c++) {
+                in.readUTF();
+                in.readByte();
+            }
+            while (in.readByte() == ROW_GROUP) {
+                int rows = in.readInt();
+                Object[] data = new Object[TYPES.length];
+                int dictIndex = 0;
+                for (int c = 0; c < TYPES.length; c++) {
+                    switch (TYPES[c]) {
+                        case INT: {
+                            int[] values = new int[rows];
+                            for (int i = 0; i < rows; i++) values[i] = in.readInt();
+                            data[c] = values;
+                            break;
+                        }
+                        case LONG: {
+                            long[] values = new long[rows];
+                            for (int i = 0; i < rows; i++) values[i] = in.readLong();
+                            data[c] = values;
+                            break;
+                        }
+                        case BOOL: {
+                            boolean[] values = new boolean[rows];
+                            for (int i = 0; i < rows; i += 8) {
+                                int bits = in.readUnsignedByte();
+                                for (int b = 0; b < 8 && i + b < rows; b++) values[i + b] = (bits & (1 << b)) != 0;
+                            }
+                            data[c] = values;
+                            break;
+                        }
+                        case DICT: {
+                            List<String> dictionary = dictionaryValues.get(dictIndex++);
+                            String[] values = new String[rows];
+                            for (int i = 0; i < rows; i++) {
+                                int code = in.readInt();
+                                values[i] = code < 0 ? null : dictionary.get(code);
+                            }
+                            data[c] = values;
+                            break;
+                        }
+                        default: {
+                            String[] values = new String[rows];
+                            for (int i = 0; i < rows; i++) {
+                                int len = in.readInt();
+                                if (len < 0) continue;
+                                byte[] bytes = new byte[len];
+                                in.readFully(bytes);
+                                values[i] = new String(bytes, StandardCharsets.UTF_8);
+                            }
+                            data[c] = values;
+                        }
+                    }
+                }
+                for (int i = 0; i < rows; i++) {
+                    consumer.accept(new ReportRow(((int[]) data[0])[i], s(data, 1, i), s(data, 2, i), s(data, 3, i),
+                            s(data, 4, i), s(data, 5, i), s(data, 6, i), s(data, 7, i), s(data, 8, i),
+                            ((long[]) data[9])[i], s(data, 10, i), ((int[]) data[11])[i], s(data, 12, i),
+                            ((int[]) data[13])[i], s(data, 14, i), s(data, 15, i), s(data, 16, i), s(data, 17, i),
+                            ((boolean[]) data[18])[i]));
+                }
+            }
+        }
+    }
+
+    private static String s(Object[] data, int column, int row) {
+        return ((String[]) data[column])[row];
+    }
+}
@@ -58,6 +58,11 @@ public class Constants {
     public static String MATCHING_STATUS = "status";
     public static String MATCHING_COUNT = "matchCount";
     public static String WEBSERVICE_ID = "webServiceId";
+    public static String WLS_FETCH_MODE = "analyzer.wlsFetchMode";
+    public static String FETCH_PARTITIONS = "analyzer.fetchPartitions";
+    public static String PARTITIONED_FETCH = "analyzer.partitionedFetch";
+    public static String FETCH_PARALLELISM = "analyzer.fetchParallelism";
+    public static String FETCH_SPLIT = "analyzer.fetchSplit";
 
 
     // CED properties
@@ -72,8 +77,15 @@ public class Constants {
     public static String WHERE_CLAUSE =  "whereClause";
     public static String REPLACE_SRC =  "replace.src";
     public static String REPLACE_TARGET_COLUMN =  "replace.targetColumn";
+    public static String PACKING_SLOT =  "packing.slot";
+    public static String PACKING_SLOT_TOKEN =  ".token";
+    public static String PACKING_SLOT_TAGNAME =  ".tagName";
     public static String CONNECTION_ESTABLISHED =  "Connection established successfully!";
     public static String TNS_ADMIN =  "oracle.net.tns_admin";
+    public static String LOB_PREFETCH_SIZE =  "lobPrefetchSize";
+    public static int DEFAULT_LOB_PREFETCH_SIZE = 32768;
+    public static String STATEMENT_CACHE_SIZE =  "statementCacheSize";
+    public static int DEFAULT_STATEMENT_CACHE_SIZE = 50;
 
     // JSON keys
     public static String UID =  "uid";
@@ -89,6 +101,10 @@ public class Constants {
     public static String LOOKUP_ID = "lookupId";
     public static String LOOKUP_VALUE_ID = "lookupValueId";
     public static String MESSAGE_KEY_ADDITIONAL = "messageKey";
+    public static String SLOTS = "slots";
+    public static String SLOT = "slot";
+    public static String STRATUM = "stratum";
+    public static String STRATUM_SIZE = "stratumSize";
 
     // Date formats
     public static String DATE_TIME_FORMAT = "ddMMyyHHmmss";
@@ -111,6 +127,119 @@ public class Constants {
     public static int DEFAULT_ROW_LIMIT = 1000;
     public static String EXCEL_ROW_LIMIT = "excelRowLimit";
     public static int DEFAULT_EXCEL_ROW_LIMIT = 1000;
+    public static String EXCEL_WRITE_MEMORY_BUDGET_MB = "excelWriteMemoryBudgetMb";
+    public static String EXCEL_TEMP_DISK_BUDGET_MB = "excelTempDiskBudgetMb";
+    public static String EXCEL_WRITER = "analyzer.excelWriter";
+    public static final String EXCEL_WRITER_DIRECT = "DIRECT";
+    public static final String EXCEL_WRITER_POI = "POI";
+
+    // Report sinks
+    public static String REPORT_SINKS = "analyzer.reportSinks";
+    public static String EXCEL_FILTER = "analyzer.excel.filter";
+    public static final String EXCEL_FILTER_ALL = "ALL";
+    public static final String EXCEL_FILTER_FAILURES = "FAILURES";
+    public static final String SINK_EXCEL = "EXCEL";
+    public static final String SINK_CSV = "CSV";
+    public static final String SINK_JSONL = "JSONL";
+    public static final String SINK_COLUMNAR = "COLUMNAR";
+
+    // Follow mode
+    public static String FOLLOW_MODE = "analyzer.follow";
+    public static String FOLLOW_POLL_INTERVAL_SEC = "analyzer.follow.pollIntervalSec";
+    public static String FOLLOW_IDLE_POLLS = "analyzer.follow.idlePolls";
+    public static String FOLLOW_MAX_MINUTES = "analyzer.follow.maxMinutes";
+    public static String FOLLOW_HWM_COLUMN = "analyzer.follow.hwmColumn";
+    public static String FOLLOW_HWM_LAG = "analyzer.follow.hwmLag";
+    public static final String DEFAULT_FOLLOW_HWM_COLUMN = "ORA_ROWSCN";
+
+    // Persistent per-token result cache
+    public static String RESULT_CACHE = "analyzer.resultCache";
+    public static String RESULT_CACHE_MAX_STALE_PCT = "analyzer.resultCache.maxStalePct";
+    public static String RESULT_CACHE_FOLDER_NAME = "cache";
+
+    // Report row storage
+    public static String ROW_STORE = "analyzer.rowStore";
+    public static final String ROW_STORE_HEAP = "HEAP";
+    public static final String ROW_STORE_MAPPED = "MAPPED";
+
+    // Multi-run-skey batch analysis
+    public static String RUN_SKEYS = "analyzer.runSkeys";
+    public static String RUN_CONCURRENCY = "analyzer.runConcurrency";
+    public static final String RUN_SKEY_TYPE_PREFIX = "RUN_";
+    public static final String COMBINED_TYPE = "COMBINED";
+
+    // Expected-outcome sidecar index
+    public static String EXPECTED_INDEX = "analyzer.expectedIndex";
+    public static String GENERATOR_EXPECTED_INDEX = "generator.expectedIndex";
+    public static final String EXPECTED_INDEX_AUTO = "AUTO";
+    public static final String EXPECTED_INDEX_EXT = ".expidx";
+    public static final String SLOT_INDEX_EXT = ".slotidx";
+
+    // Failed message replay
+    public static String FAILED_KEYS = "analyzer.failedKeys";
+    public static final String FAILED_KEYS_SUFFIX = "_FAILED_KEYS.txt";
+    public static final String REPLAY_COMMAND = "replay";
+    public static final String REPLAY_FOLDER_NAME = "replay";
+
+    // Multi-node partitioned generation
+    public static String GENERATOR_NODE_INDEX = "generator.nodeIndex";
+    public static String GENERATOR_NODE_COUNT = "generator.nodeCount";
+    public static final String NODE_COMMAND = "node";
+    public static final String MERGE_COMMAND = "merge";
+    public static final String NODE_FOLDER_PREFIX = "node_";
+
+    // Stratified sampling for smoke runs
+    public static String SAMPLE_PER_STRATUM = "generator.sample.perStratum";
+    public static String SAMPLE_SEED = "generator.sample.seed";
+    public static String SAMPLE_VARIANTS_PER_TYPE = "generator.sample.variantsPerType";
+    public static final long DEFAULT_SAMPLE_SEED = 1;
+    public static final int DEFAULT_SAMPLE_VARIANTS_PER_TYPE = 2;
+
+    // Dry-run estimate
+    public static final String DRY_RUN_COMMAND = "dryrun";
+    public static String DRY_RUN_SAMPLE_ROWS = "dryRun.sampleRows";
+    public static String DRY_RUN_GENERATE_RATE = "dryRun.generateRate";
+    public static String DRY_RUN_ANALYZE_RATE = "dryRun.analyzeRate";
+    public static String DRY_RUN_BUDGET_MESSAGES = "dryRun.budget.messages";
+    public static String DRY_RUN_BUDGET_FILES = "dryRun.budget.files";
+    public static String DRY_RUN_BUDGET_MEGABYTES = "dryRun.budget.megabytes";
+    public static String DRY_RUN_BUDGET_MINUTES = "dryRun.budget.minutes";
+    public static final int DEFAULT_DRY_RUN_SAMPLE_ROWS = 500;
+    // Messages and report rows per second; set them from a measured run on the target environment
+    public static final double DEFAULT_DRY_RUN_GENERATE_RATE = 2000;
+    public static final double DEFAULT_DRY_RUN_ANALYZE_RATE = 1000;
+    public static final String DRY_RUN_FILE_NAME = "dry_run_estimate.json";
+
+    // Rate-controlled continuous load
+    public static final String LOAD_COMMAND = "load";
+    public static String LOAD_RATE = "load.rate";
+    public static String LOAD_DURATION_SECONDS = "load.durationSeconds";
+    public static String LOAD_PROFILE = "load.profile";
+    public static String LOAD_BURST_SECONDS = "load.burstSeconds";
+    public static String LOAD_SHARD_SIZE = "load.shardSize";
+    public static String LOAD_FLUSH_MILLIS = "load.flushMillis";
+    public static String LOAD_MIX = "load.mix.";
+    public static final double DEFAULT_LOAD_BURST_SECONDS = 1;
+    public static final long DEFAULT_LOAD_FLUSH_MILLIS = 1000;
+    public static final String LOAD_FOLDER_NAME = "load";
+    public static final String LOAD_RATE_FILE_NAME = "load_rate.csv";
+
+    // Resident job daemon
+    public static String DAEMON_PORT = "daemon.port";
+    public static String DAEMON_JOB_DIR = "daemon.jobDir";
+    public static String DAEMON_HISTORY = "daemon.history";
+    public static String GENERATOR_LOOKUP_CACHE = "generator.lookupCache";
+    public static final int DEFAULT_DAEMON_PORT = 8765;
+    public static final int DEFAULT_DAEMON_HISTORY = 200;
+    public static final String DAEMON_JOB_FOLDER_NAME = "jobs";
+    public static final String JOB_GENERATE = "generate";
+    public static final String JOB_ANALYZE = "analyze";
+
+    // Flight recording
+    public static String JFR_ENABLED = "jfr.enabled";
+    public static String JFR_SETTINGS = "jfr.settings";
+    public static final String DEFAULT_JFR_SETTINGS = "profile";
+    public static final String JFR_EXT = ".jfr";
     public static String FILE_NAME_LIST = "filename.txt";
     public static String RUN_DETAILS_FILE_NAME = "run_details.json";
 
@@ -149,6 +278,9 @@ public class Constants {
     public static final String DEFAULT_CONFIG_BASE = "config";
     public static final String XLSX_EXT = ".xlsx";
     public static final String JSON_EXT = ".json";
+    public static final String CSV_EXT = ".csv";
+    public static final String JSONL_EXT = ".jsonl";
+    public static final String COLUMNAR_EXT = ".rcol";
     public static final String MATCHES = "matches";
     public static final String MATCHED_WATCHLIST_ID = "matchedWatchlistId";
     public static final String RESPONSE_ID = "responseID";
@@ -159,4 +291,11 @@ public class Constants {
     public static final int FOUR = 4;
     public static final String WEBSERVICE_ID_FROM_MATCH = "webServiceID";
     public static final String INSERT_CHAR = "X";
+
+    // WLS column-name fetch modes
+    public static final String WLS_FETCH_MODE_JOIN = "JOIN";
+    public static final String WLS_FETCH_MODE_IN = "IN";
+    public static final int DEFAULT_FETCH_PARTITIONS = 4;
+    public static final String FETCH_SPLIT_RANGE = "RANGE";
+    public static final String FETCH_SPLIT_HASH = "HASH";
 }
@@ -0,0 +1,108 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams report rows to a single RFC 4180 CSV file with the same columns as the Excel report.
+ */
+public class CsvReportSink implements ReportSink {
+    private static final Logger logger = LoggerFactory.getLogger(CsvReportSink.class);
+
+    private final File outputFile;
+    private final Writer writer;
+    private int seqNo;
+
+    public CsvReportSink(File outputFile, String matchHeader) throws IOException {
+        this.outputFile = outputFile;
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8), 1 << 16);
+        String[] headers = ReportSinks.headers(matchHeader);
+        for (int i = 0; i < headers.length; i++) {
+            if (i > 0) writer.write(',');
+            writeField(headers[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    @Override
+    public void accept(ReportRow rr) throws IOException {
+        seqNo++;
+        writer.write(Integer.toString(seqNo));
+        writer.write(',');
+        writeField(rr.ruleName);
+        writer.write(',');
+        writeField(rr.message);
+        writer.write(',');
+        writeField(rr.tag);
+        writer.write(',');
+        writeField(rr.sourceInput);
+        writer.write(',');
+        writeField(rr.targetInput);
+        writer.write(',');
+        writeField(rr.targetColumn);
+        writer.write(',');
+        writeField(rr.watchlist);
+        writer.write(',');
+        writeField(rr.nUid);
+        writer.write(',');
+        writer.write(Long.toString(rr.transactionToken));
+        writer.write(',');
+        writeField(rr.runSkey);
+        writer.write(',');
+        writer.write(Integer.toString(rr.matchCount));
+        writer.write(',');
+        writeField(rr.feedbackStatus);
+        writer.write(',');
+        writer.write(Integer.toString(rr.specificMatches));
+        writer.write(',');
+        writeField(rr.feedback);
+        writer.write(',');
+        writeField(rr.testStatus);
+        writer.write(',');
+        writeField(rr.comments);
+        writer.write(',');
+        writeField(rr.messageKey);
+        writer.write("\r\n");
+    }
+
+    private void writeField(String value) throws IOException {
+        if (value == null || value.isEmpty()) return;
+        boolean quote = false;
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == ',' || ch == '"' || ch == '\n' || ch == '\r') {
+                quote = true;
+                break;
+            }
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        int runStart = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '"') {
+                writer.write(value, runStart, i - runStart + 1);
+                writer.write('"');
+                runStart = i + 1;
+            }
+        }
+        writer.write(value, runStart, value.length() - runStart);
+        writer.write('"');
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+        logger.info("CSV report generated at: {} ({} rows)", outputFile.getAbsolutePath(), seqNo);
+    }
+}
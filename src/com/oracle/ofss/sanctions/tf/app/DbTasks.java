@@ -0,0 +1,116 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-out for blocking JDBC work. On JDK 21+ each task gets its own virtual thread, so a task waiting on the
+ * database holds no platform thread, and a semaphore caps the tasks in flight to what the connection pool can serve.
+ * On older JVMs the same calls use a fixed platform pool of that size. CPU-bound scoring and report writing keep
+ * their own bounded pools.
+ */
+public class DbTasks {
+    private static final Logger logger = LoggerFactory.getLogger(DbTasks.class);
+
+    // Interval of the log line while cancelled tasks are still running
+    private static final long TERMINATION_LOG_SECONDS = 30;
+
+    // Executors.newVirtualThreadPerTaskExecutor, looked up reflectively so the code still builds and runs on JDK 17
+    private static final Method VIRTUAL_EXECUTOR = virtualExecutorFactory();
+
+    private static Method virtualExecutorFactory() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            logger.info("Blocking JDBC tasks will run on virtual threads");
+            return factory;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    public static boolean virtualThreads() {
+        return VIRTUAL_EXECUTOR != null;
+    }
+
+    /**
+     * An executor for blocking tasks. With virtual threads it is unbounded and the caller must cap the tasks in
+     * flight; otherwise it is a fixed pool of {@code maxThreads}.
+     */
+    public static ExecutorService newExecutor(int maxThreads) {
+        if (VIRTUAL_EXECUTOR != null) {
+            try {
+                return (ExecutorService) VIRTUAL_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                logger.warn("Virtual thread executor unavailable, using platform threads: {}", e.getMessage());
+            }
+        }
+        return Executors.newFixedThreadPool(Math.max(1, maxThreads));
+    }
+
+    /**
+     * Runs the tasks with at most {@code maxConcurrent} in flight and returns their results in task order. The first
+     * failure cancels the queued tasks and interrupts the running ones, then waits for them to finish before it is
+     * rethrown, so no task outlives the call. JDBC calls do not react to interrupts, so a running query still runs
+     * to completion (or to its query timeout) before the call returns.
+     */
+    public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, int maxConcurrent) throws Exception {
+        int limit = Math.max(1, Math.min(maxConcurrent, tasks.size()));
+        if (tasks.size() == 1) {
+            return Collections.singletonList(tasks.get(0).call());
+        }
+        Semaphore permits = new Semaphore(limit);
+        ExecutorService executor = newExecutor(limit);
+        CompletionService<Object[]> completion = new ExecutorCompletionService<>(executor);
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                int index = i;
+                Callable<T> task = tasks.get(i);
+                completion.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return new Object[]{index, task.call()};
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+            Object[] results = new Object[tasks.size()];
+            for (int done = 0; done < tasks.size(); done++) {
+                Future<Object[]> future = completion.take();
+                try {
+                    Object[] result = future.get();
+                    results[(Integer) result[0]] = result[1];
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+            @SuppressWarnings("unchecked")
+            List<T> ordered = (List<T>) Arrays.asList(results);
+            return ordered;
+        } finally {
+            executor.shutdownNow();
+            awaitTermination(executor);
+        }
+    }
+
+    // Waits for the tasks a shutdownNow has interrupted, since JDBC calls may not stop at once
+    static void awaitTermination(ExecutorService executor) throws InterruptedException {
+        while (!executor.awaitTermination(TERMINATION_LOG_SECONDS, TimeUnit.SECONDS)) {
+            logger.warn("Still waiting for cancelled database tasks to finish");
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Estimate of a generation without writing any messages ({@code RawMessageGeneratorMain dryrun}). For every enabled
+ * config and watchlist it reads a seeded {@code ORA_HASH} sample of about dryRun.sampleRows table rows (sized from
+ * NUM_ROWS in ALL_TAB_STATISTICS), applies the generation's filters within it and scales the rows that pass back up,
+ * so no watchlist rows are read in full. With generator.sample.perStratum the row count comes instead from one
+ * GROUP BY over the generation's strata, capped at perStratum each, and every stratum takes the variants per row of
+ * its own sampled rows. The sampled rows go through the enabled CED, stopword and synonym stages, only counting the
+ * variants. The sampled values per row, variants per value and serialized bytes per value
+ * are scaled up to the row estimate to give messages, files and bytes, and the times follow from
+ * dryRun.generateRate and dryRun.analyzeRate. The estimate goes to
+ * out/dry_run_estimate.json; totals over the dryRun.budget.* limits, or over the free space of the output folder,
+ * are logged as warnings and returned.
+ */
+public class DryRunEstimator {
+    private static final Logger logger = LoggerFactory.getLogger(DryRunEstimator.class);
+
+    // Exact messages serialized to measure bytes per value
+    private static final int BYTE_SAMPLE_VALUES = 50;
+    // Hash buckets of the row sample; a row is sampled when its bucket is below the sampled share of them
+    private static final long HASH_BUCKETS = 1_000_000;
+    private static final int SAMPLE_HASH_SEED = 7;
+
+    /**
+     * Estimates every enabled config and returns the budget warnings, empty when the run fits.
+     */
+    public static List<String> estimate(Properties commonProps) throws Exception {
+        long startTime = System.currentTimeMillis();
+        List<String> enabledConfigs = RawMessageGeneratorMain.getEnabledConfigs(commonProps);
+        if (enabledConfigs.isEmpty()) {
+            throw new IllegalStateException("No enabled configs found in common.properties.");
+        }
+
+        JSONArray configs = new JSONArray();
+        long totalMessages = 0;
+        long totalFiles = 0;
+        long totalBytes = 0;
+        double totalSeconds = 0;
+        for (String configName : enabledConfigs) {
+            File configFile = new File(Constants.BIN_DIR_PATH, configName + ".properties");
+            File sourceFile = new File(Constants.BIN_DIR_PATH, configName + " source.json");
+            if (!configFile.exists() || !sourceFile.exists()) {
+                logger.warn("Config or source file of {} not found. Skipping.", configName);
+                continue;
+            }
+            Properties props = RawMessageGeneratorMain.mergeProperties(commonProps, RawMessageGeneratorMain.loadPropertiesFromFile(configFile));
+            if (!RawMessageGeneratorMain.validateConfigProperties(props, sourceFile)) {
+                logger.error("Validation failed for config: {}. Skipping.", configName);
+                continue;
+            }
+            JSONObject config = estimateConfig(props, sourceFile, configName);
+            configs.put(config);
+            totalMessages += config.getLong("messages");
+            totalFiles += config.getLong("files");
+            totalBytes += config.getLong("bytes");
+            totalSeconds += config.getDouble("generateSeconds") + config.getDouble("analyzeSeconds");
+        }
+
+        List<String> warnings = new ArrayList<>();
+        checkBudget(warnings, commonProps, Constants.DRY_RUN_BUDGET_MESSAGES, "messages", totalMessages);
+        checkBudget(warnings, commonProps, Constants.DRY_RUN_BUDGET_FILES, "files", totalFiles);
+        checkBudget(warnings, commonProps, Constants.DRY_RUN_BUDGET_MEGABYTES, "megabytes", totalBytes / (1024.0 * 1024.0));
+        checkBudget(warnings, commonProps, Constants.DRY_RUN_BUDGET_MINUTES, "minutes", totalSeconds / 60.0);
+        File outputFolder = Constants.OUTPUT_FOLDER;
+        if (!outputFolder.exists()) {
+            outputFolder.mkdirs();
+        }
+        if (totalBytes > outputFolder.getUsableSpace()) {
+            warnings.add(String.format("Estimated %d bytes exceed the %d bytes free in %s", totalBytes, outputFolder.getUsableSpace(), outputFolder.getPath()));
+        }
+
+        JSONObject totals = new JSONObject();
+        totals.put("messages", totalMessages);
+        totals.put("files", totalFiles);
+        totals.put("bytes", totalBytes);
+        totals.put("minutes", round(totalSeconds / 60.0));
+
+        JSONObject estimate = new JSONObject();
+        estimate.put("configs", configs);
+        estimate.put("total", totals);
+        estimate.put("warnings", new JSONArray(warnings));
+        File estimateFile = new File(outputFolder, Constants.DRY_RUN_FILE_NAME);
+        try (FileWriter writer = new FileWriter(estimateFile)) {
+            writer.write(estimate.toString(2));
+        }
+
+        logger.info("Dry run estimate: {} messages in {} files, {} bytes, {} minutes to generate and analyze",
+                totalMessages, totalFiles, totalBytes, round(totalSeconds / 60.0));
+        for (String warning : warnings) {
+            logger.warn("Budget exceeded: {}", warning);
+        }
+        logger.info("Dry run estimate written to {} in {} ms", estimateFile.getPath(), System.currentTimeMillis() - startTime);
+        return warnings;
+    }
+
+    private static JSONObject estimateConfig(Properties props, File sourceFile, String configName) throws Exception {
+        SourceInputModel sourceModel = RawMessageGenerator.loadJsonFromFile(sourceFile.getPath());
+        if (sourceModel == null) {
+            throw new IOException("Could not read source file " + sourceFile.getPath());
+        }
+        boolean isStopwordEnabled = Constants.YES.equalsIgnoreCase(props.getProperty("stopword"));
+        boolean isSynonymEnabled = Constants.YES.equalsIgnoreCase(props.getProperty("synonym"));
+        GenerationPartition partition = GenerationPartition.from(props);
+        StratifiedSample sample = StratifiedSample.from(props);
+        int sampleRows = Integer.parseInt(props.getProperty(Constants.DRY_RUN_SAMPLE_ROWS, String.valueOf(Constants.DEFAULT_DRY_RUN_SAMPLE_ROWS)).trim());
+        int maxIndex = RawMessageGenerator.getMaxIndex(props, Constants.REPLACE_SRC);
+        String dateTimeStr = LocalDateTime.now().format(DateTimeFormatter.ofPattern(Constants.DATE_TIME_FORMAT));
+
+        JSONArray watchlists = new JSONArray();
+        List<SourceInputModel> byteSample = new ArrayList<>();
+        double testValues = 0;
+        for (String type : props.getProperty(Constants.WATCHLIST_TYPE).split(",")) {
+            String wlType = type.trim();
+            String tableName = Constants.TABLE_WL_MAP.get(wlType);
+            if (tableName == null) {
+                logger.error("Unknown watchlist type: {}", wlType);
+                continue;
+            }
+            String whereClause = RawMessageGenerator.whereClauseFor(props, wlType);
+
+            long rowCount;
+            long tableRows;
+            double fraction;
+            // Sampled rows and their variants per stratum
+            Map<String, long[]> strata = new HashMap<>();
+            Map<String, Long> stratumRows = new HashMap<>();
+            int rows = 0;
+            long values = 0;
+            long variants = 0;
+            long[] lengths = new long[StratifiedSample.LENGTH_BUCKETS.length + 1];
+            try (Connection connection = SQLUtility.getDbConnection()) {
+                tableRows = tableRows(connection, tableName);
+                long sampledBuckets = tableRows <= sampleRows ? HASH_BUCKETS : Math.max(1, HASH_BUCKETS * sampleRows / tableRows);
+                fraction = (double) sampledBuckets / HASH_BUCKETS;
+                String samplePredicate = "ORA_HASH(TO_CHAR(" + Constants.NUID + "), " + (HASH_BUCKETS - 1) + ", " + SAMPLE_HASH_SEED + ") < " + sampledBuckets;
+                String sampleWhere = whereClause == null || whereClause.trim().isEmpty() ? samplePredicate : "(" + whereClause + ") and " + samplePredicate;
+                // The stratified cap is applied to the estimate below, so the sample query leaves it out
+                String query = RawMessageGenerator.watchlistQuery(tableName, sampleWhere, partition, null);
+                List<Object[]> stopwords = isStopwordEnabled ? RawMessageGenerator.getRelevantStopwords(props, connection) : null;
+                Map<String, Map<String, String>> synonymMap = isSynonymEnabled ? RawMessageGenerator.loadSynonyms(connection, wlType) : null;
+                if (sample != null) {
+                    String strataQuery = sample.strataQuery(RawMessageGenerator.watchlistQuery(tableName, whereClause, partition, null));
+                    try (PreparedStatement pst = connection.prepareStatement(strataQuery);
+                         ResultSet rs = pst.executeQuery()) {
+                        while (rs.next()) {
+                            String words = rs.getString("STRATUM_WORDS");
+                            stratumRows.put(words == null ? "" : rs.getInt("STRATUM_LENGTH") + ":" + words, rs.getLong("STRATUM_ROWS"));
+                        }
+                    }
+                }
+
+                try (PreparedStatement pst = connection.prepareStatement(query)) {
+                    try (ResultSet rs = pst.executeQuery()) {
+                        while (rs.next()) {
+                            rows++;
+                            long rowVariants = 0;
+                            for (int i = 1; i <= maxIndex; i++) {
+                                String targetColumn = props.getProperty(Constants.REPLACE_TARGET_COLUMN + "[" + i + "]");
+                                String tokenValue = rs.getString(targetColumn);
+                                if (tokenValue == null) continue;
+                                for (String value : tokenValue.split(";")) {
+                                    values++;
+                                    lengths[StratifiedSample.lengthBucket(value) - 1]++;
+                                    rowVariants += variantCount(value, props, stopwords, synonymMap, sample);
+                                    if (byteSample.size() < BYTE_SAMPLE_VALUES) {
+                                        String identifierToken = props.getProperty(Constants.REPLACE_SRC + "[0]");
+                                        String identifier = rs.getString(props.getProperty(Constants.REPLACE_TARGET_COLUMN + "[0]"));
+                                        RawMessageGenerator.createRawMsg(RawMessageGenerator.cloneSourceModel(sourceModel), value, identifier,
+                                                props.getProperty(Constants.REPLACE_SRC + "[" + i + "]"), targetColumn, identifierToken, wlType,
+                                                byteSample, byteSample.size(), tokenValue, 0, rs.getString(Constants.NUID),
+                                                props.getProperty(Constants.TAGNAME), props.getProperty(Constants.WEBSERVICE_ID), "NA", "NA",
+                                                dateTimeStr, props.getProperty(Constants.WEBSERVICE));
+                                    }
+                                }
+                            }
+                            variants += rowVariants;
+                            if (sample != null) {
+                                long[] stratum = strata.computeIfAbsent(sample.stratum(rs.getString(sample.stratifyColumn())), k -> new long[2]);
+                                stratum[0]++;
+                                stratum[1] += rowVariants;
+                            }
+                        }
+                    }
+                }
+            }
+
+            double variantsPerRow = rows == 0 ? 0 : (double) variants / rows;
+            double watchlistValues;
+            if (sample == null) {
+                rowCount = Math.round(rows / fraction);
+                watchlistValues = rowCount * variantsPerRow;
+            } else {
+                // Every stratum gives perStratum rows at most, as the sampled generation does; strata the hash sample
+                // missed take the average over all sampled rows
+                rowCount = 0;
+                watchlistValues = 0;
+                for (Map.Entry<String, Long> stratum : stratumRows.entrySet()) {
+                    long stratumCount = Math.min(sample.perStratum(), stratum.getValue());
+                    long[] sampled = strata.get(stratum.getKey());
+                    rowCount += stratumCount;
+                    watchlistValues += stratumCount * (sampled == null ? variantsPerRow : (double) sampled[1] / sampled[0]);
+                }
+            }
+            testValues += watchlistValues;
+
+            JSONObject lengthDistribution = new JSONObject();
+            for (int b = 0; b < lengths.length; b++) {
+                int[] bounds = StratifiedSample.LENGTH_BUCKETS;
+                lengthDistribution.put(b < bounds.length ? "<=" + bounds[b] : ">" + bounds[bounds.length - 1], lengths[b]);
+            }
+            JSONObject watchlist = new JSONObject();
+            watchlist.put("watchlist", wlType);
+            watchlist.put("tableRows", tableRows);
+            watchlist.put("sampleFraction", fraction);
+            watchlist.put("rows", rowCount);
+            watchlist.put("sampledRows", rows);
+            watchlist.put("valuesPerRow", rows == 0 ? 0 : round((double) values / rows));
+            watchlist.put("variantsPerValue", values == 0 ? 0 : round((double) variants / values));
+            watchlist.put("valueLengths", lengthDistribution);
+            watchlist.put("testValues", Math.round(watchlistValues));
+            watchlists.put(watchlist);
+            logger.info("Config {} watchlist {}: about {} rows ({} sampled of {} in the table), {} variants per sampled row", configName, wlType,
+                    rowCount, rows, tableRows, round(variantsPerRow));
+        }
+
+        // Every test value is one report row; packing puts several of them in one message
+        int slots = Math.max(1, MessagePacker.slots(props).size());
+        long valueCount = Math.round(testValues);
+        long messages = (valueCount + slots - 1) / slots;
+        int rowLimit = Constants.DEFAULT_ROW_LIMIT;
+        try {
+            rowLimit = Integer.parseInt(props.getProperty(Constants.JSON_OBJJECT_LIMIT, String.valueOf(Constants.DEFAULT_ROW_LIMIT)));
+        } catch (NumberFormatException e) {
+            logger.error("Invalid row limit value for config {}, using default: {}", configName, Constants.DEFAULT_ROW_LIMIT);
+        }
+        double bytesPerValue = bytesPerMessage(byteSample);
+        double generateRate = Double.parseDouble(props.getProperty(Constants.DRY_RUN_GENERATE_RATE, String.valueOf(Constants.DEFAULT_DRY_RUN_GENERATE_RATE)).trim());
+        double analyzeRate = Double.parseDouble(props.getProperty(Constants.DRY_RUN_ANALYZE_RATE, String.valueOf(Constants.DEFAULT_DRY_RUN_ANALYZE_RATE)).trim());
+
+        JSONObject config = new JSONObject();
+        config.put("configName", configName);
+        config.put("watchlists", watchlists);
+        config.put("testValues", valueCount);
+        config.put("messages", messages);
+        config.put("files", (messages + rowLimit - 1) / rowLimit);
+        config.put("bytes", Math.round(valueCount * bytesPerValue));
+        config.put("generateSeconds", round(messages / generateRate));
+        config.put("analyzeSeconds", round(valueCount / analyzeRate));
+        if (sample != null) config.put("sample", sample.toString());
+        if (partition != null) config.put("partition", partition.toString());
+        return config;
+    }
+
+    /**
+     * Rows of a watchlist table from its optimizer statistics. Only a table without statistics is counted.
+     */
+    private static long tableRows(Connection connection, String tableName) throws SQLException {
+        int dot = tableName.indexOf('.');
+        String owner = dot < 0 ? null : tableName.substring(0, dot).trim().toUpperCase();
+        String table = tableName.substring(dot + 1).trim().toUpperCase();
+        // An unqualified name prefers the connected schema, then any schema it may be a synonym for
+        try (PreparedStatement pst = connection.prepareStatement(
+                "SELECT NUM_ROWS FROM ALL_TAB_STATISTICS WHERE TABLE_NAME = ? AND OWNER = NVL(?, OWNER) AND PARTITION_NAME IS NULL " +
+                "ORDER BY CASE WHEN OWNER = USER THEN 0 ELSE 1 END")) {
+            pst.setString(1, table);
+            pst.setString(2, owner);
+            try (ResultSet rs = pst.executeQuery()) {
+                if (rs.next()) {
+                    long numRows = rs.getLong(1);
+                    if (!rs.wasNull()) return numRows;
+                }
+            }
+        } catch (SQLException e) {
+            logger.debug("Could not read the statistics of {}: {}", tableName, e.getMessage());
+        }
+        logger.warn("No optimizer statistics for {}, counting its rows", tableName);
+        try (PreparedStatement pst = connection.prepareStatement("select count(*) from " + tableName);
+             ResultSet rs = pst.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * Messages one value expands to: the exact value plus the variants of each enabled stage, capped per stage when
+     * sampling.
+     */
+    private static int variantCount(String value, Properties props, List<Object[]> stopwords, Map<String, Map<String, String>> synonymMap,
+                                    StratifiedSample sample) {
+        int count = 1;
+        if (synonymMap != null && !synonymMap.isEmpty()) {
+            count += capped(RawMessageGenerator.generateSynonymVariantsWithInfo(value, synonymMap).size(), sample);
+        }
+        if (Constants.YES.equalsIgnoreCase(props.getProperty(Constants.CED1))) {
+            count += capped(RawMessageGenerator.generate1CedVariants(value).size(), sample);
+        }
+        if (Constants.YES.equalsIgnoreCase(props.getProperty(Constants.CED2))) {
+            count += capped(RawMessageGenerator.generate2CedVariants(value).size(), sample);
+        }
+        if (Constants.YES.equalsIgnoreCase(props.getProperty(Constants.CED3))) {
+            count += capped(RawMessageGenerator.generate3CedVariants(value).size(), sample);
+        }
+        if (stopwords != null && !stopwords.isEmpty()) {
+            int stopwordVariants = 0;
+            for (Object[] stopword : stopwords) {
+                stopwordVariants += RawMessageGenerator.generateStopwordVariants(value, (String) stopword[0]).size();
+            }
+            count += capped(stopwordVariants, sample);
+        }
+        return count;
+    }
+
+    private static int capped(int variants, StratifiedSample sample) {
+        return sample == null ? variants : Math.min(variants, sample.variantsPerType());
+    }
+
+    // Average size of the sample messages as written to a shard, including indentation and separators
+    private static double bytesPerMessage(List<SourceInputModel> messages) throws IOException {
+        if (messages.isEmpty()) return 0;
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.enable(SerializationFeature.INDENT_OUTPUT);
+        mapper.getFactory().setCharacterEscapes(new RawMessageGenerator.CustomEscapes());
+        return (double) mapper.writeValueAsBytes(messages).length / messages.size();
+    }
+
+    private static void checkBudget(List<String> warnings, Properties props, String key, String unit, double estimate) {
+        String budget = props.getProperty(key, "").trim();
+        if (!budget.isEmpty() && estimate > Double.parseDouble(budget)) {
+            warnings.add(String.format("Estimated %.1f %s exceed the budget of %s (%s)", estimate, unit, budget, key));
+        }
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,280 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the Open Search and Oracle Text analyses of the same generated messages.
+ * The Oracle Text rows are indexed as messageKey to row index and the Open Search rows are probed against that index,
+ * reading rows one at a time, so a mapped {@link ReportRowStore} is never materialised as a whole. Only
+ * disagreements (PASS/FAIL, match count, or a message missing from one engine) are written out. Rows without a
+ * messageKey, or whose key is held by more than one row on either side (the Open Search rows are indexed too),
+ * cannot be paired and are written out as such instead of being joined.
+ */
+public class EngineComparisonReport {
+    private static final Logger logger = LoggerFactory.getLogger(EngineComparisonReport.class);
+
+    static final String STATUS_MISMATCH = "STATUS_MISMATCH";
+    static final String MATCH_COUNT_DELTA = "MATCH_COUNT_DELTA";
+    static final String MISSING_IN_OS = "MISSING_IN_OPEN_SEARCH";
+    static final String MISSING_IN_OT = "MISSING_IN_ORACLE_TEXT";
+    static final String NO_MESSAGE_KEY = "NO_MESSAGE_KEY";
+    static final String DUPLICATE_MESSAGE_KEY = "DUPLICATE_MESSAGE_KEY";
+
+    private static final Integer DUPLICATE = -1;
+
+    private static final String[] HEADERS = {
+            Constants.MESSAGE_KEY,
+            Constants.RULE,
+            Constants.TAG,
+            Constants.WATCHLIST,
+            Constants.NUID,
+            Constants.SOURCE_INPUT,
+            Constants.TARGET_COLUMN,
+            "OS " + Constants.TRXN_TOKEN,
+            "OS " + Constants.TEST_STATUS,
+            "OS " + Constants.MATCH_COUNT,
+            "OS Specific Count",
+            "OS " + Constants.COMMENTS,
+            "OT " + Constants.TRXN_TOKEN,
+            "OT " + Constants.TEST_STATUS,
+            "OT " + Constants.MATCH_COUNT,
+            "OT Specific Count",
+            "OT " + Constants.COMMENTS,
+            "Match Count Delta",
+            "Difference"
+    };
+
+    private int joined;
+    private int agreements;
+    private int statusMismatches;
+    private int osOnlyPass;
+    private int otOnlyPass;
+    private int matchCountDeltas;
+    private int missingInOs;
+    private int missingInOt;
+    private int unkeyed;
+    private int duplicateKeys;
+
+    private final String prefix;
+    private final int rowLimit;
+    private int fileIndex;
+    private SXSSFWorkbook wb;
+    private Sheet sheet;
+    private CellStyle highlightRed;
+    private CellStyle highlightYellow;
+    private int rowNum;
+
+    private EngineComparisonReport(String prefix, int rowLimit) {
+        this.prefix = prefix;
+        this.rowLimit = rowLimit;
+    }
+
+    public static void writeComparison(List<ReportRow> osRows, List<ReportRow> otRows, String misDate, String runNo,
+                                       String batchType, int rowLimit) throws IOException {
+        if (osRows == null || otRows == null) return;
+        long startTime = System.currentTimeMillis();
+
+        String prefix;
+        if ("ISO20022".equalsIgnoreCase(batchType)) {
+            prefix = misDate + "_RUN" + runNo + "_STG_ANALYSIS_COMPARISON";
+        } else if ("NACHA".equalsIgnoreCase(batchType)) {
+            prefix = misDate + "_RUN" + runNo + "_ACH_ANALYSIS_COMPARISON";
+        } else {
+            throw new IllegalArgumentException("Invalid batchType");
+        }
+
+        EngineComparisonReport report = new EngineComparisonReport(prefix, rowLimit);
+
+        // Row index per messageKey on each side; DUPLICATE marks a key held by more than one row
+        Map<String, Integer> otByKey = indexByKey(otRows);
+        Map<String, Integer> osByKey = indexByKey(osRows);
+
+        try {
+            // Probe side: stream Open Search rows, removing matched keys so leftovers are the OT-only messages
+            for (int i = 0; i < osRows.size(); i++) {
+                String key = messageKey(osRows, i);
+                if (key == null || key.isEmpty()) {
+                    report.unkeyed++;
+                    report.writeRow(osRows.get(i), null, NO_MESSAGE_KEY);
+                    continue;
+                }
+                if (isDuplicate(osByKey, key) || isDuplicate(otByKey, key)) {
+                    report.duplicateKeys++;
+                    report.writeRow(osRows.get(i), null, DUPLICATE_MESSAGE_KEY);
+                    continue;
+                }
+                ReportRow os = osRows.get(i);
+                Integer otIndex = otByKey.remove(key);
+                if (otIndex == null) {
+                    report.missingInOt++;
+                    report.writeRow(os, null, MISSING_IN_OT);
+                    continue;
+                }
+                ReportRow ot = otRows.get(otIndex);
+                report.joined++;
+                boolean osPass = Constants.PASS.equalsIgnoreCase(os.testStatus);
+                boolean otPass = Constants.PASS.equalsIgnoreCase(ot.testStatus);
+                if (osPass != otPass) {
+                    report.statusMismatches++;
+                    if (osPass) report.osOnlyPass++;
+                    else report.otOnlyPass++;
+                    report.writeRow(os, ot, STATUS_MISMATCH);
+                } else if (os.matchCount != ot.matchCount || os.specificMatches != ot.specificMatches) {
+                    report.matchCountDeltas++;
+                    report.writeRow(os, ot, MATCH_COUNT_DELTA);
+                } else {
+                    report.agreements++;
+                }
+            }
+            for (int i = 0; i < otRows.size(); i++) {
+                String key = messageKey(otRows, i);
+                if (key == null || key.isEmpty()) {
+                    report.unkeyed++;
+                    report.writeRow(null, otRows.get(i), NO_MESSAGE_KEY);
+                } else if (isDuplicate(otByKey, key) || isDuplicate(osByKey, key)) {
+                    report.duplicateKeys++;
+                    report.writeRow(null, otRows.get(i), DUPLICATE_MESSAGE_KEY);
+                } else if (otByKey.containsKey(key)) {
+                    report.missingInOs++;
+                    report.writeRow(null, otRows.get(i), MISSING_IN_OS);
+                }
+            }
+        } finally {
+            report.closeWorkbook();
+        }
+
+        report.writeSummary();
+        logger.info("Engine comparison took: {} ms", (System.currentTimeMillis() - startTime));
+    }
+
+    private static Map<String, Integer> indexByKey(List<ReportRow> rows) {
+        Map<String, Integer> byKey = new HashMap<>(rows.size() * 4 / 3 + 1);
+        for (int i = 0; i < rows.size(); i++) {
+            String key = messageKey(rows, i);
+            if (key == null || key.isEmpty()) continue;
+            Integer previous = byKey.putIfAbsent(key, i);
+            if (previous != null) {
+                byKey.put(key, DUPLICATE);
+            }
+        }
+        return byKey;
+    }
+
+    private static boolean isDuplicate(Map<String, Integer> byKey, String key) {
+        return DUPLICATE.equals(byKey.get(key));
+    }
+
+    // Reads only the key from a mapped store, so rows are materialised one at a time when they are compared
+    private static String messageKey(List<ReportRow> rows, int index) {
+        return rows instanceof ReportRowStore ? ((ReportRowStore) rows).messageKey(index) : rows.get(index).messageKey;
+    }
+
+    private void writeRow(ReportRow os, ReportRow ot, String difference) throws IOException {
+        if (wb == null || rowNum > rowLimit) {
+            closeWorkbook();
+            openWorkbook();
+        }
+        ReportRow ref = os != null ? os : ot;
+        Row row = sheet.createRow(rowNum++);
+        row.createCell(0).setCellValue(ref.messageKey);
+        row.createCell(1).setCellValue(ref.ruleName);
+        row.createCell(2).setCellValue(ref.tag);
+        row.createCell(3).setCellValue(ref.watchlist);
+        row.createCell(4).setCellValue(ref.nUid);
+        row.createCell(5).setCellValue(ref.sourceInput);
+        row.createCell(6).setCellValue(ref.targetColumn);
+        writeEngineCells(row, 7, os);
+        writeEngineCells(row, 12, ot);
+        if (os != null && ot != null) {
+            row.createCell(17).setCellValue(os.matchCount - ot.matchCount);
+        }
+        row.createCell(18).setCellValue(difference);
+        row.getCell(18).setCellStyle(STATUS_MISMATCH.equals(difference) ? highlightRed : highlightYellow);
+    }
+
+    private void writeEngineCells(Row row, int firstCell, ReportRow rr) {
+        if (rr == null) return;
+        row.createCell(firstCell).setCellValue(rr.transactionToken);
+        row.createCell(firstCell + 1).setCellValue(rr.testStatus);
+        row.createCell(firstCell + 2).setCellValue(rr.matchCount);
+        row.createCell(firstCell + 3).setCellValue(rr.specificMatches);
+        row.createCell(firstCell + 4).setCellValue(rr.comments);
+    }
+
+    private void openWorkbook() {
+        fileIndex++;
+        wb = new SXSSFWorkbook(100);
+        wb.setCompressTempFiles(true);
+        sheet = wb.createSheet("Comparison");
+
+        Font boldFont = wb.createFont();
+        boldFont.setBold(true);
+
+        highlightRed = wb.createCellStyle();
+        highlightRed.setFillForegroundColor(IndexedColors.RED.getIndex());
+        highlightRed.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        highlightRed.setFont(boldFont);
+
+        highlightYellow = wb.createCellStyle();
+        highlightYellow.setFillForegroundColor(IndexedColors.YELLOW.getIndex());
+        highlightYellow.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        highlightYellow.setFont(boldFont);
+
+        Row headerRow = sheet.createRow(0);
+        for (int j = 0; j < HEADERS.length; j++) {
+            headerRow.createCell(j).setCellValue(HEADERS[j]);
+        }
+        rowNum = 1;
+    }
+
+    private void closeWorkbook() throws IOException {
+        if (wb == null) return;
+        File outputFile = new File(Constants.OUTPUT_FOLDER, prefix + "_" + fileIndex + Constants.XLSX_EXT);
+        try (FileOutputStream fos = new FileOutputStream(outputFile)) {
+            wb.write(fos);
+        } finally {
+            wb.dispose();
+            wb.close();
+            wb = null;
+        }
+        logger.info("Comparison report generated at: {}", outputFile.getAbsolutePath());
+    }
+
+    private void writeSummary() {
+        JSONObject summary = new JSONObject();
+        summary.put("joined", joined);
+        summary.put("agreements", agreements);
+        summary.put("statusMismatches", statusMismatches);
+        summary.put("openSearchOnlyPass", osOnlyPass);
+        summary.put("oracleTextOnlyPass", otOnlyPass);
+        summary.put("matchCountDeltas", matchCountDeltas);
+        summary.put("missingInOpenSearch", missingInOs);
+        summary.put("missingInOracleText", missingInOt);
+        summary.put("withoutMessageKey", unkeyed);
+        summary.put("duplicateMessageKey", duplicateKeys);
+        summary.put("reportFiles", fileIndex);
+
+        logger.info("Engine comparison: joined={}, agreements={}, statusMismatches={} (OS-only PASS={}, OT-only PASS={}), matchCountDeltas={}, missingInOS={}, missingInOT={}, withoutMessageKey={}, duplicateMessageKey={}",
+                joined, agreements, statusMismatches, osOnlyPass, otOnlyPass, matchCountDeltas, missingInOs, missingInOt, unkeyed, duplicateKeys);
+
+        File summaryFile = new File(Constants.OUTPUT_FOLDER, prefix + "_SUMMARY" + Constants.JSON_EXT);
+        try (FileWriter writer = new FileWriter(summaryFile)) {
+            writer.write(summary.toString(2));
+            logger.info("Comparison summary written to: {}", summaryFile.getAbsolutePath());
+        } catch (IOException e) {
+            logger.error("Error writing comparison summary: {}", e.getMessage());
+        }
+    }
+}
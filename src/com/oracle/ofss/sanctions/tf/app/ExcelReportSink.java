@@ -0,0 +1,54 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Collects the rows selected by analyzer.excel.filter and writes them through
+ * {@link AnalyzerMain#writeSplitExcel} when the sink is closed. When every row is
+ * kept and the caller already holds them in a list, that list is written as is.
+ */
+public class ExcelReportSink implements ReportSink {
+    private final List<ReportRow> rows;
+    private final boolean ownsRows;
+    private final boolean failuresOnly;
+    private final String misDate;
+    private final String runNo;
+    private final String batchType;
+    private final String matchHeader;
+    private final String type;
+    private final int rowLimit;
+    private final Properties props;
+
+    public ExcelReportSink(List<ReportRow> source, boolean failuresOnly, String misDate, String runNo, String batchType,
+                           String matchHeader, String type, int rowLimit, Properties props) throws IOException {
+        this.ownsRows = source == null || failuresOnly;
+        this.rows = ownsRows ? ReportRowStore.newRowList(props) : source;
+        this.failuresOnly = failuresOnly;
+        this.misDate = misDate;
+        this.runNo = runNo;
+        this.batchType = batchType;
+        this.matchHeader = matchHeader;
+        this.type = type;
+        this.rowLimit = rowLimit;
+        this.props = props;
+    }
+
+    @Override
+    public void accept(ReportRow row) {
+        if (!ownsRows) return;
+        if (!failuresOnly || !Constants.PASS.equalsIgnoreCase(row.testStatus)) {
+            rows.add(row);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            AnalyzerMain.writeSplitExcel(rows, misDate, runNo, batchType, matchHeader, type, rowLimit, props);
+        } finally {
+            if (ownsRows) ReportRowStore.release(rows);
+        }
+    }
+}
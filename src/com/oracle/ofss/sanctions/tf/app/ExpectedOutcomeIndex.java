@@ -0,0 +1,383 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Binary sidecar of what each generated message is expected to match, keyed by messageKey. The generator writes one
+ * per config next to its JSON files. The analyzer memory-maps them and fetches only
+ * {@code JSON_VALUE(C_RAW_MSG, '$.additionalData.messageKey')} instead of the whole raw message CLOB.
+ *
+ * <pre>
+ * header  : int MAGIC, int VERSION, int recordCount, int stringCount, int stringBytes
+ * strings : stringCount x int offset (into the blob), then stringBytes of UTF-8
+ * records : recordCount x (long keyHash, FIELDS x int string id, int ced, int shard id, int ordinal,
+ *           int stratum string id, long stratum size), sorted by keyHash
+ * </pre>
+ *
+ * All text fields are deduplicated into the string table, so a record is fixed width and the lookup is a binary
+ * search on the key hash followed by a key comparison. The shard (JSON file name) and ordinal within it let
+ * {@link MessageReplay} re-emit single messages without touching the database; version 1 files carry neither. The
+ * sampling stratum and its size, empty and 0 for a full generation, were added in version 3.
+ *
+ * <p>Packed messages get one record per slot, keyed on the slot's message key and pointing at the packed message.
+ * Those files use the .slotidx extension: replay reads them, the analyzer does not, since it needs every slot of a
+ * message at once and reads packed messages from C_RAW_MSG.
+ */
+public class ExpectedOutcomeIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ExpectedOutcomeIndex.class);
+
+    static final int MAGIC = 0x45585058; // "EXPX"
+    static final int VERSION = 3;
+    private static final int HEADER_SIZE = 20;
+
+    // additionalData keys kept per message, in record order; field 0 is the message key itself
+    static final String[] FIELDS = {
+            Constants.MESSAGE_KEY_ADDITIONAL, Constants.UID, Constants.COLUMN, Constants.WATCHLIST_TYPE,
+            Constants.WEBSERVICE_ID, Constants.WEBSERVICE, Constants.TAGNAME, Constants.VALUE, Constants.ORIGINAL_VALUE,
+            Constants.LOOKUP_ID, Constants.LOOKUP_VALUE_ID
+    };
+    private static final int RECORD_SIZE_V1 = 8 + FIELDS.length * 4 + 4;
+    private static final int RECORD_SIZE_V2 = RECORD_SIZE_V1 + 8;
+    private static final int RECORD_SIZE = RECORD_SIZE_V2 + 12;
+
+    private static final Object LOAD_LOCK = new Object();
+    private static volatile Loaded loaded;
+
+    // The mapped indexes together with the file list and timestamps they were mapped from
+    private static class Loaded {
+        final String signature;
+        final List<ExpectedOutcomeIndex> indexes;
+
+        Loaded(String signature, List<ExpectedOutcomeIndex> indexes) {
+            this.signature = signature;
+            this.indexes = indexes;
+        }
+    }
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final int version;
+    private final int recordSize;
+    private final int recordCount;
+    private final int stringCount;
+    private final int stringOffsetsStart;
+    private final int stringBlobStart;
+    private final int recordsStart;
+
+    private ExpectedOutcomeIndex(File file) throws IOException {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            this.buffer = mapped;
+        }
+        this.version = buffer.getInt(4);
+        if (buffer.getInt(0) != MAGIC || version < 1 || version > VERSION) {
+            throw new IOException("Not an expected-outcome index (or unsupported version): " + file);
+        }
+        this.recordSize = version == 1 ? RECORD_SIZE_V1 : version == 2 ? RECORD_SIZE_V2 : RECORD_SIZE;
+        this.recordCount = buffer.getInt(8);
+        this.stringCount = buffer.getInt(12);
+        int stringBytes = buffer.getInt(16);
+        this.stringOffsetsStart = HEADER_SIZE;
+        this.stringBlobStart = stringOffsetsStart + stringCount * 4;
+        this.recordsStart = stringBlobStart + stringBytes;
+    }
+
+    /**
+     * Writes the index for the messages of one config. {@code shardFiles} are the JSON files the messages were
+     * written to, in order, {@code rowLimit} messages per file. A packed message is written as one record per slot.
+     */
+    @SuppressWarnings("unchecked")
+    public static void write(List<SourceInputModel> rawMessages, File outputFile, List<String> shardFiles, int rowLimit) throws IOException {
+        long startTime = System.currentTimeMillis();
+        List<Map<String, Object>> entries = new ArrayList<>(rawMessages.size());
+        List<Integer> messageIndexes = new ArrayList<>(rawMessages.size());
+        for (int m = 0; m < rawMessages.size(); m++) {
+            Map<String, Object> additionalData = rawMessages.get(m).getAdditionalData();
+            Object slots = additionalData.get(Constants.SLOTS);
+            for (Map<String, Object> entry : slots instanceof List ? (List<Map<String, Object>>) slots : List.of(additionalData)) {
+                entries.add(entry);
+                messageIndexes.add(m);
+            }
+        }
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        List<long[]> records = new ArrayList<>(entries.size()); // {keyHash, recordIndex}
+        int[][] fieldIds = new int[entries.size()][];
+        int[] ceds = new int[entries.size()];
+        int[] strata = new int[entries.size()];
+        long[] stratumSizes = new long[entries.size()];
+        int[] shardIds = new int[shardFiles.size()];
+        for (int s = 0; s < shardFiles.size(); s++) {
+            shardIds[s] = stringIds.computeIfAbsent(shardFiles.get(s), t -> {
+                strings.add(t.getBytes(StandardCharsets.UTF_8));
+                return strings.size() - 1;
+            });
+        }
+
+        for (int i = 0; i < entries.size(); i++) {
+            Map<String, Object> additionalData = entries.get(i);
+            int[] ids = new int[FIELDS.length];
+            for (int f = 0; f < FIELDS.length; f++) {
+                Object value = additionalData.get(FIELDS[f]);
+                String text = value == null ? "" : String.valueOf(value);
+                ids[f] = stringIds.computeIfAbsent(text, t -> {
+                    strings.add(t.getBytes(StandardCharsets.UTF_8));
+                    return strings.size() - 1;
+                });
+            }
+            Object ced = additionalData.get(Constants.CED);
+            ceds[i] = ced instanceof Number ? ((Number) ced).intValue() : 0;
+            Object stratum = additionalData.get(Constants.STRATUM);
+            strata[i] = stringIds.computeIfAbsent(stratum == null ? "" : String.valueOf(stratum), t -> {
+                strings.add(t.getBytes(StandardCharsets.UTF_8));
+                return strings.size() - 1;
+            });
+            Object stratumSize = additionalData.get(Constants.STRATUM_SIZE);
+            stratumSizes[i] = stratumSize instanceof Number ? ((Number) stratumSize).longValue() : 0;
+            fieldIds[i] = ids;
+            records.add(new long[]{keyHash(String.valueOf(additionalData.get(Constants.MESSAGE_KEY_ADDITIONAL))), i});
+        }
+        records.sort(Comparator.comparingLong(r -> r[0]));
+
+        int stringBytes = 0;
+        for (byte[] bytes : strings) stringBytes += bytes.length;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(records.size());
+            out.writeInt(strings.size());
+            out.writeInt(stringBytes);
+            int offset = 0;
+            for (byte[] bytes : strings) {
+                out.writeInt(offset);
+                offset += bytes.length;
+            }
+            for (byte[] bytes : strings) out.write(bytes);
+            for (long[] record : records) {
+                int i = (int) record[1];
+                int m = messageIndexes.get(i);
+                out.writeLong(record[0]);
+                for (int id : fieldIds[i]) out.writeInt(id);
+                out.writeInt(ceds[i]);
+                out.writeInt(shardIds[Math.min(m / rowLimit, shardIds.length - 1)]);
+                out.writeInt(m % rowLimit);
+                out.writeInt(strata[i]);
+                out.writeLong(stratumSizes[i]);
+            }
+        }
+        logger.info("Expected-outcome index written to {}: {} records for {} messages, {} distinct strings in {} ms", outputFile.getName(),
+                records.size(), rawMessages.size(), strings.size(), (System.currentTimeMillis() - startTime));
+    }
+
+    /**
+     * The index files configured by analyzer.expectedIndex (a comma-separated list of files in the output folder,
+     * or AUTO for every .expidx file there). The mapping is reused for as long as the resolved file list and each
+     * file's size and modification time stay the same. Returns null when the option is off.
+     */
+    public static List<ExpectedOutcomeIndex> load(Properties props) throws IOException {
+        String setting = props.getProperty(Constants.EXPECTED_INDEX, "").trim();
+        if (setting.isEmpty() || Constants.NO.equalsIgnoreCase(setting)) return null;
+        File[] files;
+        if (Constants.EXPECTED_INDEX_AUTO.equalsIgnoreCase(setting)) {
+            files = Constants.OUTPUT_FOLDER.listFiles((dir, name) -> name.endsWith(Constants.EXPECTED_INDEX_EXT));
+            if (files == null) files = new File[0];
+            Arrays.sort(files);
+        } else {
+            String[] names = setting.split(",");
+            files = new File[names.length];
+            for (int i = 0; i < names.length; i++) files[i] = new File(Constants.OUTPUT_FOLDER, names[i].trim());
+        }
+        if (files.length == 0) {
+            throw new IOException("No expected-outcome index files found for " + Constants.EXPECTED_INDEX + "=" + setting);
+        }
+        String signature = signature(files);
+        Loaded current = loaded;
+        if (current == null || !current.signature.equals(signature)) {
+            synchronized (LOAD_LOCK) {
+                current = loaded;
+                if (current == null || !current.signature.equals(signature)) {
+                    if (current != null) {
+                        logger.info("Expected-outcome index files changed, mapping them again");
+                    }
+                    current = new Loaded(signature, open(files));
+                    loaded = current;
+                }
+            }
+        }
+        return current.indexes;
+    }
+
+    private static String signature(File[] files) {
+        StringBuilder signature = new StringBuilder();
+        for (File file : files) {
+            signature.append(file.getAbsolutePath()).append(':').append(file.length()).append(':')
+                    .append(file.lastModified()).append('\n');
+        }
+        return signature.toString();
+    }
+
+    /**
+     * Forgets the indexes mapped by {@link #load}, e.g. to release the mappings; changed files are picked up without it.
+     */
+    public static void reset() {
+        synchronized (LOAD_LOCK) {
+            loaded = null;
+        }
+    }
+
+    /**
+     * Maps every .expidx and .slotidx file in a folder, e.g. for a replay. Not cached.
+     */
+    public static List<ExpectedOutcomeIndex> loadFolder(File folder) throws IOException {
+        File[] files = folder.listFiles((dir, name) -> name.endsWith(Constants.EXPECTED_INDEX_EXT) || name.endsWith(Constants.SLOT_INDEX_EXT));
+        if (files == null || files.length == 0) {
+            throw new IOException("No expected-outcome index files found in " + folder.getPath());
+        }
+        Arrays.sort(files);
+        return open(files);
+    }
+
+    private static List<ExpectedOutcomeIndex> open(File[] files) throws IOException {
+        List<ExpectedOutcomeIndex> indexes = new ArrayList<>();
+        long messages = 0;
+        for (File file : files) {
+            ExpectedOutcomeIndex index = new ExpectedOutcomeIndex(file);
+            indexes.add(index);
+            messages += index.recordCount;
+        }
+        logger.info("Loaded {} expected-outcome index file(s) covering {} messages", indexes.size(), messages);
+        return indexes;
+    }
+
+    /**
+     * The additionalData the analyzer needs for a message key, looked up across all index files, or null if unknown.
+     */
+    public static JSONObject additionalData(List<ExpectedOutcomeIndex> indexes, String messageKey) {
+        if (messageKey == null || messageKey.isEmpty()) return null;
+        long hash = keyHash(messageKey);
+        for (ExpectedOutcomeIndex index : indexes) {
+            JSONObject additionalData = index.lookup(messageKey, hash);
+            if (additionalData != null) return additionalData;
+        }
+        return null;
+    }
+
+    /**
+     * Where a message was written by the generator: its JSON shard file name and its position in that file's array.
+     * Returns null if the key is unknown or only present in a version 1 index.
+     */
+    public static Location locate(List<ExpectedOutcomeIndex> indexes, String messageKey) {
+        if (messageKey == null || messageKey.isEmpty()) return null;
+        long hash = keyHash(messageKey);
+        for (ExpectedOutcomeIndex index : indexes) {
+            int record = index.find(messageKey, hash);
+            if (record < 0) continue;
+            if (index.version < 2) return null;
+            int offset = index.recordsStart + record * index.recordSize + RECORD_SIZE_V1;
+            return new Location(index.string(index.buffer.getInt(offset)), index.buffer.getInt(offset + 4));
+        }
+        return null;
+    }
+
+    public static class Location {
+        public final String shardFile;
+        public final int ordinal;
+
+        Location(String shardFile, int ordinal) {
+            this.shardFile = shardFile;
+            this.ordinal = ordinal;
+        }
+    }
+
+    private JSONObject lookup(String messageKey, long hash) {
+        int record = find(messageKey, hash);
+        return record < 0 ? null : toAdditionalData(record);
+    }
+
+    private int find(String messageKey, long hash) {
+        int low = 0;
+        int high = recordCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midHash = buffer.getLong(recordsStart + mid * recordSize);
+            if (midHash < hash) low = mid + 1;
+            else if (midHash > hash) high = mid - 1;
+            else {
+                // Walk back to the first record with this hash, then compare keys across the collision run
+                while (mid > 0 && buffer.getLong(recordsStart + (mid - 1) * recordSize) == hash) mid--;
+                for (int r = mid; r < recordCount && buffer.getLong(recordsStart + r * recordSize) == hash; r++) {
+                    if (messageKey.equals(string(field(r, 0)))) return r;
+                }
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private int field(int record, int field) {
+        return buffer.getInt(recordsStart + record * recordSize + 8 + field * 4);
+    }
+
+    private JSONObject toAdditionalData(int record) {
+        JSONObject additionalData = new JSONObject();
+        for (int f = 0; f < FIELDS.length; f++) {
+            additionalData.put(FIELDS[f], string(field(record, f)));
+        }
+        additionalData.put(Constants.CED, buffer.getInt(recordsStart + record * recordSize + 8 + FIELDS.length * 4));
+        if (version >= 3) {
+            int offset = recordsStart + record * recordSize + RECORD_SIZE_V2;
+            String stratum = string(buffer.getInt(offset));
+            if (!stratum.isEmpty()) {
+                additionalData.put(Constants.STRATUM, stratum);
+                additionalData.put(Constants.STRATUM_SIZE, buffer.getLong(offset + 4));
+            }
+        }
+        return additionalData;
+    }
+
+    private String string(int id) {
+        int start = buffer.getInt(stringOffsetsStart + id * 4);
+        int end = id + 1 < stringCount ? buffer.getInt(stringOffsetsStart + (id + 1) * 4) : recordsStart - stringBlobStart;
+        byte[] bytes = new byte[end - start];
+        ByteBuffer view = buffer.duplicate();
+        view.position(stringBlobStart + start);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // 64-bit FNV-1a over the UTF-16 code units of the key
+    static long keyHash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return file.getName() + " (" + recordCount + " messages)";
+    }
+}
@@ -0,0 +1,54 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Writes the messageKey of every FAIL row (including processing errors), one per line, as input for the generator's
+ * {@code replay} command.
+ */
+public class FailedKeysSink implements ReportSink {
+    private static final Logger logger = LoggerFactory.getLogger(FailedKeysSink.class);
+
+    private final File outputFile;
+    private final Writer writer;
+    private final Set<String> written = new HashSet<>();
+    private int withoutKey;
+
+    public FailedKeysSink(File outputFile) throws IOException {
+        this.outputFile = outputFile;
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void accept(ReportRow row) throws IOException {
+        if (Constants.PASS.equalsIgnoreCase(row.testStatus)) return;
+        if (row.messageKey == null || row.messageKey.isEmpty()) {
+            withoutKey++;
+            return;
+        }
+        if (written.add(row.messageKey)) {
+            writer.write(row.messageKey);
+            writer.write('\n');
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+        if (withoutKey > 0) {
+            logger.warn("{} failed rows have no messageKey and cannot be replayed", withoutKey);
+        }
+        logger.info("Failed message keys written to: {} ({} keys)", outputFile.getAbsolutePath(), written.size());
+    }
+}
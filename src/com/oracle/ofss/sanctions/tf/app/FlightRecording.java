@@ -0,0 +1,68 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Properties;
+
+/**
+ * Opt-in JFR recording of one generator or analyzer run (jfr.enabled=Y). Uses the JDK's jfr.settings configuration
+ * (default "profile") plus the {@link GeneratorPhaseEvent} and {@link AnalyzerPhaseEvent} events, and dumps
+ * {@code <name>_<timestamp>.jfr} to the output folder when closed.
+ */
+public class FlightRecording implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecording.class);
+
+    private final Recording recording;
+    private final File outputFile;
+
+    private FlightRecording(Recording recording, File outputFile) {
+        this.recording = recording;
+        this.outputFile = outputFile;
+    }
+
+    /**
+     * Starts a recording if jfr.enabled=Y, otherwise returns null; the caller closes it in a finally block.
+     */
+    public static FlightRecording start(Properties props, String name) throws IOException {
+        if (!Constants.YES.equalsIgnoreCase(props.getProperty(Constants.JFR_ENABLED))) return null;
+        String settings = props.getProperty(Constants.JFR_SETTINGS, Constants.DEFAULT_JFR_SETTINGS);
+        Recording recording;
+        try {
+            recording = new Recording(Configuration.getConfiguration(settings));
+        } catch (ParseException e) {
+            throw new IOException("Invalid JFR settings " + settings, e);
+        }
+        recording.setName(name);
+        recording.setToDisk(true);
+        recording.enable(GeneratorPhaseEvent.class);
+        recording.enable(AnalyzerPhaseEvent.class);
+        recording.start();
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        File outputFile = new File(Constants.OUTPUT_FOLDER, name + "_" + timestamp + Constants.JFR_EXT);
+        logger.info("Flight recording started with '{}' settings, will be written to {}", settings, outputFile.getPath());
+        return new FlightRecording(recording, outputFile);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            recording.stop();
+            if (!Constants.OUTPUT_FOLDER.exists()) {
+                Constants.OUTPUT_FOLDER.mkdirs();
+            }
+            recording.dump(outputFile.toPath());
+            logger.info("Flight recording written to: {}", outputFile.getAbsolutePath());
+        } finally {
+            recording.close();
+        }
+    }
+}
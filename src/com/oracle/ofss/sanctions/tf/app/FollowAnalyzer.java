@@ -0,0 +1,261 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Follow mode: analyses a run skey while it is still being screened.
+ * Each poll reads only the feedback tokens above a high-water mark (minus a lag window, so tokens committed slightly
+ * out of order are not skipped), scores the ones not seen before, appends them to the report sinks and refreshes
+ * the running summary. Once the run looks complete, or has been idle long enough, one token-only sweep of the
+ * feedback table picks up anything the high-water mark missed.
+ *
+ * <p>Watchlist responses can land after a token's feedback, so the number of fcc_tf_rt_wls_response rows of every
+ * scored token is remembered and compared on each poll and in the final sweep; a token whose count changed is scored
+ * again. Its old rows are taken back out of the running summary, while the sinks, being append-only, get the new rows
+ * after the old ones.
+ *
+ * <p>The high-water mark has to follow arrival order, not token order: by default it is ORA_ROWSCN (commit SCN, lag in
+ * SCNs). analyzer.follow.hwmColumn may name an insert sequence (NUMBER, lag in its units) or insert time (DATE or
+ * TIMESTAMP, lag in milliseconds) column of fcc_tf_feedback; the name is checked against the data dictionary before it
+ * is put into any query.
+ */
+public class FollowAnalyzer {
+    private static final Logger logger = LoggerFactory.getLogger(FollowAnalyzer.class);
+
+    private static final Pattern COLUMN_NAME = Pattern.compile("[A-Z][A-Z0-9_$#]{0,127}");
+
+    private final String runSkey;
+    private final String batchType;
+    private final String batchTable;
+    private final int msgCategory;
+    private final String msgCategoryString;
+    private final String hwmColumn;
+    private final long hwmLag;
+    private String hwmExpression;
+
+    private final Set<Long> scoredTokens = new HashSet<>();
+    // WLS row count each token was scored with, and its rows trimmed to the fields the summary reads
+    private final Map<Long, Integer> scoredWlsCounts = new HashMap<>();
+    private final Map<Long, List<ReportRow>> scoredSummaryRows = new HashMap<>();
+    private final ReportSummary runningSummary = new ReportSummary();
+    private long highWaterMark = Long.MIN_VALUE;
+
+    private FollowAnalyzer(String runSkey, String batchType, int msgCategory, String msgCategoryString, Properties props) {
+        this.runSkey = runSkey;
+        this.batchType = batchType;
+        this.batchTable = AnalyzerMain.batchTable(batchType);
+        this.msgCategory = msgCategory;
+        this.msgCategoryString = msgCategoryString;
+        this.hwmColumn = props.getProperty(Constants.FOLLOW_HWM_COLUMN, Constants.DEFAULT_FOLLOW_HWM_COLUMN).trim().toUpperCase();
+        if (!COLUMN_NAME.matcher(hwmColumn).matches()) {
+            throw new IllegalArgumentException("Invalid " + Constants.FOLLOW_HWM_COLUMN + ": " + hwmColumn);
+        }
+        this.hwmLag = Long.parseLong(props.getProperty(Constants.FOLLOW_HWM_LAG, "10000"));
+    }
+
+    public static void follow(String runSkey, String batchType, int msgCategory, String msgCategoryString, String type,
+                              String misDate, String runNo, String matchHeader, int excelRowLimit, Properties props) throws Exception {
+        new FollowAnalyzer(runSkey, batchType, msgCategory, msgCategoryString, props)
+                .run(type, misDate, runNo, matchHeader, excelRowLimit, props);
+    }
+
+    private void run(String type, String misDate, String runNo, String matchHeader, int excelRowLimit, Properties props) throws Exception {
+        long startTime = System.currentTimeMillis();
+        long pollIntervalMs = Long.parseLong(props.getProperty(Constants.FOLLOW_POLL_INTERVAL_SEC, "30")) * 1000L;
+        int maxIdlePolls = Integer.parseInt(props.getProperty(Constants.FOLLOW_IDLE_POLLS, "10"));
+        long maxMinutes = Long.parseLong(props.getProperty(Constants.FOLLOW_MAX_MINUTES, "0"));
+        String prefix = AnalyzerMain.analysisFilePrefix(misDate, runNo, batchType, type);
+        try (Connection connection = SQLUtility.getDbConnection()) {
+            hwmExpression = hwmExpression(connection, hwmColumn);
+        }
+        logger.info("Following run skey {} ({}) every {} s, high-water mark on {}", runSkey, type, pollIntervalMs / 1000, hwmColumn);
+
+        int idlePolls = 0;
+        try (ReportSinks sinks = ReportSinks.open(props, misDate, runNo, batchType, matchHeader, type, excelRowLimit)) {
+            while (true) {
+                long expected;
+                int scoredThisPoll;
+                try (Connection connection = SQLUtility.getDbConnection()) {
+                    Long lowerBound = highWaterMark == Long.MIN_VALUE ? null : highWaterMark - hwmLag;
+                    scoredThisPoll = scoreNewTokens(connection, lowerBound, sinks);
+                    expected = countBatchTokens(connection);
+                }
+                idlePolls = scoredThisPoll == 0 ? idlePolls + 1 : 0;
+                if (scoredThisPoll > 0) {
+                    runningSummary.write(prefix, type);
+                }
+
+                logger.info("Run skey {}: {} new or rescored, {}/{} tokens scored, running summary {}", runSkey, scoredThisPoll,
+                        scoredTokens.size(), expected, runningSummary.toJson().getJSONObject("total").toString());
+
+                if (expected > 0 && scoredTokens.size() >= expected) {
+                    logger.info("Run skey {}: all {} tokens have feedback", runSkey, expected);
+                    break;
+                }
+                if (idlePolls >= maxIdlePolls) {
+                    logger.info("Run skey {}: no new feedback for {} polls, stopping", runSkey, idlePolls);
+                    break;
+                }
+                if (maxMinutes > 0 && System.currentTimeMillis() - startTime > maxMinutes * 60_000L) {
+                    logger.info("Run skey {}: follow time limit of {} minutes reached, stopping", runSkey, maxMinutes);
+                    break;
+                }
+                Thread.sleep(pollIntervalMs);
+            }
+
+            // Final token-only sweep for anything committed below the high-water mark after it had moved past,
+            // and for WLS rows that arrived since the last poll
+            try (Connection connection = SQLUtility.getDbConnection()) {
+                int reconciled = scoreNewTokens(connection, null, sinks);
+                if (reconciled > 0) {
+                    logger.info("Run skey {}: final sweep scored {} late or changed tokens", runSkey, reconciled);
+                }
+            }
+        }
+        runningSummary.write(prefix, type);
+        logger.info("Follow mode for run skey {} finished: {} tokens in {} s", runSkey, scoredTokens.size(),
+                (System.currentTimeMillis() - startTime) / 1000L);
+    }
+
+    /**
+     * Scores the tokens with feedback above {@code lowerBound} (all tokens when null) that were not scored yet, and
+     * scores again those whose WLS row count differs from the one they were scored with.
+     */
+    private int scoreNewTokens(Connection connection, Long lowerBound, ReportSink sink) throws Exception {
+        String query = "SELECT f.N_TRAX_TOKEN, " + hwmExpression + " " +
+                       "FROM fcc_tf_feedback f " +
+                       "JOIN " + batchTable + " b ON b.N_GRP_MSG_ID = f.N_TRAX_TOKEN " +
+                       "WHERE b.N_RUN_SKEY = ? AND f.V_MSG_CATEGORY = ?" +
+                       (lowerBound != null ? " AND " + hwmExpression + " > ?" : "");
+        List<Long> newTokens = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        long maxHwm = highWaterMark;
+        try (PreparedStatement pst = connection.prepareStatement(query)) {
+            pst.setFetchSize(5000);
+            pst.setLong(1, Long.parseLong(runSkey));
+            pst.setString(2, msgCategoryString);
+            if (lowerBound != null) {
+                pst.setLong(3, lowerBound);
+            }
+            try (ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) {
+                    long token = rs.getLong(1);
+                    maxHwm = Math.max(maxHwm, rs.getLong(2));
+                    if (!scoredTokens.contains(token) && seen.add(token)) {
+                        newTokens.add(token);
+                    }
+                }
+            }
+        }
+        highWaterMark = maxHwm;
+
+        // Counted before the WLS rows are read, so rows landing in between show up as a change on the next poll
+        Map<Long, Integer> wlsCounts = countWlsRows(connection);
+        for (Map.Entry<Long, Integer> scored : scoredWlsCounts.entrySet()) {
+            if (!scored.getValue().equals(wlsCounts.getOrDefault(scored.getKey(), 0))) {
+                newTokens.add(scored.getKey());
+            }
+        }
+        if (newTokens.isEmpty()) return 0;
+        for (Long token : newTokens) {
+            List<ReportRow> previous = scoredSummaryRows.remove(token);
+            if (previous != null) {
+                previous.forEach(runningSummary::retract);
+            }
+        }
+
+        Map<Long, String> tokenToRawMsg = new HashMap<>();
+        Map<Long, JSONObject> tokenToAdditionalDataMap = new HashMap<>();
+        Map<Long, JSONObject> feedbackMap = new HashMap<>();
+        AnalyzerMain.fetchByTokens(connection, batchTable, newTokens, msgCategoryString, tokenToRawMsg, tokenToAdditionalDataMap, feedbackMap);
+        Map<Long, Map<Long, Set<String>>> columnNames = AnalyzerMain.getBulkColumnNameWLS(connection, newTokens, msgCategory);
+
+        AnalysisResult partial = AnalyzerMain.analyzeResults(newTokens, columnNames, feedbackMap, tokenToAdditionalDataMap, runSkey, tokenToRawMsg);
+        for (ReportRow row : partial.reportRows) {
+            sink.accept(row);
+            scoredSummaryRows.computeIfAbsent(row.transactionToken, k -> new ArrayList<>()).add(summaryRow(row));
+        }
+        runningSummary.merge(partial.summary);
+        scoredTokens.addAll(newTokens);
+        for (Long token : newTokens) {
+            scoredWlsCounts.put(token, wlsCounts.getOrDefault(token, 0));
+        }
+        return newTokens.size();
+    }
+
+    private Map<Long, Integer> countWlsRows(Connection connection) throws Exception {
+        String query = "SELECT w.N_GRP_MSG_ID, COUNT(*) FROM fcc_tf_rt_wls_response w " +
+                       "WHERE w.N_MSG_CATEGORY = ? AND w.N_GRP_MSG_ID IN (SELECT b.N_GRP_MSG_ID FROM " + batchTable + " b WHERE b.N_RUN_SKEY = ?) " +
+                       "GROUP BY w.N_GRP_MSG_ID";
+        Map<Long, Integer> counts = new HashMap<>();
+        try (PreparedStatement pst = connection.prepareStatement(query)) {
+            pst.setFetchSize(5000);
+            pst.setInt(1, msgCategory);
+            pst.setLong(2, Long.parseLong(runSkey));
+            try (ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) {
+                    counts.put(rs.getLong(1), rs.getInt(2));
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static ReportRow summaryRow(ReportRow row) {
+        ReportRow trimmed = new ReportRow(0, row.ruleName, null, row.tag, null, null, row.targetColumn, row.watchlist,
+                null, row.transactionToken, null, row.matchCount, null, 0, null, row.testStatus, null, null, row.isColumnMismatch);
+        trimmed.ruleType = row.ruleType;
+        trimmed.stratum = row.stratum;
+        trimmed.stratumSize = row.stratumSize;
+        return trimmed;
+    }
+
+    /**
+     * The SQL for the high-water mark of feedback row f, as a number that grows with arrival. Only ORA_ROWSCN or a
+     * NUMBER, DATE or TIMESTAMP column that the dictionary lists for fcc_tf_feedback is accepted.
+     */
+    static String hwmExpression(Connection connection, String column) throws Exception {
+        if (Constants.DEFAULT_FOLLOW_HWM_COLUMN.equals(column)) return "f.ORA_ROWSCN";
+        String dataType = null;
+        try (PreparedStatement pst = connection.prepareStatement(
+                "SELECT DATA_TYPE FROM ALL_TAB_COLUMNS WHERE TABLE_NAME = 'FCC_TF_FEEDBACK' AND COLUMN_NAME = ?")) {
+            pst.setString(1, column);
+            try (ResultSet rs = pst.executeQuery()) {
+                if (rs.next()) dataType = rs.getString(1);
+            }
+        }
+        if (dataType == null) {
+            throw new IllegalArgumentException(Constants.FOLLOW_HWM_COLUMN + "=" + column + " is not a column of fcc_tf_feedback");
+        }
+        if ("NUMBER".equals(dataType)) return "f." + column;
+        if ("DATE".equals(dataType) || dataType.startsWith("TIMESTAMP")) {
+            // Epoch milliseconds, so hwmLag is a time window
+            return "ROUND((CAST(f." + column + " AS DATE) - DATE '1970-01-01') * 86400000)";
+        }
+        throw new IllegalArgumentException(Constants.FOLLOW_HWM_COLUMN + "=" + column + " is " + dataType
+                + ", expected an insert sequence (NUMBER) or insert time (DATE/TIMESTAMP)");
+    }
+
+    private long countBatchTokens(Connection connection) throws Exception {
+        try (PreparedStatement pst = connection.prepareStatement("SELECT COUNT(DISTINCT N_GRP_MSG_ID) FROM " + batchTable + " WHERE N_RUN_SKEY = ?")) {
+            pst.setLong(1, Long.parseLong(runSkey));
+            try (ResultSet rs = pst.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Node i of N in a partitioned generation (generator.nodeIndex / generator.nodeCount, or
+ * {@code RawMessageGeneratorMain node <i> <N>}). The node reads only the watchlist rows with
+ * {@code ORA_HASH(N_UID, N - 1) = i}, writes to out/node_i, takes file indexes i+1, i+1+N, ... and tags its message
+ * keys with the node, so the outputs of all nodes can be combined by {@link #merge} without renaming anything.
+ */
+public class GenerationPartition {
+    private static final Logger logger = LoggerFactory.getLogger(GenerationPartition.class);
+
+    private final int nodeIndex;
+    private final int nodeCount;
+
+    private GenerationPartition(int nodeIndex, int nodeCount) {
+        if (nodeCount < 1 || nodeIndex < 0 || nodeIndex >= nodeCount) {
+            throw new IllegalArgumentException("Invalid generation partition: node " + nodeIndex + " of " + nodeCount);
+        }
+        this.nodeIndex = nodeIndex;
+        this.nodeCount = nodeCount;
+    }
+
+    /**
+     * The partition configured in the properties, or null for a normal single-node run.
+     */
+    public static GenerationPartition from(Properties props) {
+        String count = props.getProperty(Constants.GENERATOR_NODE_COUNT, "").trim();
+        if (count.isEmpty() || Integer.parseInt(count) <= 1) return null;
+        return new GenerationPartition(Integer.parseInt(props.getProperty(Constants.GENERATOR_NODE_INDEX, "0").trim()), Integer.parseInt(count));
+    }
+
+    /** Predicate added to the watchlist query; ORA_HASH with a max bucket gives buckets 0..N-1 directly. */
+    public String sqlPredicate() {
+        return "ORA_HASH(" + Constants.NUID + ", " + (nodeCount - 1) + ") = " + nodeIndex;
+    }
+
+    /** Inserted into message keys after the timestamp so keys of different nodes never collide. */
+    public String keyTag() {
+        return "N" + nodeIndex + "_";
+    }
+
+    public int firstFileIndex() {
+        return nodeIndex + 1;
+    }
+
+    public int fileIndexStep() {
+        return nodeCount;
+    }
+
+    public File outputFolder() {
+        return nodeFolder(nodeIndex);
+    }
+
+    private static File nodeFolder(int nodeIndex) {
+        return new File(Constants.OUTPUT_FOLDER, Constants.NODE_FOLDER_PREFIX + nodeIndex);
+    }
+
+    /**
+     * Moves the shards and indexes of every node folder into the output folder and writes one filename.txt (in file
+     * index order) and one run_details.json (counts summed per config). Node folders must be complete, i.e. copied
+     * over from other machines before merging. Every node is checked before anything is moved, and the merge refuses
+     * to overwrite a file already in the output folder.
+     */
+    public static void merge(int nodeCount) throws IOException {
+        long startTime = System.currentTimeMillis();
+        List<String[]> fileEntries = new ArrayList<>(); // {entry, index}
+        Map<String, JSONObject> configDetails = new LinkedHashMap<>();
+        Map<String, File> outputs = new LinkedHashMap<>(); // target name -> node file
+        for (int node = 0; node < nodeCount; node++) {
+            File runDetailsFile = new File(nodeFolder(node), Constants.RUN_DETAILS_FILE_NAME);
+            if (!runDetailsFile.exists()) {
+                throw new IOException("Node " + node + " has not finished: " + runDetailsFile.getPath() + " is missing");
+            }
+        }
+        for (String name : new String[]{Constants.FILE_NAME_LIST, Constants.RUN_DETAILS_FILE_NAME}) {
+            File target = new File(Constants.OUTPUT_FOLDER, name);
+            if (target.exists()) {
+                throw new IOException("Refusing to merge over " + target.getPath() + ", move the previous run away first");
+            }
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            File folder = nodeFolder(node);
+            File listFile = new File(folder, Constants.FILE_NAME_LIST);
+            File runDetailsFile = new File(folder, Constants.RUN_DETAILS_FILE_NAME);
+            if (listFile.exists()) {
+                for (String line : Files.readAllLines(listFile.toPath(), StandardCharsets.UTF_8)) {
+                    if (!line.trim().isEmpty()) fileEntries.add(new String[]{line.trim(), trailingNumber(line.trim())});
+                }
+            }
+            JSONArray runDetails = new JSONArray(new String(Files.readAllBytes(runDetailsFile.toPath()), StandardCharsets.UTF_8));
+            for (int i = 0; i < runDetails.length(); i++) {
+                JSONObject details = runDetails.getJSONObject(i);
+                JSONObject merged = configDetails.computeIfAbsent(details.getString("configName"), name -> {
+                    JSONObject created = new JSONObject();
+                    created.put("configName", name);
+                    created.put("fileCount", 0);
+                    created.put("rawMessageCount", 0);
+                    return created;
+                });
+                merged.put("fileCount", merged.getInt("fileCount") + details.getInt("fileCount"));
+                merged.put("rawMessageCount", merged.getInt("rawMessageCount") + details.getInt("rawMessageCount"));
+            }
+            File[] nodeOutputs = folder.listFiles((dir, name) -> name.endsWith(Constants.JSON_EXT) && !name.equals(Constants.RUN_DETAILS_FILE_NAME)
+                    || name.endsWith(Constants.EXPECTED_INDEX_EXT) || name.endsWith(Constants.SLOT_INDEX_EXT));
+            if (nodeOutputs != null) {
+                for (File output : nodeOutputs) {
+                    File previous = outputs.put(output.getName(), output);
+                    if (previous != null) {
+                        throw new IOException("Nodes produced the same file " + output.getName() + ": " + previous.getPath() + " and " + output.getPath());
+                    }
+                    File target = new File(Constants.OUTPUT_FOLDER, output.getName());
+                    if (target.exists()) {
+                        throw new IOException("Refusing to overwrite " + target.getPath() + " with " + output.getPath());
+                    }
+                }
+            }
+        }
+        int moved = 0;
+        for (File output : outputs.values()) {
+            // No REPLACE_EXISTING: a file appearing since the check fails the move instead of being overwritten
+            Files.move(output.toPath(), new File(Constants.OUTPUT_FOLDER, output.getName()).toPath());
+            moved++;
+        }
+        fileEntries.sort((a, b) -> Long.compare(Long.parseLong(a[1]), Long.parseLong(b[1])));
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(new File(Constants.OUTPUT_FOLDER, Constants.FILE_NAME_LIST)))) {
+            for (String[] fileEntry : fileEntries) {
+                writer.write(fileEntry[0]);
+                writer.newLine();
+            }
+        }
+        JSONArray runDetails = new JSONArray();
+        for (JSONObject details : configDetails.values()) runDetails.put(details);
+        try (FileWriter writer = new FileWriter(new File(Constants.OUTPUT_FOLDER, Constants.RUN_DETAILS_FILE_NAME))) {
+            writer.write(runDetails.toString(2));
+        }
+        logger.info("Merged {} nodes: {} shard files, {} files moved, configs {} in {} ms", nodeCount, fileEntries.size(),
+                moved, configDetails.keySet(), (System.currentTimeMillis() - startTime));
+    }
+
+    private static String trailingNumber(String fileEntry) {
+        int i = fileEntry.length();
+        while (i > 0 && Character.isDigit(fileEntry.charAt(i - 1))) i--;
+        return i == fileEntry.length() ? "0" : fileEntry.substring(i);
+    }
+
+    @Override
+    public String toString() {
+        return "node " + nodeIndex + " of " + nodeCount;
+    }
+}
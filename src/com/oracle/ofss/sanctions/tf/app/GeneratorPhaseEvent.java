@@ -0,0 +1,51 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for one unit of generator work: the watchlist query, lookup loading, a batch of expanded watchlist rows,
+ * one JSON shard or the expected-outcome index.
+ */
+@Name("com.oracle.ofss.sanctions.tf.GeneratorPhase")
+@Label("Generator Phase")
+@Category({"Batch Message Processor", "Generator"})
+public class GeneratorPhaseEvent extends jdk.jfr.Event {
+    static final String WATCHLIST_QUERY = "watchlistQuery";
+    static final String LOOKUP_LOAD = "lookupLoad";
+    static final String EXPAND = "expand";
+    static final String WRITE_SHARD = "writeShard";
+    static final String WRITE_INDEX = "writeIndex";
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Config")
+    String config;
+
+    @Label("Watchlist")
+    String watchlist;
+
+    @Label("File")
+    String file;
+
+    @Label("Watchlist Rows")
+    long rows;
+
+    @Label("Messages")
+    long items;
+
+    @Label("Cursor Time")
+    @Description("Time spent in ResultSet.next() on the watchlist cursor within this event")
+    @Timespan(Timespan.NANOSECONDS)
+    long cursorTime;
+
+    GeneratorPhaseEvent(String phase, String config, String watchlist) {
+        this.phase = phase;
+        this.config = config;
+        this.watchlist = watchlist;
+    }
+}
@@ -0,0 +1,306 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resident service that runs generate and analyze jobs in one warm JVM, so the connection pool, synonym lookups,
+ * statement caches and JIT-compiled code survive between jobs.
+ *
+ * <p>Jobs are submitted over HTTP on the loopback interface (daemon.port):
+ * <pre>
+ * POST /jobs/generate | /jobs/analyze   body: properties overriding common.properties for this job
+ * GET  /jobs, GET /jobs/{id}            status and timings
+ * POST /caches/clear                    drop cached lookups and expected-outcome indexes
+ * GET  /health
+ * </pre>
+ * or by dropping {@code <name>.generate.properties} / {@code <name>.analyze.properties} into daemon.jobDir
+ * (default: jobs next to the output folder). Write the file under another name first (e.g. {@code .properties.tmp},
+ * which is ignored like every name not ending in {@code .properties}) and rename it into place, so the daemon never
+ * reads a half-written job; a file written in place is only taken once its size has stopped changing. Dropped files
+ * move to running/, then done/ or failed/ with a {@code .status.json} beside them. Jobs run one at a time, in
+ * submission order; each one is already parallel inside.
+ */
+public class JobDaemon {
+    private static final Logger logger = LoggerFactory.getLogger(JobDaemon.class);
+
+    private static final String PROPERTIES_EXT = ".properties";
+    // How long a job file's size must stay unchanged before it is taken
+    private static final long SETTLE_MILLIS = 500;
+
+    enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+    static class Job {
+        final long id;
+        final String type;
+        final String source;
+        final Properties overrides;
+        final long submittedAt = System.currentTimeMillis();
+        volatile Status status = Status.QUEUED;
+        volatile long startedAt;
+        volatile long finishedAt;
+        volatile String error;
+        volatile Integer generatedCount;
+
+        Job(long id, String type, String source, Properties overrides) {
+            this.id = id;
+            this.type = type;
+            this.source = source;
+            this.overrides = overrides;
+        }
+
+        JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("id", id);
+            json.put("type", type);
+            json.put("source", source);
+            json.put("status", status.name());
+            json.put("queuedMs", (startedAt == 0 ? System.currentTimeMillis() : startedAt) - submittedAt);
+            if (startedAt != 0) json.put("runMs", (finishedAt == 0 ? System.currentTimeMillis() : finishedAt) - startedAt);
+            if (generatedCount != null) json.put("generatedCount", generatedCount);
+            if (error != null) json.put("error", error);
+            return json;
+        }
+    }
+
+    private final ExecutorService jobExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "daemon-job"));
+    private final AtomicLong jobIds = new AtomicLong();
+    private final Map<Long, Job> jobs = new LinkedHashMap<>();
+    private final int history;
+    private final long startedAt = System.currentTimeMillis();
+
+    JobDaemon(int history) {
+        this.history = history;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties props = AnalyzerMain.loadProperties();
+        int port = Integer.parseInt(props.getProperty(Constants.DAEMON_PORT, String.valueOf(Constants.DEFAULT_DAEMON_PORT)));
+        File jobDir = new File(props.getProperty(Constants.DAEMON_JOB_DIR,
+                new File(Constants.PARENT_DIRECTORY, Constants.DAEMON_JOB_FOLDER_NAME).getPath()));
+        JobDaemon daemon = new JobDaemon(Integer.parseInt(props.getProperty(Constants.DAEMON_HISTORY, String.valueOf(Constants.DEFAULT_DAEMON_HISTORY))));
+
+        // Opens the pool up front, so the first job does not pay for it
+        logger.info("Connection pool ready with up to {} connections", SQLUtility.getMaximumPoolSize());
+        daemon.startHttp(port);
+        daemon.watchJobDir(jobDir);
+    }
+
+    Job submit(String type, String source, Properties overrides) {
+        if (!Constants.JOB_GENERATE.equals(type) && !Constants.JOB_ANALYZE.equals(type)) {
+            throw new IllegalArgumentException("Unknown job type: " + type);
+        }
+        Job job = new Job(jobIds.incrementAndGet(), type, source, overrides);
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+            // Keep a bounded history; only finished jobs are dropped
+            Iterator<Job> it = jobs.values().iterator();
+            while (jobs.size() > history && it.hasNext()) {
+                Job oldest = it.next();
+                if (oldest.finishedAt != 0) it.remove();
+            }
+        }
+        logger.info("Job {} ({}) queued from {}", job.id, type, source);
+        jobExecutor.submit(() -> run(job));
+        return job;
+    }
+
+    private void run(Job job) {
+        job.startedAt = System.currentTimeMillis();
+        job.status = Status.RUNNING;
+        try {
+            Properties props = AnalyzerMain.loadProperties();
+            props.putAll(job.overrides);
+            if (Constants.JOB_GENERATE.equals(job.type)) {
+                if (!props.containsKey(Constants.GENERATOR_LOOKUP_CACHE)) {
+                    props.setProperty(Constants.GENERATOR_LOOKUP_CACHE, Constants.YES);
+                }
+                job.generatedCount = RawMessageGeneratorMain.run(props);
+            } else {
+                AnalyzerMain.run(props);
+            }
+            job.status = Status.SUCCEEDED;
+        } catch (Throwable e) {
+            logger.error("Job {} ({}) failed: {}", job.id, job.type, e.getMessage(), e);
+            job.error = String.valueOf(e.getMessage());
+            job.status = Status.FAILED;
+        } finally {
+            job.finishedAt = System.currentTimeMillis();
+            logger.info("Job {} ({}) {} in {} ms", job.id, job.type, job.status, (job.finishedAt - job.startedAt));
+        }
+    }
+
+    private void startHttp(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/jobs", this::handleJobs);
+        server.createContext("/caches/clear", exchange -> {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, error("Use POST"));
+                return;
+            }
+            RawMessageGenerator.clearLookupCaches();
+            ExpectedOutcomeIndex.reset();
+            respond(exchange, 200, new JSONObject().put("cleared", true));
+        });
+        server.createContext("/health", exchange -> {
+            JSONObject health = new JSONObject();
+            health.put("uptimeMs", System.currentTimeMillis() - startedAt);
+            health.put("maxPoolSize", SQLUtility.getMaximumPoolSize());
+            health.put("heapUsedMb", (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) >> 20);
+            respond(exchange, 200, health);
+        });
+        server.setExecutor(Executors.newFixedThreadPool(2));
+        server.start();
+        logger.info("Job daemon listening on http://{}:{}/jobs", InetAddress.getLoopbackAddress().getHostAddress(), port);
+    }
+
+    private void handleJobs(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath().replaceAll("/+$", "");
+            String rest = path.length() > "/jobs".length() ? path.substring("/jobs/".length()) : "";
+            if ("POST".equals(exchange.getRequestMethod()) && !rest.isEmpty()) {
+                Properties overrides = new Properties();
+                try (InputStream body = exchange.getRequestBody()) {
+                    overrides.load(new StringReader(new String(body.readAllBytes(), StandardCharsets.UTF_8)));
+                }
+                respond(exchange, 202, submit(rest, "http", overrides).toJson());
+            } else if ("GET".equals(exchange.getRequestMethod()) && rest.isEmpty()) {
+                JSONArray list = new JSONArray();
+                synchronized (jobs) {
+                    for (Job job : jobs.values()) list.put(job.toJson());
+                }
+                respond(exchange, 200, new JSONObject().put("jobs", list));
+            } else if ("GET".equals(exchange.getRequestMethod())) {
+                Job job;
+                synchronized (jobs) {
+                    job = jobs.get(Long.parseLong(rest));
+                }
+                if (job == null) respond(exchange, 404, error("No job " + rest));
+                else respond(exchange, 200, job.toJson());
+            } else {
+                respond(exchange, 405, error("Unsupported request " + exchange.getRequestMethod() + " " + path));
+            }
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+        }
+    }
+
+    /**
+     * Watches the job-drop directory on the calling thread. Files already present at start-up are picked up first.
+     */
+    private void watchJobDir(File jobDir) throws IOException, InterruptedException {
+        for (String folder : new String[]{"running", "done", "failed"}) {
+            new File(jobDir, folder).mkdirs();
+        }
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            jobDir.toPath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
+            File[] existing = jobDir.listFiles(File::isFile);
+            if (existing != null) {
+                for (File file : existing) accept(jobDir, file.toPath());
+            }
+            logger.info("Watching {} for *.{}{} and *.{}{} job files (write them as .tmp and rename into place)", jobDir.getPath(),
+                    Constants.JOB_GENERATE, PROPERTIES_EXT, Constants.JOB_ANALYZE, PROPERTIES_EXT);
+            while (true) {
+                WatchKey key = watcher.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) continue;
+                    accept(jobDir, jobDir.toPath().resolve((Path) event.context()));
+                }
+                key.reset();
+            }
+        }
+    }
+
+    private void accept(File jobDir, Path file) {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(PROPERTIES_EXT)) return;
+        String stem = name.substring(0, name.length() - PROPERTIES_EXT.length());
+        String type = stem.substring(stem.lastIndexOf('.') + 1);
+        if (!Constants.JOB_GENERATE.equals(type) && !Constants.JOB_ANALYZE.equals(type)) {
+            logger.warn("Ignoring {}: expected <name>.{}{} or <name>.{}{}", name, Constants.JOB_GENERATE, PROPERTIES_EXT,
+                    Constants.JOB_ANALYZE, PROPERTIES_EXT);
+            return;
+        }
+        try {
+            awaitSettled(file);
+            Path running = Files.move(file, jobDir.toPath().resolve("running").resolve(name), StandardCopyOption.REPLACE_EXISTING);
+            Properties overrides = new Properties();
+            try (FileReader reader = new FileReader(running.toFile())) {
+                overrides.load(reader);
+            }
+            Job job = submit(type, name, overrides);
+            jobExecutor.submit(() -> finishDropped(jobDir, running, job));
+        } catch (IOException e) {
+            logger.error("Could not take job file {}: {}", name, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // A renamed file is complete at once; one still being written keeps growing between checks
+    private static void awaitSettled(Path file) throws IOException, InterruptedException {
+        long size = Files.size(file);
+        while (true) {
+            Thread.sleep(SETTLE_MILLIS);
+            long current = Files.size(file);
+            if (current == size) return;
+            size = current;
+        }
+    }
+
+    // Queued right behind the job itself on the single job thread, so it runs once the job has finished
+    private void finishDropped(File jobDir, Path running, Job job) {
+        String folder = job.status == Status.SUCCEEDED ? "done" : "failed";
+        try {
+            Path target = Files.move(running, jobDir.toPath().resolve(folder).resolve(running.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            try (FileWriter writer = new FileWriter(target.toString() + ".status.json")) {
+                writer.write(job.toJson().toString(2));
+            }
+        } catch (IOException e) {
+            logger.error("Could not record status of job {}: {}", job.id, e.getMessage());
+        }
+    }
+
+    private static JSONObject error(String message) {
+        return new JSONObject().put("error", message);
+    }
+
+    private static void respond(HttpExchange exchange, int status, JSONObject body) throws IOException {
+        byte[] bytes = body.toString(2).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Streams report rows as JSON Lines, one object per row keyed by the {@link ReportRow} field names.
+ */
+public class JsonlReportSink implements ReportSink {
+    private static final Logger logger = LoggerFactory.getLogger(JsonlReportSink.class);
+
+    private final File outputFile;
+    private final JsonGenerator generator;
+    private int seqNo;
+
+    public JsonlReportSink(File outputFile) throws IOException {
+        this.outputFile = outputFile;
+        JsonFactory factory = new JsonFactory();
+        factory.setRootValueSeparator("\n");
+        this.generator = factory.createGenerator(new BufferedOutputStream(new FileOutputStream(outputFile), 1 << 16));
+    }
+
+    @Override
+    public void accept(ReportRow rr) throws IOException {
+        seqNo++;
+        generator.writeStartObject();
+        generator.writeNumberField("seqNo", seqNo);
+        generator.writeStringField("ruleName", rr.ruleName);
+        generator.writeStringField("message", rr.message);
+        generator.writeStringField("tag", rr.tag);
+        generator.writeStringField("sourceInput", rr.sourceInput);
+        generator.writeStringField("targetInput", rr.targetInput);
+        generator.writeStringField("targetColumn", rr.targetColumn);
+        generator.writeStringField("watchlist", rr.watchlist);
+        generator.writeStringField("nUid", rr.nUid);
+        generator.writeNumberField("transactionToken", rr.transactionToken);
+        generator.writeStringField("runSkey", rr.runSkey);
+        generator.writeNumberField("matchCount", rr.matchCount);
+        generator.writeStringField("feedbackStatus", rr.feedbackStatus);
+        generator.writeNumberField("specificMatches", rr.specificMatches);
+        generator.writeStringField("feedback", rr.feedback);
+        generator.writeStringField("testStatus", rr.testStatus);
+        generator.writeStringField("comments", rr.comments);
+        generator.writeStringField("messageKey", rr.messageKey);
+        generator.writeBooleanField("isColumnMismatch", rr.isColumnMismatch);
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.writeRaw('\n');
+        generator.close();
+        logger.info("JSONL report generated at: {} ({} rows)", outputFile.getAbsolutePath(), seqNo);
+    }
+}
@@ -0,0 +1,381 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Continuous, rate-controlled load for soak and capacity tests ({@code RawMessageGeneratorMain load}). The enabled
+ * configs are generated once into memory, without packing, and their messages are grouped by kind: exact, fuzzy
+ * (CED 1-3), stopword and synonym. They are then re-emitted with fresh message keys, in the proportions of
+ * load.mix.exact/fuzzy/stopword/synonym, at the rate of load.profile (or a flat load.rate for load.durationSeconds).
+ * A token bucket holding at most load.burstSeconds of tokens paces the emission. Time lost to a slow shard write
+ * beyond that is kept as a deficit and made up afterwards at up to load.burstSeconds of extra messages per second,
+ * so nothing is dropped and the output never bursts beyond one bucket at once; a deficit still open when the profile
+ * ends is logged. Messages go to out/load in shards of at most load.shardSize,
+ * flushed at least every load.flushMillis; each shard is renamed into place when complete and then appended to
+ * filename.txt. Target and achieved rate per second are written to out/load/load_rate.csv.
+ * <p>
+ * The pool is held in memory, so large watchlists should be bounded with generator.sample.perStratum.
+ */
+public class LoadGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+    static final String[] KINDS = {"exact", "fuzzy", "stopword", "synonym"};
+    // Longest sleep between bucket refills
+    private static final long TICK_NANOS = 10_000_000L;
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+
+    /**
+     * Runs the load to the end of the profile and returns the number of messages emitted.
+     */
+    public static long run(Properties commonProps) throws Exception {
+        Profile profile = Profile.from(commonProps);
+        Mix mix = new Mix(generatePools(commonProps), commonProps);
+        double burstSeconds = Double.parseDouble(commonProps.getProperty(Constants.LOAD_BURST_SECONDS, String.valueOf(Constants.DEFAULT_LOAD_BURST_SECONDS)).trim());
+        int shardSize = Integer.parseInt(commonProps.getProperty(Constants.LOAD_SHARD_SIZE,
+                commonProps.getProperty(Constants.JSON_OBJJECT_LIMIT, String.valueOf(Constants.DEFAULT_ROW_LIMIT))).trim());
+        long flushNanos = Long.parseLong(commonProps.getProperty(Constants.LOAD_FLUSH_MILLIS, String.valueOf(Constants.DEFAULT_LOAD_FLUSH_MILLIS)).trim()) * 1_000_000L;
+        logger.info("Load profile {} ({} messages over {} s), mix {}, shards of {} flushed every {} ms",
+                profile, Math.round(profile.cumulative(profile.duration())), profile.duration(), mix, shardSize, flushNanos / 1_000_000L);
+
+        File folder = new File(Constants.OUTPUT_FOLDER, Constants.LOAD_FOLDER_NAME);
+        if (!folder.exists()) {
+            folder.mkdirs();
+        }
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.enable(SerializationFeature.INDENT_OUTPUT);
+        mapper.getFactory().setCharacterEscapes(new RawMessageGenerator.CustomEscapes());
+        // Shards are named like the generator's, after the config settings rather than common.properties alone
+        Properties namingProps = RawMessageGeneratorMain.shardNamingProperties(commonProps);
+        String misDate = namingProps.getProperty(Constants.MIS_DATE);
+        String shortPrefix = RawMessageGenerator.shortFilePrefix(namingProps);
+        String keyPrefix = LocalDateTime.now().format(DateTimeFormatter.ofPattern(Constants.DATE_TIME_FORMAT)) + "L_";
+
+        TokenBucket bucket = new TokenBucket(burstSeconds);
+        List<SourceInputModel> shard = new ArrayList<>(shardSize);
+        long emitted = 0;
+        int shards = 0;
+        try (BufferedWriter fileList = new BufferedWriter(new FileWriter(new File(folder, Constants.FILE_NAME_LIST)));
+             BufferedWriter rateLog = new BufferedWriter(new FileWriter(new File(folder, Constants.LOAD_RATE_FILE_NAME)))) {
+            rateLog.write("second,targetRate,achievedRate,messages,shards");
+            rateLog.newLine();
+            long start = System.nanoTime();
+            long last = start;
+            long lastFlush = start;
+            long windowStart = start;
+            long windowEmitted = 0;
+            int windowShards = 0;
+            double duration = profile.duration();
+            while (true) {
+                long now = System.nanoTime();
+                double elapsed = (now - start) / 1e9;
+                boolean done = elapsed >= duration;
+                if (!done) {
+                    double rate = profile.rateAt(elapsed);
+                    bucket.refill(profile.cumulative(elapsed) - profile.cumulative((last - start) / 1e9), rate, (now - last) / 1e9);
+                    last = now;
+                    for (int n = bucket.take(); n > 0; n--) {
+                        SourceInputModel message = RawMessageGenerator.cloneSourceModel(mix.next());
+                        message.getAdditionalData().put(Constants.MESSAGE_KEY_ADDITIONAL, keyPrefix + (++emitted));
+                        shard.add(message);
+                        windowEmitted++;
+                        if (shard.size() == shardSize) {
+                            writeShard(mapper, folder, misDate, shortPrefix + (++shards), shard, fileList);
+                            windowShards++;
+                            lastFlush = System.nanoTime();
+                        }
+                    }
+                }
+                if (!shard.isEmpty() && (done || now - lastFlush >= flushNanos)) {
+                    writeShard(mapper, folder, misDate, shortPrefix + (++shards), shard, fileList);
+                    windowShards++;
+                    lastFlush = System.nanoTime();
+                }
+                if (done || now - windowStart >= WINDOW_NANOS) {
+                    double from = (windowStart - start) / 1e9;
+                    double to = Math.min(elapsed, duration);
+                    if (to > from) {
+                        double seconds = (now - windowStart) / 1e9;
+                        rateLog.write(String.format("%.0f,%.1f,%.1f,%d,%d", from, (profile.cumulative(to) - profile.cumulative(from)) / (to - from),
+                                windowEmitted / seconds, windowEmitted, windowShards));
+                        rateLog.newLine();
+                        rateLog.flush();
+                    }
+                    windowStart = now;
+                    windowEmitted = 0;
+                    windowShards = 0;
+                }
+                if (done) break;
+                LockSupport.parkNanos(Math.max(100_000L, Math.min(TICK_NANOS, bucket.nanosToNextToken(profile.rateAt(elapsed)))));
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double target = profile.cumulative(duration);
+            logger.info("Load finished: {} of {} target messages ({}%) in {} shards, {} messages/s achieved against {} targeted, under {}",
+                    emitted, Math.round(target), String.format("%.1f", target == 0 ? 100 : 100.0 * emitted / target), shards,
+                    String.format("%.1f", emitted / seconds), String.format("%.1f", target / duration), folder.getPath());
+            if (bucket.deficit() >= 1) {
+                logger.warn("Load ended {} messages behind the profile; raise {} to catch up faster", Math.round(bucket.deficit()),
+                        Constants.LOAD_BURST_SECONDS);
+            }
+        }
+        return emitted;
+    }
+
+    // Generates every enabled config once and groups its messages by kind, in the order of KINDS
+    private static List<List<SourceInputModel>> generatePools(Properties commonProps) throws Exception {
+        List<List<SourceInputModel>> pools = new ArrayList<>();
+        for (int i = 0; i < KINDS.length; i++) {
+            pools.add(new ArrayList<>());
+        }
+        List<String> enabledConfigs = RawMessageGeneratorMain.getEnabledConfigs(commonProps);
+        if (enabledConfigs.isEmpty()) {
+            throw new IllegalStateException("No enabled configs found in common.properties.");
+        }
+        for (String configName : enabledConfigs) {
+            File configFile = new File(Constants.BIN_DIR_PATH, configName + ".properties");
+            File sourceFile = new File(Constants.BIN_DIR_PATH, configName + " source.json");
+            if (!configFile.exists() || !sourceFile.exists()) {
+                logger.warn("Config or source file of {} not found. Skipping.", configName);
+                continue;
+            }
+            Properties props = RawMessageGeneratorMain.mergeProperties(commonProps, RawMessageGeneratorMain.loadPropertiesFromFile(configFile));
+            if (!RawMessageGeneratorMain.validateConfigProperties(props, sourceFile)) {
+                logger.error("Validation failed for config: {}. Skipping.", configName);
+                continue;
+            }
+            // The mix is drawn per test value, so packing is left out of the pool
+            for (String key : props.stringPropertyNames()) {
+                if (key.startsWith(Constants.PACKING_SLOT)) props.remove(key);
+            }
+            List<SourceInputModel> messages = RawMessageGenerator.generateRawMessage(null, props, sourceFile.getPath(), configName);
+            if (messages == null) {
+                logger.error("Generation failed for config: {}. Skipping.", configName);
+                continue;
+            }
+            for (SourceInputModel message : messages) {
+                pools.get(kind(message)).add(message);
+            }
+        }
+        for (int i = 0; i < KINDS.length; i++) {
+            logger.info("Load pool: {} {} messages", pools.get(i).size(), KINDS[i]);
+        }
+        return pools;
+    }
+
+    private static int kind(SourceInputModel message) {
+        int ced = ((Number) message.getAdditionalData().get(Constants.CED)).intValue();
+        if (ced == -2) return 3;
+        if (ced == -1) return 2;
+        return ced == 0 ? 0 : 1;
+    }
+
+    // Written under a temporary name and renamed, so a consumer following filename.txt never sees a partial shard
+    private static void writeShard(ObjectMapper mapper, File folder, String misDate, String fileEntry, List<SourceInputModel> shard,
+                                   BufferedWriter fileList) throws IOException {
+        File shardFile = new File(folder, misDate + "_" + fileEntry + Constants.JSON_EXT);
+        File partFile = new File(folder, shardFile.getName() + ".part");
+        mapper.writeValue(partFile, shard);
+        Files.move(partFile.toPath(), shardFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        fileList.write(fileEntry);
+        fileList.newLine();
+        fileList.flush();
+        shard.clear();
+    }
+
+    /**
+     * Target rate over time: comma separated segments of {@code rate:seconds}, or {@code from-to:seconds} for a
+     * linear ramp, e.g. {@code 10-200:60,200:600}. Without load.profile it is a flat load.rate for
+     * load.durationSeconds.
+     */
+    static final class Profile {
+        private final double[] from;
+        private final double[] to;
+        private final double[] seconds;
+
+        private Profile(double[] from, double[] to, double[] seconds) {
+            this.from = from;
+            this.to = to;
+            this.seconds = seconds;
+        }
+
+        static Profile from(Properties props) {
+            String spec = props.getProperty(Constants.LOAD_PROFILE, "").trim();
+            if (spec.isEmpty()) {
+                String rate = props.getProperty(Constants.LOAD_RATE, "").trim();
+                String duration = props.getProperty(Constants.LOAD_DURATION_SECONDS, "").trim();
+                if (rate.isEmpty() || duration.isEmpty()) {
+                    throw new IllegalStateException("Load needs " + Constants.LOAD_PROFILE + ", or " + Constants.LOAD_RATE
+                            + " and " + Constants.LOAD_DURATION_SECONDS + ".");
+                }
+                spec = rate + ":" + duration;
+            }
+            String[] segments = spec.split(",");
+            double[] from = new double[segments.length];
+            double[] to = new double[segments.length];
+            double[] seconds = new double[segments.length];
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segments[i].trim();
+                int colon = segment.indexOf(':');
+                try {
+                    if (colon < 0) throw new NumberFormatException("no duration");
+                    String rates = segment.substring(0, colon);
+                    int dash = rates.indexOf('-');
+                    from[i] = Double.parseDouble(dash < 0 ? rates : rates.substring(0, dash));
+                    to[i] = dash < 0 ? from[i] : Double.parseDouble(rates.substring(dash + 1));
+                    seconds[i] = Double.parseDouble(segment.substring(colon + 1));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid load profile segment: " + segment, e);
+                }
+                if (from[i] < 0 || to[i] < 0 || seconds[i] <= 0) {
+                    throw new IllegalArgumentException("Invalid load profile segment: " + segment);
+                }
+            }
+            return new Profile(from, to, seconds);
+        }
+
+        double duration() {
+            double total = 0;
+            for (double s : seconds) total += s;
+            return total;
+        }
+
+        /** Messages per second at {@code t} seconds into the run; zero after the end. */
+        double rateAt(double t) {
+            for (int i = 0; i < seconds.length; i++) {
+                if (t < seconds[i]) return from[i] + (to[i] - from[i]) * t / seconds[i];
+                t -= seconds[i];
+            }
+            return 0;
+        }
+
+        /** Messages due in the first {@code t} seconds, the integral of the rate. */
+        double cumulative(double t) {
+            double total = 0;
+            for (int i = 0; i < seconds.length && t > 0; i++) {
+                double span = Math.min(t, seconds[i]);
+                total += span * (from[i] + (from[i] + (to[i] - from[i]) * span / seconds[i])) / 2;
+                t -= span;
+            }
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < seconds.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(from[i] == to[i] ? String.valueOf(from[i]) : from[i] + "-" + to[i]).append(':').append(seconds[i]);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Tokens are added as the profile accrues them and capped at burstSeconds of the current rate (at least one).
+     * Tokens over the cap go to a deficit, which is paid back at up to one full bucket per second on top of the
+     * profile.
+     */
+    static final class TokenBucket {
+        private final double burstSeconds;
+        private double tokens;
+        private double deficit;
+
+        TokenBucket(double burstSeconds) {
+            this.burstSeconds = burstSeconds;
+        }
+
+        void refill(double accrued, double rate, double seconds) {
+            double capacity = Math.max(1, rate * burstSeconds);
+            double repaid = Math.min(deficit, capacity * seconds);
+            deficit -= repaid;
+            tokens += accrued + repaid;
+            if (tokens > capacity) {
+                deficit += tokens - capacity;
+                tokens = capacity;
+            }
+        }
+
+        double deficit() {
+            return deficit;
+        }
+
+        int take() {
+            int whole = (int) tokens;
+            tokens -= whole;
+            return whole;
+        }
+
+        long nanosToNextToken(double rate) {
+            return rate <= 0 ? Long.MAX_VALUE : (long) ((1 - tokens) / rate * 1e9);
+        }
+    }
+
+    /**
+     * Smooth weighted round robin over the kinds, so every stretch of the output holds them in the configured
+     * proportions; within a kind the pool is cycled in order.
+     */
+    static final class Mix {
+        private final List<List<SourceInputModel>> pools;
+        private final double[] weights = new double[KINDS.length];
+        private final double[] current = new double[KINDS.length];
+        private final int[] next = new int[KINDS.length];
+        private final double total;
+
+        Mix(List<List<SourceInputModel>> pools, Properties props) {
+            this.pools = pools;
+            double sum = 0;
+            for (int i = 0; i < KINDS.length; i++) {
+                weights[i] = Double.parseDouble(props.getProperty(Constants.LOAD_MIX + KINDS[i], "1").trim());
+                if (weights[i] > 0 && pools.get(i).isEmpty()) {
+                    logger.warn("{}{} is {} but no {} messages were generated; it is left out of the mix", Constants.LOAD_MIX, KINDS[i], weights[i], KINDS[i]);
+                    weights[i] = 0;
+                }
+                sum += Math.max(0, weights[i]);
+            }
+            if (sum <= 0) {
+                throw new IllegalStateException("None of the " + Constants.LOAD_MIX + "* kinds has generated messages.");
+            }
+            this.total = sum;
+        }
+
+        SourceInputModel next() {
+            int best = -1;
+            for (int i = 0; i < KINDS.length; i++) {
+                if (weights[i] <= 0) continue;
+                current[i] += weights[i];
+                if (best < 0 || current[i] > current[best]) best = i;
+            }
+            current[best] -= total;
+            List<SourceInputModel> pool = pools.get(best);
+            SourceInputModel message = pool.get(next[best]);
+            next[best] = (next[best] + 1) % pool.size();
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < KINDS.length; i++) {
+                if (weights[i] <= 0) continue;
+                if (sb.length() > 0) sb.append(", ");
+                sb.append(KINDS[i]).append(' ').append(String.format("%.0f%%", 100 * weights[i] / total));
+            }
+            return sb.toString();
+        }
+    }
+}
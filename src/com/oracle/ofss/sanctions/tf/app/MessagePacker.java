@@ -0,0 +1,126 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Packing mode: the source template carries several placeholders, {@code packing.slot[k].token} (k = 1, 2, ...),
+ * each in a field tagged {@code packing.slot[k].tagName}, and every generated message fills all of them with
+ * independent test values, so the same coverage needs a fraction of the screening calls.
+ *
+ * <p>The test values are the generator's usual messages, split into one contiguous run per slot and zipped, so the
+ * values sharing a message come from different watchlist rows. {@code additionalData.slots} keeps each value's own
+ * expectation (with the slot's token and tagName) and the analyzer scores every slot as its own report row. The
+ * top-level fields are those of slot 1.
+ */
+public class MessagePacker {
+    private static final Logger logger = LoggerFactory.getLogger(MessagePacker.class);
+
+    /**
+     * The configured slots as {token, tagName} pairs, empty when packing is off.
+     */
+    static List<String[]> slots(Properties props) {
+        List<String[]> slots = new ArrayList<>();
+        for (int k = 1; ; k++) {
+            String token = props.getProperty(Constants.PACKING_SLOT + "[" + k + "]" + Constants.PACKING_SLOT_TOKEN);
+            if (token == null || token.trim().isEmpty()) break;
+            String tagName = props.getProperty(Constants.PACKING_SLOT + "[" + k + "]" + Constants.PACKING_SLOT_TAGNAME);
+            if (tagName == null || tagName.trim().isEmpty()) {
+                throw new IllegalArgumentException("Missing " + Constants.PACKING_SLOT + "[" + k + "]" + Constants.PACKING_SLOT_TAGNAME);
+            }
+            slots.add(new String[]{token.trim(), tagName.trim()});
+        }
+        return slots;
+    }
+
+    /**
+     * Checks the packing settings against the source template before any watchlist is read: slots numbered from 1
+     * without gaps, distinct tokens, and every token present in the template.
+     */
+    static void validate(Properties props, SourceInputModel sourceModel) {
+        List<String[]> slots = slots(props);
+        for (String key : props.stringPropertyNames()) {
+            if (!key.startsWith(Constants.PACKING_SLOT + "[")) continue;
+            int end = key.indexOf(']');
+            int k;
+            try {
+                k = end < 0 ? 0 : Integer.parseInt(key.substring(Constants.PACKING_SLOT.length() + 1, end));
+            } catch (NumberFormatException e) {
+                k = 0;
+            }
+            if (k < 1 || k > slots.size()) {
+                throw new IllegalArgumentException(key + " is not part of the packing slots " + Constants.PACKING_SLOT
+                        + "[1.." + slots.size() + "]" + Constants.PACKING_SLOT_TOKEN);
+            }
+        }
+        Set<String> tokens = new HashSet<>();
+        for (String[] slot : slots) {
+            if (!tokens.add(slot[0])) {
+                throw new IllegalArgumentException("Packing slot token " + slot[0] + " is used by more than one slot");
+            }
+            if (sourceModel == null || !sourceModel.getRawMessage().contains(slot[0])) {
+                throw new IllegalArgumentException("Packing slot token " + slot[0] + " is not in the source template");
+            }
+        }
+    }
+
+    public static boolean enabled(Properties props) {
+        return !slots(props).isEmpty();
+    }
+
+    /**
+     * Packs the single-value messages into messages built from {@code sourceModel}, one value per slot. The last
+     * messages may leave trailing slots empty.
+     */
+    public static List<SourceInputModel> pack(List<SourceInputModel> messages, SourceInputModel sourceModel, Properties props) {
+        List<String[]> slots = slots(props);
+        if (slots.isEmpty() || messages.isEmpty()) return messages;
+        for (String[] slot : slots) {
+            if (!sourceModel.getRawMessage().contains(slot[0])) {
+                throw new IllegalArgumentException("Packing slot token " + slot[0] + " is not in the source template");
+            }
+        }
+
+        int slotCount = slots.size();
+        int packedCount = (messages.size() + slotCount - 1) / slotCount;
+        List<SourceInputModel> packed = new ArrayList<>(packedCount);
+        for (int j = 0; j < packedCount; j++) {
+            SourceInputModel message = RawMessageGenerator.cloneSourceModel(sourceModel);
+            String raw = message.getRawMessage();
+            List<Map<String, Object>> slotData = new ArrayList<>(slotCount);
+            for (int k = 0; k < slotCount; k++) {
+                int index = k * packedCount + j;
+                if (index >= messages.size()) {
+                    raw = raw.replace(slots.get(k)[0], "");
+                    continue;
+                }
+                Map<String, Object> expected = new HashMap<>(messages.get(index).getAdditionalData());
+                expected.put(Constants.TOKEN, slots.get(k)[0]);
+                expected.put(Constants.TAGNAME, slots.get(k)[1]);
+                expected.put(Constants.SLOT, k + 1);
+                raw = raw.replace(slots.get(k)[0], String.valueOf(expected.get(Constants.VALUE)));
+                slotData.add(expected);
+            }
+            Map<String, Object> first = slotData.get(0);
+            if (first.get(Constants.IDEN_TOKEN) != null) {
+                raw = raw.replace(String.valueOf(first.get(Constants.IDEN_TOKEN)), String.valueOf(first.get(Constants.IDEN_VALUE)));
+            }
+            message.setRawMessage(raw);
+            Map<String, Object> additionalData = message.getAdditionalData();
+            additionalData.putAll(first);
+            additionalData.remove(Constants.SLOT);
+            additionalData.put(Constants.SLOTS, slotData);
+            packed.add(message);
+        }
+        logger.info("Packed {} test values into {} messages of {} slots", messages.size(), packed.size(), slotCount);
+        return packed;
+    }
+}
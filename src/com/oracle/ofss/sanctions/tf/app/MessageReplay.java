@@ -0,0 +1,177 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Re-emits exactly the messages listed in a failed-keys file (written by the analyzer) into a small set of replay
+ * shards under out/replay, so a fix can be rescreened without regenerating whole configs. Each key is located through
+ * the expected-outcome indexes in the output folder, and each source shard is streamed once, copying only the wanted
+ * array elements.
+ */
+public class MessageReplay {
+    private static final Logger logger = LoggerFactory.getLogger(MessageReplay.class);
+
+    /**
+     * {@code props} name the replay shards and must carry the config's misdate, batch type and run number, e.g. from
+     * {@link RawMessageGeneratorMain#shardNamingProperties}.
+     */
+    public static void replay(File failedKeysFile, Properties props) throws IOException {
+        long startTime = System.currentTimeMillis();
+        Set<String> keys = new LinkedHashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(failedKeysFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) keys.add(line.trim());
+            }
+        }
+        logger.info("Replaying {} message keys from {}", keys.size(), failedKeysFile.getPath());
+
+        List<ExpectedOutcomeIndex> indexes = ExpectedOutcomeIndex.loadFolder(Constants.OUTPUT_FOLDER);
+        Map<String, TreeSet<Integer>> wanted = new TreeMap<>();
+        int unknown = 0;
+        for (String key : keys) {
+            ExpectedOutcomeIndex.Location location = ExpectedOutcomeIndex.locate(indexes, key);
+            if (location == null) {
+                unknown++;
+                logger.debug("No shard location for message key {}", key);
+                continue;
+            }
+            wanted.computeIfAbsent(location.shardFile, s -> new TreeSet<>()).add(location.ordinal);
+        }
+        if (unknown > 0) {
+            logger.warn("{} message keys are not in any version {} expected-outcome index and are skipped", unknown, ExpectedOutcomeIndex.VERSION);
+        }
+
+        int rowLimit;
+        try {
+            rowLimit = Integer.parseInt(props.getProperty(Constants.JSON_OBJJECT_LIMIT, String.valueOf(Constants.DEFAULT_ROW_LIMIT)));
+        } catch (NumberFormatException e) {
+            logger.error("Invalid row limit value for JSON splitting, using default: {}", Constants.DEFAULT_ROW_LIMIT);
+            rowLimit = Constants.DEFAULT_ROW_LIMIT;
+        }
+        File replayFolder = new File(Constants.OUTPUT_FOLDER, Constants.REPLAY_FOLDER_NAME);
+        if (!replayFolder.exists()) {
+            replayFolder.mkdirs();
+        }
+
+        JsonFactory factory = new JsonFactory();
+        factory.setCharacterEscapes(new RawMessageGenerator.CustomEscapes());
+        try (ShardWriter writer = new ShardWriter(factory, replayFolder, props, rowLimit)) {
+            for (Map.Entry<String, TreeSet<Integer>> entry : wanted.entrySet()) {
+                copyMessages(factory, new File(Constants.OUTPUT_FOLDER, entry.getKey()), entry.getValue(), writer);
+            }
+            writer.writeFileList();
+            logger.info("Replay finished: {} messages in {} shard(s) under {} in {} ms", writer.written,
+                    writer.fileEntries.size(), replayFolder.getPath(), (System.currentTimeMillis() - startTime));
+        }
+    }
+
+    // Streams one generated shard, copying the elements at the wanted ordinals and skipping the rest
+    private static void copyMessages(JsonFactory factory, File shard, TreeSet<Integer> ordinals, ShardWriter writer) throws IOException {
+        if (!shard.exists()) {
+            logger.warn("Shard {} no longer exists; {} messages skipped", shard.getName(), ordinals.size());
+            return;
+        }
+        int last = ordinals.last();
+        try (JsonParser parser = factory.createParser(shard)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array in " + shard.getPath());
+            }
+            int ordinal = 0;
+            while (ordinal <= last && parser.nextToken() == JsonToken.START_OBJECT) {
+                if (ordinals.contains(ordinal)) {
+                    writer.next().copyCurrentStructure(parser);
+                } else {
+                    parser.skipChildren();
+                }
+                ordinal++;
+            }
+            if (ordinal <= last) {
+                logger.warn("Shard {} ends at {} messages; ordinals up to {} were expected", shard.getName(), ordinal, last);
+            }
+        }
+    }
+
+    /**
+     * Rolls replay shards every rowLimit messages, named like the generator's own shards.
+     */
+    private static class ShardWriter implements AutoCloseable {
+        private final JsonFactory factory;
+        private final File folder;
+        private final String misDate;
+        private final String shortPrefix;
+        private final int rowLimit;
+        private final List<String> fileEntries = new ArrayList<>();
+        private JsonGenerator generator;
+        private int inFile;
+        private int written;
+
+        ShardWriter(JsonFactory factory, File folder, Properties props, int rowLimit) {
+            this.factory = factory;
+            this.folder = folder;
+            this.misDate = props.getProperty(Constants.MIS_DATE);
+            this.shortPrefix = RawMessageGenerator.shortFilePrefix(props);
+            this.rowLimit = rowLimit;
+        }
+
+        JsonGenerator next() throws IOException {
+            if (generator == null || inFile == rowLimit) {
+                closeFile();
+                String fileEntry = shortPrefix + (fileEntries.size() + 1);
+                generator = factory.createGenerator(new File(folder, misDate + "_" + fileEntry + Constants.JSON_EXT), JsonEncoding.UTF8);
+                generator.useDefaultPrettyPrinter();
+                generator.writeStartArray();
+                fileEntries.add(fileEntry);
+                inFile = 0;
+            }
+            inFile++;
+            written++;
+            return generator;
+        }
+
+        private void closeFile() throws IOException {
+            if (generator != null) {
+                generator.writeEndArray();
+                generator.close();
+                generator = null;
+            }
+        }
+
+        void writeFileList() throws IOException {
+            closeFile();
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(new File(folder, Constants.FILE_NAME_LIST)))) {
+                for (String fileEntry : fileEntries) {
+                    writer.write(fileEntry);
+                    writer.newLine();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeFile();
+        }
+    }
+}
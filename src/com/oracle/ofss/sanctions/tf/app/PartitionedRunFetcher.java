@@ -0,0 +1,290 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Fetches a run skey as N partitions of N_GRP_MSG_ID (contiguous ranges, or MOD buckets with
+ * analyzer.fetchSplit=HASH). Each partition reads its raw messages, feedback and WLS column names on its own pooled
+ * connection and is scored as soon as it arrives, so the database and the scorer work at the same time and
+ * per-partition maps are dropped once scored.
+ *
+ * <p>There are more partitions than workers. The number of partitions in flight starts at half the worker limit. It
+ * grows while the per-row fetch latency stays close to the best seen so far, and shrinks when the latency degrades,
+ * i.e. when the extra sessions only add contention.
+ */
+public class PartitionedRunFetcher {
+    private static final Logger logger = LoggerFactory.getLogger(PartitionedRunFetcher.class);
+
+    private static final double GROW_LATENCY_RATIO = 1.5;
+    private static final double SHRINK_LATENCY_RATIO = 2.0;
+
+    private final String runSkey;
+    private final String batchTable;
+    private final int msgCategory;
+    private final String msgCategoryString;
+    private final boolean hashSplit;
+    private final boolean wlsByJoin;
+    private final List<ExpectedOutcomeIndex> expected;
+
+    private PartitionedRunFetcher(String runSkey, String batchType, int msgCategory, String msgCategoryString, Properties props) throws Exception {
+        this.runSkey = runSkey;
+        this.batchTable = AnalyzerMain.batchTable(batchType);
+        this.msgCategory = msgCategory;
+        this.msgCategoryString = msgCategoryString;
+        this.hashSplit = Constants.FETCH_SPLIT_HASH.equalsIgnoreCase(props.getProperty(Constants.FETCH_SPLIT, Constants.FETCH_SPLIT_RANGE));
+        this.wlsByJoin = !Constants.WLS_FETCH_MODE_IN.equalsIgnoreCase(props.getProperty(Constants.WLS_FETCH_MODE, Constants.WLS_FETCH_MODE_JOIN));
+        this.expected = ExpectedOutcomeIndex.load(props);
+    }
+
+    public static AnalysisResult fetchAndAnalyze(Connection connection, String runSkey, String batchType, int msgCategory,
+                                                 String msgCategoryString, Properties props) throws Exception {
+        return new PartitionedRunFetcher(runSkey, batchType, msgCategory, msgCategoryString, props).run(connection, props);
+    }
+
+    private AnalysisResult run(Connection connection, Properties props) throws Exception {
+        long startTime = System.currentTimeMillis();
+        long[] span = tokenSpan(connection);
+        if (span == null) {
+            throw new Exception("No data found for runSkey: " + runSkey);
+        }
+
+        // The caller's connection stays open, and other run skeys may be analysed alongside this one
+        int maxWorkers = AnalyzerMain.fetchParallelism(props);
+        int configuredPartitions = Integer.parseInt(props.getProperty(Constants.FETCH_PARTITIONS, String.valueOf(Constants.DEFAULT_FETCH_PARTITIONS)));
+        int partitionCount = Math.max(configuredPartitions, maxWorkers * 4);
+        List<long[]> partitions = new ArrayList<>();
+        if (hashSplit) {
+            for (int bucket = 0; bucket < partitionCount; bucket++) {
+                partitions.add(new long[]{partitionCount, bucket});
+            }
+        } else {
+            partitions = AnalyzerMain.splitTokenRanges(span[0], span[1], partitionCount);
+        }
+
+        List<ReportRow> reportRows = ReportRowStore.newRowList(props);
+        if (!(reportRows instanceof ReportRowStore)) {
+            reportRows = Collections.synchronizedList(reportRows);
+        }
+        ReportSummary summary = new ReportSummary();
+        // The adaptive limit below caps the fetches in flight, so the executor may be a virtual-thread one
+        ExecutorService fetchExecutor = DbTasks.newExecutor(maxWorkers);
+        ExecutorService scoringExecutor = AnalyzerMain.scoringExecutor();
+        CompletionService<PartitionResult> completion = new ExecutorCompletionService<>(fetchExecutor);
+        int allowed = Math.max(1, maxWorkers / 2);
+        double bestMsPerRow = Double.MAX_VALUE;
+        int next = 0;
+        int inFlight = 0;
+        long fetchedRows = 0;
+        List<ReportRow> rowTarget = reportRows;
+        try {
+            while (next < partitions.size() || inFlight > 0) {
+                while (inFlight < allowed && next < partitions.size()) {
+                    long[] partition = partitions.get(next++);
+                    completion.submit(() -> fetchAndScore(partition, rowTarget, scoringExecutor));
+                    inFlight++;
+                }
+                PartitionResult done;
+                try {
+                    done = completion.take().get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+                inFlight--;
+                fetchedRows += done.rows;
+                summary.merge(done.summary);
+
+                if (done.rows > 0) {
+                    double msPerRow = (double) done.fetchMs / done.rows;
+                    bestMsPerRow = Math.min(bestMsPerRow, msPerRow);
+                    if (msPerRow <= bestMsPerRow * GROW_LATENCY_RATIO && allowed < maxWorkers) {
+                        allowed++;
+                        logger.debug("Run skey {}: fetch parallelism raised to {} ({} ms/row)", runSkey, allowed, msPerRow);
+                    } else if (msPerRow > bestMsPerRow * SHRINK_LATENCY_RATIO && allowed > 1) {
+                        allowed--;
+                        logger.debug("Run skey {}: fetch parallelism lowered to {} ({} ms/row, best {})", runSkey, allowed, msPerRow, bestMsPerRow);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // Partitions still in flight write rows and hold connections until they stop, so the store outlives them
+            fetchExecutor.shutdownNow();
+            DbTasks.awaitTermination(fetchExecutor);
+            ReportRowStore.release(reportRows);
+            throw e;
+        } finally {
+            fetchExecutor.shutdownNow();
+        }
+        if (fetchedRows == 0) {
+            ReportRowStore.release(reportRows);
+            throw new Exception("No data found for runSkey: " + runSkey);
+        }
+        logger.info("Run skey {}: {} tokens fetched and scored over {} partitions (up to {} connections, ended at {}) in {} ms",
+                runSkey, fetchedRows, partitions.size(), maxWorkers, allowed, (System.currentTimeMillis() - startTime));
+        return new AnalysisResult(runSkey, reportRows, summary);
+    }
+
+    private long[] tokenSpan(Connection connection) throws Exception {
+        String query = "SELECT MIN(N_GRP_MSG_ID), MAX(N_GRP_MSG_ID) FROM " + batchTable + " WHERE N_RUN_SKEY = ?";
+        try (PreparedStatement pst = connection.prepareStatement(query)) {
+            pst.setLong(1, Long.parseLong(runSkey));
+            try (ResultSet rs = pst.executeQuery()) {
+                if (!rs.next()) return null;
+                long min = rs.getLong(1);
+                if (rs.wasNull()) return null;
+                return new long[]{min, rs.getLong(2)};
+            }
+        }
+    }
+
+    private String partitionPredicate() {
+        return hashSplit ? "MOD(b.N_GRP_MSG_ID, ?) = ?" : "b.N_GRP_MSG_ID BETWEEN ? AND ?";
+    }
+
+    private PartitionResult fetchAndScore(long[] partition, List<ReportRow> reportRows, ExecutorService scoringExecutor) throws Exception {
+        long fetchStart = System.currentTimeMillis();
+        List<Long> tokens = new ArrayList<>();
+        Map<Long, String> tokenToRawMsg = new HashMap<>();
+        Map<Long, JSONObject> tokenToAdditionalDataMap = new HashMap<>();
+        Map<Long, JSONObject> feedbackMap = new HashMap<>();
+        Map<Long, Map<Long, Set<String>>> columnNames;
+
+        try (Connection connection = SQLUtility.getDbConnection()) {
+            String rawMsgQuery = "SELECT b.N_GRP_MSG_ID, " + AnalyzerMain.rawMsgColumn(expected) + " FROM " + batchTable + " b " +
+                                 "WHERE b.N_RUN_SKEY = ? AND " + partitionPredicate();
+            List<Long> unindexedTokens = new ArrayList<>();
+            Set<Long> seen = new HashSet<>();
+            AnalyzerPhaseEvent rawEvent = partitionEvent(AnalyzerPhaseEvent.RAW_FETCH, partition);
+            try (PreparedStatement pst = connection.prepareStatement(rawMsgQuery)) {
+                pst.setFetchSize(5000);
+                bind(pst, 1, partition);
+                try (ResultSet rs = pst.executeQuery()) {
+                    while (rs.next()) {
+                        long token = rs.getLong(1);
+                        if (!seen.add(token)) continue;
+                        tokens.add(token);
+                        if (expected != null) {
+                            AnalyzerMain.readExpectedOutcome(expected, token, rs.getString(2), tokenToRawMsg, tokenToAdditionalDataMap, unindexedTokens);
+                            continue;
+                        }
+                        String rawMsg = rs.getString(2);
+                        tokenToRawMsg.put(token, rawMsg != null ? rawMsg : "");
+                        long parseStart = System.nanoTime();
+                        tokenToAdditionalDataMap.put(token, AnalyzerMain.extractAdditionalData(token, rawMsg));
+                        rawEvent.parseTime += System.nanoTime() - parseStart;
+                    }
+                }
+            }
+            if (!unindexedTokens.isEmpty()) {
+                logger.warn("{} tokens of run skey {} are not in the expected-outcome index, reading their raw messages", unindexedTokens.size(), runSkey);
+                AnalyzerMain.fetchRawMessagesByTokens(connection, batchTable, unindexedTokens, tokenToRawMsg, tokenToAdditionalDataMap);
+            }
+            rawEvent.items = tokens.size();
+            rawEvent.commit();
+            if (tokens.isEmpty()) {
+                return new PartitionResult(0, System.currentTimeMillis() - fetchStart, new ReportSummary());
+            }
+
+            String feedbackQuery = "SELECT f.N_TRAX_TOKEN, f.C_FEEDBACK_MESSAGE FROM " + batchTable + " b " +
+                                   "JOIN fcc_tf_feedback f ON b.N_GRP_MSG_ID = f.N_TRAX_TOKEN AND f.V_MSG_CATEGORY = ? " +
+                                   "WHERE b.N_RUN_SKEY = ? AND " + partitionPredicate();
+            AnalyzerPhaseEvent feedbackEvent = partitionEvent(AnalyzerPhaseEvent.FEEDBACK_FETCH, partition);
+            try (PreparedStatement pst = connection.prepareStatement(feedbackQuery)) {
+                pst.setFetchSize(5000);
+                pst.setString(1, msgCategoryString);
+                bind(pst, 2, partition);
+                try (ResultSet rs = pst.executeQuery()) {
+                    while (rs.next()) {
+                        String feedbackJson = rs.getString(2);
+                        if (feedbackJson != null && !feedbackJson.isEmpty()) {
+                            long parseStart = System.nanoTime();
+                            feedbackMap.put(rs.getLong(1), new JSONObject(feedbackJson));
+                            feedbackEvent.parseTime += System.nanoTime() - parseStart;
+                        }
+                    }
+                }
+            }
+            feedbackEvent.items = feedbackMap.size();
+            feedbackEvent.commit();
+            AnalyzerMain.fillDefaultFeedback(tokens, feedbackMap);
+
+            AnalyzerPhaseEvent wlsEvent = partitionEvent(AnalyzerPhaseEvent.WLS_FETCH, partition);
+            if (wlsByJoin) {
+                columnNames = new HashMap<>();
+                Map<String, Set<String>> columnSets = new HashMap<>();
+                String wlsQuery = "SELECT w.N_GRP_MSG_ID, w.N_RESPONSE_ID, w.V_COLUMN_NAME FROM fcc_tf_rt_wls_response w " +
+                                  "JOIN " + batchTable + " b ON b.N_GRP_MSG_ID = w.N_GRP_MSG_ID " +
+                                  "WHERE w.n_msg_category = ? AND b.N_RUN_SKEY = ? AND " + partitionPredicate();
+                try (PreparedStatement pst = connection.prepareStatement(wlsQuery)) {
+                    pst.setFetchSize(5000);
+                    pst.setInt(1, msgCategory);
+                    bind(pst, 2, partition);
+                    try (ResultSet rs = pst.executeQuery()) {
+                        while (rs.next()) {
+                            columnNames.computeIfAbsent(rs.getLong(1), k -> new HashMap<>())
+                                    .put(rs.getLong(2), AnalyzerMain.columnNameSet(rs.getString(3), columnSets));
+                        }
+                    }
+                }
+            } else {
+                columnNames = AnalyzerMain.getBulkColumnNameWLS(connection, tokens, msgCategory);
+            }
+            wlsEvent.items = columnNames.size();
+            wlsEvent.commit();
+        } catch (Exception e) {
+            logger.error("Error fetching run skey {} partition {}/{}: {}", runSkey, partition[0], partition[1], e.getMessage(), e);
+            throw e;
+        }
+        long fetchMs = System.currentTimeMillis() - fetchStart;
+
+        AnalysisResult partial = AnalyzerMain.analyzeResults(tokens, columnNames, feedbackMap, tokenToAdditionalDataMap,
+                runSkey, tokenToRawMsg, reportRows, scoringExecutor);
+        return new PartitionResult(tokens.size(), fetchMs, partial.summary);
+    }
+
+    /**
+     * A started event for one fetch of a partition: a token range, or the modulus and bucket with HASH splitting.
+     */
+    private AnalyzerPhaseEvent partitionEvent(String phase, long[] partition) {
+        AnalyzerPhaseEvent event = new AnalyzerPhaseEvent(phase, runSkey);
+        event.partitionStart = partition[0];
+        event.partitionEnd = partition[1];
+        event.begin();
+        return event;
+    }
+
+    private void bind(PreparedStatement pst, int index, long[] partition) throws Exception {
+        pst.setLong(index, Long.parseLong(runSkey));
+        pst.setLong(index + 1, partition[0]);
+        pst.setLong(index + 2, partition[1]);
+    }
+
+    private static class PartitionResult {
+        final int rows;
+        final long fetchMs;
+        final ReportSummary summary;
+
+        PartitionResult(int rows, long fetchMs, ReportSummary summary) {
+            this.rows = rows;
+            this.fetchMs = fetchMs;
+            this.summary = summary;
+        }
+    }
+}
@@ -14,6 +14,8 @@ import java.nio.file.Path;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -21,7 +23,7 @@ import java.time.format.DateTimeFormatter;
 public class RawMessageGenerator {
     private static final Logger logger = LoggerFactory.getLogger(RawMessageGenerator.class);
 
-    private static class CustomEscapes extends CharacterEscapes {
+    static class CustomEscapes extends CharacterEscapes {
         private final int[] asciiEscapes;
 
         public CustomEscapes() {
@@ -42,14 +44,21 @@ public class RawMessageGenerator {
         }
     }
 
+    // Synonym lookups per watchlist type, kept across jobs when generator.lookupCache=Y (daemon mode)
+    private static final Map<String, Map<String, Map<String, String>>> SYNONYM_CACHE = new ConcurrentHashMap<>();
+
+    private static final int EXPAND_EVENT_ROWS = 1000;
+
+    public static void clearLookupCaches() {
+        SYNONYM_CACHE.clear();
+    }
+
     public static List<SourceInputModel> generateRawMessage(BlockingQueue<File> queue, Properties props, String sourceFilePath, String configName) throws Exception {
         long startTime = System.currentTimeMillis();
         logger.info("=============================================================");
         logger.info("                RAW MESSAGE GENERATOR STARTED                ");
         logger.info("=============================================================");
-        Connection connection = null;
         List<SourceInputModel> rawMessages = null;
-        ResultSet rs = null;
 
         try {
 
@@ -71,40 +80,48 @@ public class RawMessageGenerator {
             SourceInputModel sourceModel = loadJsonFromFile(sourceFilePath);
             logger.info("Loaded source model from: {}", sourceFilePath);
 
-            connection = SQLUtility.getDbConnection();
-
             // Split watchlistType by comma to support multiple watchlists
             String[] watchlistTypes = watchlistType.split(",");
             List<SourceInputModel> allRawMessages = new ArrayList<>();
+            List<Callable<List<SourceInputModel>>> scans = new ArrayList<>();
 
-            for (String wlType : watchlistTypes) {
-                wlType = wlType.trim(); // Remove any whitespace
+            for (String type : watchlistTypes) {
+                String wlType = type.trim(); // Remove any whitespace
                 String tableName = Constants.TABLE_WL_MAP.get(wlType);
                 if (tableName == null) {
                     logger.error("Unknown watchlist type: {}", wlType);
                     continue;
                 }
 
-                // Get specific whereClause for this watchlist (whereClause_<watchlist>)
-                String specificWhereClause = props.getProperty("whereClause_" + wlType);
-                if (specificWhereClause == null) {
-                    // Fallback to generic whereClause if specific one not found
-                    specificWhereClause = props.getProperty(Constants.WHERE_CLAUSE, "");
-                }
+                String specificWhereClause = whereClauseFor(props, wlType);
 
                 logger.info("Processing watchlist: {} with table: {} and whereClause: {}", wlType, tableName, specificWhereClause);
 
-                rs = prepareQueryAndGetTableData(connection, tableName, specificWhereClause);
+                // Lookups are loaded before any scan starts, so a scan never needs a second connection
+                List<Object[]> stopwords = isStopwordEnabled ? loadStopwords(props, configName, wlType) : null;
+                Map<String, Map<String, String>> synonymMap = isSynonymEnabled ? loadSynonymsCached(props, configName, wlType) : null;
+
+                // Watchlists are scanned concurrently, so each gets its own message key tag
+                String keyTag = watchlistTypes.length > 1 ? "W" + (scans.size() + 1) + "_" : "";
+                String whereClause = specificWhereClause;
+                scans.add(() -> {
+                    try (Connection connection = SQLUtility.getDbConnection()) {
+                        GeneratorPhaseEvent queryEvent = new GeneratorPhaseEvent(GeneratorPhaseEvent.WATCHLIST_QUERY, configName, wlType);
+                        queryEvent.begin();
+                        try (ResultSet rs = prepareQueryAndGetTableData(connection, tableName, whereClause, GenerationPartition.from(props), StratifiedSample.from(props))) {
+                            queryEvent.commit();
+                            return generateRawMessageJsonArray(rs, props, sourceModel, tagName, webserviceId, wlType, stopwords, synonymMap, webService, configName, keyTag);
+                        }
+                    }
+                });
+            }
 
-                List<SourceInputModel> watchlistRawMessages = generateRawMessageJsonArray(rs, props, sourceModel, tagName, webserviceId, wlType, isStopwordEnabled, isSynonymEnabled, webService);
+            // Each scan holds exactly one connection, so at most half of the pool is taken by scans
+            for (List<SourceInputModel> watchlistRawMessages : DbTasks.invokeAll(scans, Math.max(1, SQLUtility.getMaximumPoolSize() / 2))) {
                 allRawMessages.addAll(watchlistRawMessages);
-
-                if (rs != null) {
-                    rs.close();
-                }
             }
 
-            rawMessages = allRawMessages;
+            rawMessages = MessagePacker.pack(allRawMessages, sourceModel, props);
 
             logger.info("=============================================================");
             logger.info("                 RAW MESSAGE GENERATOR ENDED                 ");
@@ -115,19 +132,6 @@ public class RawMessageGenerator {
 
         } catch (Exception e) {
             e.printStackTrace();
-        } finally {
-            if (rs != null) {
-                rs.close();
-            }
-            if (connection != null) {
-                try {
-                    connection.close();
-                    logger.info("Connection closed.");
-                } catch (SQLException e) {
-                    logger.error("Failed to close the connection:");
-                    e.printStackTrace();
-                }
-            }
         }
         return rawMessages;
     }
@@ -181,15 +185,38 @@ public class RawMessageGenerator {
     }
 
 
-    private static ResultSet prepareQueryAndGetTableData(Connection connection, String tableName, String whereClause) throws Exception {
-        PreparedStatement pst = null;
-        ResultSet rs = null;
+    /**
+     * The whereClause_&lt;watchlist&gt; of the watchlist, falling back to the generic whereClause.
+     */
+    static String whereClauseFor(Properties props, String watchlistType) {
+        String whereClause = props.getProperty("whereClause_" + watchlistType);
+        return whereClause != null ? whereClause : props.getProperty(Constants.WHERE_CLAUSE, "");
+    }
+
+    /**
+     * The watchlist query with the where clause, the node's partition predicate and the sample applied.
+     */
+    static String watchlistQuery(String tableName, String whereClause, GenerationPartition partition, StratifiedSample sample) {
         String filter = "";
         if (whereClause != null && !whereClause.trim().isEmpty()) {
             filter = " where " + whereClause;
         }
+        if (partition != null) {
+            filter = filter.isEmpty() ? " where " + partition.sqlPredicate() : " where (" + whereClause + ") and " + partition.sqlPredicate();
+        }
 
         String query = "select * from " + tableName + " " + filter;
+        if (sample != null) {
+            query = sample.sampleQuery(query);
+        }
+        return query;
+    }
+
+    private static ResultSet prepareQueryAndGetTableData(Connection connection, String tableName, String whereClause, GenerationPartition partition,
+                                                         StratifiedSample sample) throws Exception {
+        PreparedStatement pst = null;
+        ResultSet rs = null;
+        String query = watchlistQuery(tableName, whereClause, partition, sample);
         logger.info("SQL Query generated:: {}", query);
         try {
             pst = connection.prepareStatement(query);
@@ -201,7 +228,12 @@ public class RawMessageGenerator {
         return rs;
     }
 
-    public static List<SourceInputModel> generateRawMessageJsonArray(ResultSet rs, Properties props, SourceInputModel sourceModel, String tagName, String webserviceId, String watchlistType, boolean isStopwordEnabled, boolean isSynonymEnabled, String webService) throws Exception {
+    /**
+     * Expands the watchlist rows of {@code rs} into raw messages. {@code stopwords} and {@code synonymMap} are the
+     * preloaded lookups of the watchlist, null when the stage is disabled.
+     */
+    public static List<SourceInputModel> generateRawMessageJsonArray(ResultSet rs, Properties props, SourceInputModel sourceModel, String tagName, String webserviceId, String watchlistType,
+                                                                     List<Object[]> stopwords, Map<String, Map<String, String>> synonymMap, String webService, String configName, String keyTag) throws Exception {
         List<SourceInputModel> rawMessages = new ArrayList<>();
         int maxIndex = getMaxIndex(props, Constants.REPLACE_SRC);
         SourceInputModel temp;
@@ -209,24 +241,26 @@ public class RawMessageGenerator {
 
         LocalDateTime now = LocalDateTime.now();
         String dateTimeStr = now.format(DateTimeFormatter.ofPattern(Constants.DATE_TIME_FORMAT));
-
-        List<Object[]> stopwords = null;
-        Map<String, Map<String, String>> synonymMap = null;
-
-        if (isStopwordEnabled) {
-            Connection connection = SQLUtility.getDbConnection();
-            stopwords = getRelevantStopwords(props, connection);
-            connection.close();
+        GenerationPartition partition = GenerationPartition.from(props);
+        if (partition != null) {
+            dateTimeStr += partition.keyTag();
         }
+        dateTimeStr += keyTag;
 
-        if (isSynonymEnabled) {
-            Connection connection = SQLUtility.getDbConnection();
-            synonymMap = loadSynonyms(connection, watchlistType);
-            connection.close();
+        StratifiedSample sample = StratifiedSample.from(props);
+        if (sample != null) {
+            logger.info("Sampling watchlist {}: {}", watchlistType, sample);
         }
 
         int cnt=0;
+        // One expand event per EXPAND_EVENT_ROWS watchlist rows, with the cursor fetch time split out
+        GeneratorPhaseEvent expandEvent = new GeneratorPhaseEvent(GeneratorPhaseEvent.EXPAND, configName, watchlistType);
+        expandEvent.begin();
+        int expandStartCount = updatedCount;
+        long cursorStart = System.nanoTime();
         while(rs.next()) {
+            expandEvent.cursorTime += System.nanoTime() - cursorStart;
+            int firstMessage = rawMessages.size();
             if (sourceModel != null) {
                 for (int i = 1; i <= maxIndex; i++) {
                     String srcKey = Constants.REPLACE_SRC+"[" + i + "]";
@@ -244,8 +278,9 @@ public class RawMessageGenerator {
                         String[] toBeReplacedValues = tokenValue.split(";");
 
                         for (String toBeReplaced : toBeReplacedValues) {
-                            if (isSynonymEnabled && !synonymMap.isEmpty()) {
+                            if (synonymMap != null && !synonymMap.isEmpty()) {
                                 List<Map<String, Object>> variantsWithInfo = generateSynonymVariantsWithInfo(toBeReplaced, synonymMap);
+                                if (sample != null) variantsWithInfo = sample.pick(variantsWithInfo, info -> (String) info.get("variant"));
                                 for (Map<String, Object> info : variantsWithInfo) {
                                     String variant = (String) info.get("variant");
                                     String lookupIds = (String) info.get("lookupIds");
@@ -262,6 +297,7 @@ public class RawMessageGenerator {
 
                             if (props.getProperty(Constants.CED1).equalsIgnoreCase(Constants.YES)) { // 1 ced
                                 List<String> oneCedList = generate1CedVariants(toBeReplaced);
+                                if (sample != null) oneCedList = sample.pick(oneCedList, v -> v);
                                 for (String value : oneCedList) {
                                     temp = cloneSourceModel(sourceModel);
                                     updatedCount = createRawMsg(temp, value, identifierToBeReplaced, token, targetColumn, identifierToken, watchlistType, rawMessages, updatedCount, tokenValue, 1, uid, tagName, webserviceId, "NA", "NA", dateTimeStr, webService);
@@ -270,6 +306,7 @@ public class RawMessageGenerator {
 
                             if (props.getProperty(Constants.CED2).equalsIgnoreCase(Constants.YES)) { // 2 ced
                                 List<String> twoCedList = generate2CedVariants(toBeReplaced);
+                                if (sample != null) twoCedList = sample.pick(twoCedList, v -> v);
                                 for (String value : twoCedList) {
                                     temp = cloneSourceModel(sourceModel);
                                     updatedCount = createRawMsg(temp, value, identifierToBeReplaced, token, targetColumn, identifierToken, watchlistType, rawMessages, updatedCount, tokenValue, 2, uid, tagName, webserviceId, "NA", "NA", dateTimeStr, webService);
@@ -278,6 +315,7 @@ public class RawMessageGenerator {
 
                             if (props.getProperty(Constants.CED3).equalsIgnoreCase(Constants.YES)) { // 3 ced
                                 List<String> threeCedList = generate3CedVariants(toBeReplaced);
+                                if (sample != null) threeCedList = sample.pick(threeCedList, v -> v);
                                 for (String value : threeCedList) {
                                     temp = cloneSourceModel(sourceModel);
                                     updatedCount = createRawMsg(temp, value, identifierToBeReplaced, token, targetColumn, identifierToken, watchlistType, rawMessages, updatedCount, tokenValue, 3, uid, tagName, webserviceId, "NA", "NA", dateTimeStr, webService);
@@ -286,23 +324,46 @@ public class RawMessageGenerator {
 
 
                             // Stopword variants
-                            if (isStopwordEnabled && stopwords != null && !stopwords.isEmpty()) {
+                            if (stopwords != null && !stopwords.isEmpty()) {
+                                // {variant, lookupId, lookupValueId}
+                                List<String[]> stopwordVariants = new ArrayList<>();
                                 for (Object[] pair : stopwords) {
                                     String stop = (String) pair[0];
-                                    String lookupId = (String) pair[1];
-                                    String lookupValueId = (String) pair[2];
-                                    List<String> variants = generateStopwordVariants(toBeReplaced, stop);
-                                    for (String variant : variants) {
-                                        temp = cloneSourceModel(sourceModel);
-                                        updatedCount = createRawMsg(temp, variant, identifierToBeReplaced, token, targetColumn, identifierToken, watchlistType, rawMessages, updatedCount, tokenValue, -1, uid, tagName, webserviceId, lookupId, lookupValueId, dateTimeStr, webService);
+                                    for (String variant : generateStopwordVariants(toBeReplaced, stop)) {
+                                        stopwordVariants.add(new String[]{variant, (String) pair[1], (String) pair[2]});
                                     }
                                 }
+                                if (sample != null) stopwordVariants = sample.pick(stopwordVariants, v -> v[0]);
+                                for (String[] variant : stopwordVariants) {
+                                    temp = cloneSourceModel(sourceModel);
+                                    updatedCount = createRawMsg(temp, variant[0], identifierToBeReplaced, token, targetColumn, identifierToken, watchlistType, rawMessages, updatedCount, tokenValue, -1, uid, tagName, webserviceId, variant[1], variant[2], dateTimeStr, webService);
+                                }
                             }
                         }
                     }
                 }
             }
+            if (sample != null) {
+                // Strata are counted per partition, so a partitioned node keeps its strata apart from the others
+                String stratum = (partition != null ? partition.keyTag() : "") + sample.stratum(rs.getString(sample.stratifyColumn()));
+                long stratumSize = rs.getLong(StratifiedSample.STRATUM_ROWS_COLUMN);
+                for (SourceInputModel message : rawMessages.subList(firstMessage, rawMessages.size())) {
+                    message.getAdditionalData().put(Constants.STRATUM, stratum);
+                    message.getAdditionalData().put(Constants.STRATUM_SIZE, stratumSize);
+                }
+            }
             cnt++;
+            if (cnt % EXPAND_EVENT_ROWS == 0) {
+                commitExpandEvent(expandEvent, EXPAND_EVENT_ROWS, updatedCount - expandStartCount);
+                expandEvent = new GeneratorPhaseEvent(GeneratorPhaseEvent.EXPAND, configName, watchlistType);
+                expandEvent.begin();
+                expandStartCount = updatedCount;
+            }
+            cursorStart = System.nanoTime();
+        }
+        expandEvent.cursorTime += System.nanoTime() - cursorStart;
+        if (cnt % EXPAND_EVENT_ROWS != 0) {
+            commitExpandEvent(expandEvent, cnt % EXPAND_EVENT_ROWS, updatedCount - expandStartCount);
         }
         logger.info("No. of rows selected from Watchlist:: {}", cnt);
         logger.info("No. of raw message created by Generator:: {}", updatedCount);
@@ -310,7 +371,15 @@ public class RawMessageGenerator {
 
     }
 
-    private static SourceInputModel cloneSourceModel(SourceInputModel original) {
+    private static void commitExpandEvent(GeneratorPhaseEvent event, int rows, int items) {
+        if (event.shouldCommit()) {
+            event.rows = rows;
+            event.items = items;
+            event.commit();
+        }
+    }
+
+    static SourceInputModel cloneSourceModel(SourceInputModel original) {
         return new SourceInputModel(
                 original.getRawMessage(),
                 original.getBusinessDomainCode(),
@@ -361,7 +430,41 @@ public class RawMessageGenerator {
         return updatedCount;
     }
 
-    private static List<Object[]> getRelevantStopwords(Properties props, Connection connection) throws SQLException {
+    private static List<Object[]> loadStopwords(Properties props, String configName, String watchlistType) throws Exception {
+        GeneratorPhaseEvent lookupEvent = new GeneratorPhaseEvent(GeneratorPhaseEvent.LOOKUP_LOAD, configName, watchlistType);
+        lookupEvent.begin();
+        List<Object[]> stopwords;
+        try (Connection connection = SQLUtility.getDbConnection()) {
+            stopwords = getRelevantStopwords(props, connection);
+        }
+        if (lookupEvent.shouldCommit()) {
+            lookupEvent.items = stopwords.size();
+            lookupEvent.commit();
+        }
+        return stopwords;
+    }
+
+    // Holds one connection for the lookup ids plus at most a quarter of the pool for the values queries
+    private static Map<String, Map<String, String>> loadSynonymsCached(Properties props, String configName, String watchlistType) throws Exception {
+        boolean cached = Constants.YES.equalsIgnoreCase(props.getProperty(Constants.GENERATOR_LOOKUP_CACHE));
+        Map<String, Map<String, String>> synonymMap = cached ? SYNONYM_CACHE.get(watchlistType) : null;
+        if (synonymMap != null) return synonymMap;
+        GeneratorPhaseEvent lookupEvent = new GeneratorPhaseEvent(GeneratorPhaseEvent.LOOKUP_LOAD, configName, watchlistType);
+        lookupEvent.begin();
+        try (Connection connection = SQLUtility.getDbConnection()) {
+            synonymMap = loadSynonyms(connection, watchlistType);
+        }
+        if (cached) {
+            SYNONYM_CACHE.put(watchlistType, synonymMap);
+        }
+        if (lookupEvent.shouldCommit()) {
+            lookupEvent.items = synonymMap.size();
+            lookupEvent.commit();
+        }
+        return synonymMap;
+    }
+
+    static List<Object[]> getRelevantStopwords(Properties props, Connection connection) throws SQLException {
         List<Object[]> stopwords = new ArrayList<>();
 
         String query = "SELECT * FROM ( " +
@@ -389,7 +492,7 @@ public class RawMessageGenerator {
         return stopwords;
     }
 
-    private static Map<String, Map<String, String>> loadSynonyms(Connection connection, String watchlistType) throws SQLException {
+    static Map<String, Map<String, String>> loadSynonyms(Connection connection, String watchlistType) throws Exception {
         Map<String, Map<String, String>> synonymMap = new HashMap<>();
         List<String> lookupIds = getLookupIdsForWatchlistType(watchlistType);
 
@@ -399,13 +502,22 @@ public class RawMessageGenerator {
 
         String query = "SELECT N_LOOKUP_ID FROM fcc_idx_m_lookup WHERE F_IS_SYNONYM = 'Y' AND N_LOOKUP_ID IN (" + String.join(",", lookupIds) + ")";
 
+        List<String> synonymLookupIds = new ArrayList<>();
         try (PreparedStatement stmt = connection.prepareStatement(query);
              ResultSet rs = stmt.executeQuery()) {
             while (rs.next()) {
-                String lookupId = rs.getString("N_LOOKUP_ID");
+                synonymLookupIds.add(rs.getString("N_LOOKUP_ID"));
+            }
+        }
+
+        // One values query per lookup, fanned out over pooled connections
+        String valuesQuery = "SELECT N_LOOKUP_VALUE_ID, V_LOOKUP_VALUES FROM FCC_IDX_M_LOOKUP_VALUES WHERE N_LOOKUP_ID = ?";
+        List<Callable<Map<String, String>>> tasks = new ArrayList<>();
+        for (String lookupId : synonymLookupIds) {
+            tasks.add(() -> {
                 Map<String, String> innerMap = new HashMap<>();
-                String valuesQuery = "SELECT N_LOOKUP_VALUE_ID, V_LOOKUP_VALUES FROM FCC_IDX_M_LOOKUP_VALUES WHERE N_LOOKUP_ID = ?";
-                try (PreparedStatement vStmt = connection.prepareStatement(valuesQuery)) {
+                try (Connection valuesConnection = SQLUtility.getDbConnection();
+                     PreparedStatement vStmt = valuesConnection.prepareStatement(valuesQuery)) {
                     vStmt.setString(1, lookupId);
                     try (ResultSet vRs = vStmt.executeQuery()) {
                         while (vRs.next()) {
@@ -419,8 +531,12 @@ public class RawMessageGenerator {
                         }
                     }
                 }
-                synonymMap.put(lookupId, innerMap);
-            }
+                return innerMap;
+            });
+        }
+        List<Map<String, String>> lookupValues = DbTasks.invokeAll(tasks, Math.max(1, SQLUtility.getMaximumPoolSize() / 4));
+        for (int i = 0; i < synonymLookupIds.size(); i++) {
+            synonymMap.put(synonymLookupIds.get(i), lookupValues.get(i));
         }
         return synonymMap;
     }
@@ -450,7 +566,7 @@ public class RawMessageGenerator {
         return lookupIds;
     }
 
-    private static List<Map<String, Object>> generateSynonymVariantsWithInfo(String toBeReplaced, Map<String, Map<String, String>> synonymMap) {
+    static List<Map<String, Object>> generateSynonymVariantsWithInfo(String toBeReplaced, Map<String, Map<String, String>> synonymMap) {
         List<Map<String, Object>> result = new ArrayList<>();
 
         String[] words = toBeReplaced.split("\\s+");
@@ -610,7 +726,7 @@ public class RawMessageGenerator {
         return variants;
     }
 
-    private static int getMaxIndex(Properties props, String prefix) throws Exception {
+    static int getMaxIndex(Properties props, String prefix) throws Exception {
         int maxIndex = 0;
         for (String key : props.stringPropertyNames()) {
             if (key.startsWith(prefix + "[")) {
@@ -647,9 +763,32 @@ public class RawMessageGenerator {
         }
     }
 
+    /**
+     * File name prefix of the JSON shards (without misDate), e.g. {@code RUN1_STG_TRANSACTIONS_ENTRY_}.
+     */
+    static String shortFilePrefix(Properties props) {
+        String batchType = props.getProperty(Constants.GENERATOR_BATCH_TYPE, "").toUpperCase();
+        String runNo = props.getProperty(Constants.RUN_NO);
+        if ("ISO20022".equals(batchType)) {
+            return "RUN" + runNo + "_STG_TRANSACTIONS_ENTRY_";
+        } else if ("NACHA".equals(batchType)) {
+            return "RUN" + runNo + "_ACH_STG_TRANSACTIONS_ENTRY_";
+        }
+        logger.error("Invalid batchtype: {}", batchType);
+        throw new IllegalArgumentException("Invalid batchtype");
+    }
+
     public static List<String> writeRawMessagesToJsonFile(List<SourceInputModel> rawMessages, Properties props, String configName, AtomicInteger currentIndex) throws IOException {
-        if (!Constants.OUTPUT_FOLDER.exists()) {
-            Constants.OUTPUT_FOLDER.mkdirs();
+        return writeRawMessagesToJsonFile(rawMessages, props, configName, currentIndex, Constants.OUTPUT_FOLDER, 1);
+    }
+
+    /**
+     * Writes the shards into {@code outputFolder}, advancing the file index by {@code indexStep} per file.
+     */
+    public static List<String> writeRawMessagesToJsonFile(List<SourceInputModel> rawMessages, Properties props, String configName, AtomicInteger currentIndex,
+                                                          File outputFolder, int indexStep) throws IOException {
+        if (!outputFolder.exists()) {
+            outputFolder.mkdirs();
         }
 
         int rowLimit;
@@ -661,22 +800,9 @@ public class RawMessageGenerator {
             rowLimit = Constants.DEFAULT_ROW_LIMIT;
         }
 
-        String batchType = props.getProperty(Constants.GENERATOR_BATCH_TYPE).toUpperCase();
         String misDate = props.getProperty(Constants.MIS_DATE);
-        String runNo = props.getProperty(Constants.RUN_NO);
-
-        String prefix;
-        String shortPrefix;
-        if ("ISO20022".equals(batchType)) {
-            prefix = misDate + "_RUN" + runNo + "_STG_TRANSACTIONS_ENTRY_";
-            shortPrefix = "RUN" + runNo + "_STG_TRANSACTIONS_ENTRY_";
-        } else if ("NACHA".equals(batchType)) {
-            prefix = misDate + "_RUN" + runNo + "_ACH_STG_TRANSACTIONS_ENTRY_";
-            shortPrefix = "RUN" + runNo + "_ACH_STG_TRANSACTIONS_ENTRY_";
-        } else {
-            logger.error("Invalid batchtype: {}", batchType);
-            throw new IllegalArgumentException("Invalid batchtype");
-        }
+        String shortPrefix = shortFilePrefix(props);
+        String prefix = misDate + "_" + shortPrefix;
 
         List<String> fileList = new ArrayList<>();
         ObjectMapper mapper = new ObjectMapper();
@@ -685,10 +811,10 @@ public class RawMessageGenerator {
 
         if (rawMessages.size() <= rowLimit) {
             // Write to a single file if splitting is not enabled or data is within limit
-            int fileIndex = currentIndex.getAndIncrement();
+            int fileIndex = currentIndex.getAndAdd(indexStep);
             String fileName = prefix + fileIndex + Constants.JSON_EXT;
-            File outputFile = new File(Constants.OUTPUT_FOLDER, fileName);
-            mapper.writeValue(outputFile, rawMessages);
+            File outputFile = new File(outputFolder, fileName);
+            writeShard(mapper, outputFile, rawMessages, configName);
             fileList.add(shortPrefix + fileIndex);
             logger.info("Successfully wrote raw messages to JSON file: {}", fileName);
         } else {
@@ -697,10 +823,10 @@ public class RawMessageGenerator {
             while (startIndex < rawMessages.size()) {
                 int endIndex = Math.min(startIndex + rowLimit, rawMessages.size());
                 List<SourceInputModel> chunk = rawMessages.subList(startIndex, endIndex);
-                int fileIndex = currentIndex.getAndIncrement();
+                int fileIndex = currentIndex.getAndAdd(indexStep);
                 String fileName = prefix + fileIndex + Constants.JSON_EXT;
-                File outputFile = new File(Constants.OUTPUT_FOLDER, fileName);
-                mapper.writeValue(outputFile, chunk);
+                File outputFile = new File(outputFolder, fileName);
+                writeShard(mapper, outputFile, chunk, configName);
                 fileList.add(shortPrefix + fileIndex);
                 logger.info("Successfully wrote raw messages to JSON file: {}", fileName);
                 startIndex = endIndex;
@@ -710,4 +836,15 @@ public class RawMessageGenerator {
 
         return fileList;
     }
+
+    private static void writeShard(ObjectMapper mapper, File outputFile, List<SourceInputModel> messages, String configName) throws IOException {
+        GeneratorPhaseEvent event = new GeneratorPhaseEvent(GeneratorPhaseEvent.WRITE_SHARD, configName, null);
+        event.begin();
+        mapper.writeValue(outputFile, messages);
+        if (event.shouldCommit()) {
+            event.file = outputFile.getName();
+            event.items = messages.size();
+            event.commit();
+        }
+    }
 }
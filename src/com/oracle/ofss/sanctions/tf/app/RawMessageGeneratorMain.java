@@ -13,8 +13,10 @@ import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Objects;
 import java.util.Properties;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -22,23 +24,88 @@ public class RawMessageGeneratorMain {
     private static final Logger logger = LoggerFactory.getLogger(RawMessageGeneratorMain.class);
 
     public static void main(String[] args) throws Exception {
+        if (args.length > 0 && Constants.REPLAY_COMMAND.equalsIgnoreCase(args[0])) {
+            if (args.length < 2) {
+                logger.error("Usage: RawMessageGeneratorMain {} <failed keys file>", Constants.REPLAY_COMMAND);
+                System.exit(1);
+            }
+            MessageReplay.replay(new File(args[1]), shardNamingProperties(loadCommonProperties()));
+            return;
+        }
+        if (args.length > 0 && Constants.MERGE_COMMAND.equalsIgnoreCase(args[0])) {
+            int nodeCount = args.length > 1 ? Integer.parseInt(args[1])
+                    : Integer.parseInt(loadCommonProperties().getProperty(Constants.GENERATOR_NODE_COUNT, "1"));
+            GenerationPartition.merge(nodeCount);
+            return;
+        }
+        Properties commonProps = loadCommonProperties();
+        if (args.length > 0 && Constants.DRY_RUN_COMMAND.equalsIgnoreCase(args[0])) {
+            // A non-zero exit lets a scheduler hold back a run that would exceed its budgets
+            if (!DryRunEstimator.estimate(commonProps).isEmpty()) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && Constants.LOAD_COMMAND.equalsIgnoreCase(args[0])) {
+            try {
+                LoadGenerator.run(commonProps);
+            } catch (IllegalStateException e) {
+                logger.error("{} Exiting.", e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && Constants.NODE_COMMAND.equalsIgnoreCase(args[0])) {
+            if (args.length < 3) {
+                logger.error("Usage: RawMessageGeneratorMain {} <node index> <node count>", Constants.NODE_COMMAND);
+                System.exit(1);
+            }
+            commonProps.setProperty(Constants.GENERATOR_NODE_INDEX, args[1]);
+            commonProps.setProperty(Constants.GENERATOR_NODE_COUNT, args[2]);
+        }
+        try {
+            run(commonProps);
+        } catch (IllegalStateException e) {
+            logger.error("{} Exiting.", e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Generates the raw messages of every enabled config and returns how many were written. Used by main and by
+     * {@link JobDaemon}, which passes common.properties with the job's overrides on top.
+     */
+    public static int run(Properties commonProps) throws Exception {
+        FlightRecording recording = FlightRecording.start(commonProps, "generator");
+        try {
+            return generate(commonProps);
+        } finally {
+            if (recording != null) recording.close();
+        }
+    }
+
+    private static int generate(Properties commonProps) throws Exception {
         long startTime = System.currentTimeMillis();
         logger.info("=============================================================");
         logger.info("               RAW MESSAGE GENERATOR STARTED                 ");
         logger.info("=============================================================");
 
-        Properties commonProps = loadCommonProperties();
+        GenerationPartition partition = GenerationPartition.from(commonProps);
+        File outputFolder = partition == null ? Constants.OUTPUT_FOLDER : partition.outputFolder();
+        if (partition != null) {
+            logger.info("Partitioned generation: {}, writing to {}", partition, outputFolder.getPath());
+        }
         List<String> enabledConfigs = getEnabledConfigs(commonProps);
 
         if (enabledConfigs.isEmpty()) {
-            logger.error("No enabled configs found in common.properties. Exiting.");
-            System.exit(1);
+            throw new IllegalStateException("No enabled configs found in common.properties.");
         }
 
         int totalGeneratedCount = 0;
         JSONArray runDetails = new JSONArray();
         List<String> allFileEntries = new ArrayList<>();
-        AtomicInteger currentIndex = new AtomicInteger(1);
+        AtomicInteger currentIndex = new AtomicInteger(partition == null ? 1 : partition.firstFileIndex());
+        int indexStep = partition == null ? 1 : partition.fileIndexStep();
 
         for (String configName : enabledConfigs) {
             logger.info("Processing config: {}", configName);
@@ -61,7 +128,7 @@ public class RawMessageGeneratorMain {
             Properties mergedProps = mergeProperties(commonProps, specificProps);
 
             // Validate required properties
-            if (!validateConfigProperties(mergedProps)) {
+            if (!validateConfigProperties(mergedProps, sourceFile)) {
                 logger.error("Validation failed for config: {}. Skipping.", configName);
                 continue;
             }
@@ -84,9 +151,29 @@ public class RawMessageGeneratorMain {
             int fileCount = 0;
 
             if (!rawMessages.isEmpty()) {
-                List<String> fileEntries = RawMessageGenerator.writeRawMessagesToJsonFile(rawMessages, mergedProps, configName, currentIndex);
+                List<String> fileEntries = RawMessageGenerator.writeRawMessagesToJsonFile(rawMessages, mergedProps, configName, currentIndex, outputFolder, indexStep);
                 allFileEntries.addAll(fileEntries);
                 fileCount = fileEntries.size();
+
+                // Sidecar of expected outcomes so the analyzer need not read C_RAW_MSG back. Packed configs get a
+                // per-slot index that only replay reads; the analyzer scores them from the raw message
+                if (!Constants.NO.equalsIgnoreCase(mergedProps.getProperty(Constants.GENERATOR_EXPECTED_INDEX))) {
+                    String indexName = mergedProps.getProperty(Constants.MIS_DATE) + "_RUN" + mergedProps.getProperty(Constants.RUN_NO)
+                            + "_" + configName + (partition == null ? "" : "_" + outputFolder.getName())
+                            + (MessagePacker.enabled(mergedProps) ? Constants.SLOT_INDEX_EXT : Constants.EXPECTED_INDEX_EXT);
+                    List<String> shardFiles = new ArrayList<>(fileEntries.size());
+                    for (String fileEntry : fileEntries) {
+                        shardFiles.add(mergedProps.getProperty(Constants.MIS_DATE) + "_" + fileEntry + Constants.JSON_EXT);
+                    }
+                    GeneratorPhaseEvent indexEvent = new GeneratorPhaseEvent(GeneratorPhaseEvent.WRITE_INDEX, configName, null);
+                    indexEvent.begin();
+                    ExpectedOutcomeIndex.write(rawMessages, new File(outputFolder, indexName), shardFiles, rowLimit);
+                    if (indexEvent.shouldCommit()) {
+                        indexEvent.file = indexName;
+                        indexEvent.items = generatedCount;
+                        indexEvent.commit();
+                    }
+                }
             }
 
             // Create run details object for this config
@@ -105,13 +192,17 @@ public class RawMessageGeneratorMain {
         }
 
         if (totalGeneratedCount == 0) {
+            if (partition != null) {
+                // The merge step waits for every node's run details, even an empty one
+                writeRunDetailsToFile(runDetails, outputFolder);
+            }
             logger.info("No raw messages generated for any config. Exiting utility.");
-            System.exit(0);
+            return 0;
         }
 
         // Write filename.txt
         if (!allFileEntries.isEmpty()) {
-            File listFile = new File(Constants.OUTPUT_FOLDER, Constants.FILE_NAME_LIST);
+            File listFile = new File(outputFolder, Constants.FILE_NAME_LIST);
             try (BufferedWriter writer = new BufferedWriter(new java.io.FileWriter(listFile))) {
                 for (String fileEntry : allFileEntries) {
                     writer.write(fileEntry);
@@ -124,13 +215,14 @@ public class RawMessageGeneratorMain {
         }
 
         // Write run details to JSON file
-        writeRunDetailsToFile(runDetails);
+        writeRunDetailsToFile(runDetails, outputFolder);
 
         logger.info("=============================================================");
         logger.info("               RAW MESSAGE GENERATOR ENDED                 ");
         logger.info("=============================================================");
         logger.info("Total messages generated across all configs: {}", totalGeneratedCount);
         logger.info("Total time taken by utility: {} Seconds ", (System.currentTimeMillis() - startTime) / 1000L );
+        return totalGeneratedCount;
     }
 
     /**
@@ -149,7 +241,7 @@ public class RawMessageGeneratorMain {
             logger.error("Error saving config properties: {}", e.getMessage());
         }
     }
-    private static Properties loadCommonProperties() throws IOException {
+    static Properties loadCommonProperties() throws IOException {
         Properties props = new Properties();
         File commonConfigFile = new File(Constants.COMMON_CONFIG_FILE_PATH);
         try (FileReader reader = new FileReader(commonConfigFile)) {
@@ -162,7 +254,7 @@ public class RawMessageGeneratorMain {
         return props;
     }
 
-    private static List<String> getEnabledConfigs(Properties commonProps) {
+    static List<String> getEnabledConfigs(Properties commonProps) {
         List<String> enabledConfigs = new ArrayList<>();
         for (String key : commonProps.stringPropertyNames()) {
             if (key.endsWith(".enabled") && Constants.YES.equalsIgnoreCase(commonProps.getProperty(key))) {
@@ -174,7 +266,7 @@ public class RawMessageGeneratorMain {
         return enabledConfigs;
     }
 
-    private static Properties loadPropertiesFromFile(File file) throws IOException {
+    static Properties loadPropertiesFromFile(File file) throws IOException {
         Properties props = new Properties();
         try (FileReader reader = new FileReader(file)) {
             props.load(reader);
@@ -186,7 +278,34 @@ public class RawMessageGeneratorMain {
         return props;
     }
 
-    private static Properties mergeProperties(Properties commonProps, Properties specificProps) {
+    /**
+     * The common properties merged with the first enabled config (by name), for commands that write shards for the
+     * run as a whole (replay, load) and name them after its misdate, batch type and run number.
+     */
+    static Properties shardNamingProperties(Properties commonProps) throws IOException {
+        List<String> enabledConfigs = getEnabledConfigs(commonProps);
+        Collections.sort(enabledConfigs);
+        Properties naming = null;
+        String namingConfig = null;
+        for (String configName : enabledConfigs) {
+            File configFile = new File(Constants.BIN_DIR_PATH, configName + ".properties");
+            if (!configFile.exists()) continue;
+            Properties merged = mergeProperties(commonProps, loadPropertiesFromFile(configFile));
+            if (naming == null) {
+                naming = merged;
+                namingConfig = configName;
+                continue;
+            }
+            for (String key : new String[]{Constants.MIS_DATE, Constants.GENERATOR_BATCH_TYPE, Constants.RUN_NO}) {
+                if (!Objects.equals(naming.getProperty(key), merged.getProperty(key))) {
+                    logger.warn("Configs {} and {} differ in {}; shards are named after {}", namingConfig, configName, key, namingConfig);
+                }
+            }
+        }
+        return naming == null ? commonProps : naming;
+    }
+
+    static Properties mergeProperties(Properties commonProps, Properties specificProps) {
         Properties merged = new Properties();
         merged.putAll(commonProps);
         merged.putAll(specificProps); // Specific overrides common
@@ -195,7 +314,11 @@ public class RawMessageGeneratorMain {
         return merged;
     }
 
-    private static boolean validateConfigProperties(Properties props) {
+    /**
+     * Checks the settings every config needs. A broken packing setup throws instead, since the generator would
+     * otherwise only fail after scanning the watchlists.
+     */
+    static boolean validateConfigProperties(Properties props, File sourceFile) {
         String batchType = props.getProperty(Constants.GENERATOR_BATCH_TYPE);
         if (batchType == null || (!batchType.equalsIgnoreCase("ISO20022") && !batchType.equalsIgnoreCase("NACHA"))) {
             logger.error("Invalid or missing batchtype. Must be 'ISO20022' or 'NACHA'.");
@@ -211,19 +334,23 @@ public class RawMessageGeneratorMain {
             logger.error("Missing runNo.");
             return false;
         }
+        if (MessagePacker.enabled(props)) {
+            MessagePacker.validate(props, RawMessageGenerator.loadJsonFromFile(sourceFile.getPath()));
+        }
         return true;
     }
 
     /**
      * Writes the run details JSONArray to run_details.json file.
      * @param runDetails The JSONArray containing run details for all configs
+     * @param outputFolder The folder to write to (a node folder in partitioned mode)
      */
-    private static void writeRunDetailsToFile(JSONArray runDetails) {
-        if (!Constants.OUTPUT_FOLDER.exists()) {
-            Constants.OUTPUT_FOLDER.mkdirs();
+    private static void writeRunDetailsToFile(JSONArray runDetails, File outputFolder) {
+        if (!outputFolder.exists()) {
+            outputFolder.mkdirs();
         }
 
-        File runDetailsFile = new File(Constants.OUTPUT_FOLDER, Constants.RUN_DETAILS_FILE_NAME);
+        File runDetailsFile = new File(outputFolder, Constants.RUN_DETAILS_FILE_NAME);
         try (java.io.FileWriter writer = new java.io.FileWriter(runDetailsFile)) {
             writer.write(runDetails.toString(2)); // Pretty print with 2-space indentation
             logger.info("Run details written to: {}", runDetailsFile.getAbsolutePath());
@@ -20,6 +20,9 @@ public class ReportRow {
     public String comments;
     public String messageKey;
     public boolean isColumnMismatch;
+    public String ruleType; // Exact / Fuzzy - n ced / STOPWORD / SYNONYM / ERROR, used for aggregation
+    public String stratum; // Sampled generations only: the watchlist stratum of the value
+    public long stratumSize; // and the number of watchlist rows in it, used to weight the summary
 
 public ReportRow(int seqNo, String ruleName, String message, String tag, String sourceInput, String targetInput,
                      String targetColumn, String watchlist, String nUid, long transactionToken, String runSkey,
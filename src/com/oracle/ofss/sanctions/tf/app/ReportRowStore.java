@@ -0,0 +1,238 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Compact, append-only list of report rows for large run skeys.
+ *
+ * <p>Numbers are kept in primitive arrays and low-cardinality strings as {@link StringDictionary} codes. The raw
+ * message and feedback text, which make up most of a row, are written as UTF-8 to a memory-mapped spill file and only
+ * offsets are kept on the heap. {@link #get} materialises a {@link ReportRow} on demand, so writers stream the text
+ * back from the file one row at a time. Appends and reads are safe from multiple threads.
+ */
+public class ReportRowStore extends AbstractList<ReportRow> implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ReportRowStore.class);
+
+    private static final long SEGMENT_SIZE = 64L << 20;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Dictionary-encoded columns
+    private static final int RULE_NAME = 0;
+    private static final int TAG = 1;
+    private static final int TARGET_COLUMN = 2;
+    private static final int WATCHLIST = 3;
+    private static final int RUN_SKEY = 4;
+    private static final int FEEDBACK_STATUS = 5;
+    private static final int TEST_STATUS = 6;
+    private static final int COMMENTS = 7;
+    private static final int RULE_TYPE = 8;
+    private static final int DICT_COLUMNS = 9;
+
+    // Short free-text columns kept as strings
+    private static final int SOURCE_INPUT = 0;
+    private static final int TARGET_INPUT = 1;
+    private static final int NUID = 2;
+    private static final int MESSAGE_KEY = 3;
+    private static final int TEXT_COLUMNS = 4;
+
+    private final File spillFile;
+    private final FileChannel channel;
+    private final StringDictionary dictionary = new StringDictionary();
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private long mappedBytes;
+
+    private int size;
+    private int[] seqNos = new int[INITIAL_CAPACITY];
+    private long[] tokens = new long[INITIAL_CAPACITY];
+    private int[] matchCounts = new int[INITIAL_CAPACITY];
+    private int[] specificMatches = new int[INITIAL_CAPACITY];
+    private boolean[] columnMismatches = new boolean[INITIAL_CAPACITY];
+    private int[][] codes = new int[DICT_COLUMNS][INITIAL_CAPACITY];
+    private String[][] texts = new String[TEXT_COLUMNS][INITIAL_CAPACITY];
+    private int[] spillSegments = new int[INITIAL_CAPACITY];
+    private int[] spillPositions = new int[INITIAL_CAPACITY];
+    private int[] messageLengths = new int[INITIAL_CAPACITY];  // UTF-8 bytes, -1 = null
+    private int[] feedbackLengths = new int[INITIAL_CAPACITY]; // UTF-8 bytes, -1 = null
+
+    public ReportRowStore() throws IOException {
+        this.spillFile = File.createTempFile("report_rows_", ".spill");
+        this.spillFile.deleteOnExit();
+        this.channel = FileChannel.open(spillFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * A row list for one run skey: a {@link ReportRowStore} when analyzer.rowStore=MAPPED, otherwise a plain
+     * ArrayList. Callers should release the list with {@link #release} once the reports are written.
+     */
+    public static List<ReportRow> newRowList(Properties props) throws IOException {
+        if (Constants.ROW_STORE_MAPPED.equalsIgnoreCase(props.getProperty(Constants.ROW_STORE, Constants.ROW_STORE_HEAP))) {
+            return new ReportRowStore();
+        }
+        return new ArrayList<>();
+    }
+
+    public static void release(List<ReportRow> rows) {
+        if (rows instanceof Closeable) {
+            try {
+                ((Closeable) rows).close();
+            } catch (IOException e) {
+                logger.warn("Failed to release report row store: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean add(ReportRow row) {
+        ensureCapacity(size + 1);
+        int i = size;
+        seqNos[i] = row.seqNo;
+        tokens[i] = row.transactionToken;
+        matchCounts[i] = row.matchCount;
+        specificMatches[i] = row.specificMatches;
+        columnMismatches[i] = row.isColumnMismatch;
+        codes[RULE_NAME][i] = dictionary.encode(row.ruleName);
+        codes[TAG][i] = dictionary.encode(row.tag);
+        codes[TARGET_COLUMN][i] = dictionary.encode(row.targetColumn);
+        codes[WATCHLIST][i] = dictionary.encode(row.watchlist);
+        codes[RUN_SKEY][i] = dictionary.encode(row.runSkey);
+        codes[FEEDBACK_STATUS][i] = dictionary.encode(row.feedbackStatus);
+        codes[TEST_STATUS][i] = dictionary.encode(row.testStatus);
+        codes[COMMENTS][i] = dictionary.encode(row.comments);
+        codes[RULE_TYPE][i] = dictionary.encode(row.ruleType);
+        texts[SOURCE_INPUT][i] = row.sourceInput;
+        texts[TARGET_INPUT][i] = row.targetInput;
+        texts[NUID][i] = row.nUid;
+        texts[MESSAGE_KEY][i] = row.messageKey;
+        spill(i, row.message, row.feedback);
+        size++;
+        modCount++;
+        return true;
+    }
+
+    private void spill(int i, String message, String feedback) {
+        byte[] messageBytes = message == null ? null : message.getBytes(StandardCharsets.UTF_8);
+        byte[] feedbackBytes = feedback == null ? null : feedback.getBytes(StandardCharsets.UTF_8);
+        int length = (messageBytes == null ? 0 : messageBytes.length) + (feedbackBytes == null ? 0 : feedbackBytes.length);
+        MappedByteBuffer segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || segment.remaining() < length) {
+            segment = mapSegment(Math.max(SEGMENT_SIZE, length));
+        }
+        spillSegments[i] = segments.size() - 1;
+        spillPositions[i] = segment.position();
+        messageLengths[i] = messageBytes == null ? -1 : messageBytes.length;
+        feedbackLengths[i] = feedbackBytes == null ? -1 : feedbackBytes.length;
+        if (messageBytes != null) segment.put(messageBytes);
+        if (feedbackBytes != null) segment.put(feedbackBytes);
+    }
+
+    private MappedByteBuffer mapSegment(long length) {
+        try {
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, mappedBytes, length);
+            mappedBytes += length;
+            segments.add(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to extend report row spill file " + spillFile, e);
+        }
+    }
+
+    @Override
+    public ReportRow get(int index) {
+        ReportRow row;
+        ByteBuffer segment;
+        int position;
+        int messageLength;
+        int feedbackLength;
+        synchronized (this) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            row = new ReportRow(seqNos[index], decode(RULE_NAME, index), null, decode(TAG, index),
+                    texts[SOURCE_INPUT][index], texts[TARGET_INPUT][index], decode(TARGET_COLUMN, index),
+                    decode(WATCHLIST, index), texts[NUID][index], tokens[index], decode(RUN_SKEY, index),
+                    matchCounts[index], decode(FEEDBACK_STATUS, index), specificMatches[index], null,
+                    decode(TEST_STATUS, index), decode(COMMENTS, index), texts[MESSAGE_KEY][index],
+                    columnMismatches[index]);
+            row.ruleType = decode(RULE_TYPE, index);
+            segment = segments.get(spillSegments[index]).duplicate();
+            position = spillPositions[index];
+            messageLength = messageLengths[index];
+            feedbackLength = feedbackLengths[index];
+        }
+        // Text is decoded outside the lock; the bytes were written before the row became visible
+        segment.position(position);
+        row.message = readString(segment, messageLength);
+        row.feedback = readString(segment, feedbackLength);
+        return row;
+    }
+
+    /**
+     * The message key of a row, without materialising the row.
+     */
+    public synchronized String messageKey(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return texts[MESSAGE_KEY][index];
+    }
+
+    private String decode(int column, int index) {
+        return dictionary.decode(codes[column][index]);
+    }
+
+    private static String readString(ByteBuffer segment, int length) {
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        segment.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= tokens.length) return;
+        int capacity = Math.max(required, tokens.length + (tokens.length >> 1));
+        seqNos = Arrays.copyOf(seqNos, capacity);
+        tokens = Arrays.copyOf(tokens, capacity);
+        matchCounts = Arrays.copyOf(matchCounts, capacity);
+        specificMatches = Arrays.copyOf(specificMatches, capacity);
+        columnMismatches = Arrays.copyOf(columnMismatches, capacity);
+        for (int c = 0; c < DICT_COLUMNS; c++) codes[c] = Arrays.copyOf(codes[c], capacity);
+        for (int c = 0; c < TEXT_COLUMNS; c++) texts[c] = Arrays.copyOf(texts[c], capacity);
+        spillSegments = Arrays.copyOf(spillSegments, capacity);
+        spillPositions = Arrays.copyOf(spillPositions, capacity);
+        messageLengths = Arrays.copyOf(messageLengths, capacity);
+        feedbackLengths = Arrays.copyOf(feedbackLengths, capacity);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        long spilled = 0;
+        for (MappedByteBuffer segment : segments) spilled += segment.position();
+        logger.info("Report row store released: {} rows, {} MB of text spilled to {}", size, spilled >> 20, spillFile.getName());
+        segments.clear();
+        channel.close();
+        if (!spillFile.delete()) {
+            logger.debug("Spill file {} will be removed on exit", spillFile);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination for the stream of {@link ReportRow}s produced by one analysis run.
+ * Sinks are selected with analyzer.reportSinks in common.properties and all receive the same rows, in order.
+ */
+public interface ReportSink extends Closeable {
+
+    void accept(ReportRow row) throws IOException;
+
+    /**
+     * Flushes everything accepted so far and releases the underlying file(s).
+     */
+    @Override
+    void close() throws IOException;
+}
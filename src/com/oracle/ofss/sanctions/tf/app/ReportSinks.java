@@ -0,0 +1,129 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Builds the report sinks listed in analyzer.reportSinks (EXCEL, CSV, JSONL, COLUMNAR; default EXCEL), plus the
+ * failed message key list unless analyzer.failedKeys=N, and fans each row out to all of them.
+ */
+public class ReportSinks implements ReportSink {
+    private static final Logger logger = LoggerFactory.getLogger(ReportSinks.class);
+
+    private final List<ReportSink> sinks;
+
+    private ReportSinks(List<ReportSink> sinks) {
+        this.sinks = sinks;
+    }
+
+    public static ReportSinks open(Properties props, String misDate, String runNo, String batchType, String matchHeader,
+                                   String type, int rowLimit) throws IOException {
+        return open(props, misDate, runNo, batchType, matchHeader, type, rowLimit, null);
+    }
+
+    // source is the full row list the caller will feed through accept, or null when rows are streamed
+    public static ReportSinks open(Properties props, String misDate, String runNo, String batchType, String matchHeader,
+                                   String type, int rowLimit, List<ReportRow> source) throws IOException {
+        String prefix = AnalyzerMain.analysisFilePrefix(misDate, runNo, batchType, type);
+        boolean failuresOnly = Constants.EXCEL_FILTER_FAILURES.equalsIgnoreCase(props.getProperty(Constants.EXCEL_FILTER, Constants.EXCEL_FILTER_ALL));
+
+        List<ReportSink> sinks = new ArrayList<>();
+        try {
+            for (String sinkName : props.getProperty(Constants.REPORT_SINKS, Constants.SINK_EXCEL).split(",")) {
+                sinkName = sinkName.trim().toUpperCase();
+                if (sinkName.isEmpty()) continue;
+                switch (sinkName) {
+                    case Constants.SINK_EXCEL:
+                        sinks.add(new ExcelReportSink(source, failuresOnly, misDate, runNo, batchType, matchHeader, type, rowLimit, props));
+                        break;
+                    case Constants.SINK_CSV:
+                        sinks.add(new CsvReportSink(new File(Constants.OUTPUT_FOLDER, prefix + Constants.CSV_EXT), matchHeader));
+                        break;
+                    case Constants.SINK_JSONL:
+                        sinks.add(new JsonlReportSink(new File(Constants.OUTPUT_FOLDER, prefix + Constants.JSONL_EXT)));
+                        break;
+                    case Constants.SINK_COLUMNAR:
+                        sinks.add(new ColumnarReportSink(new File(Constants.OUTPUT_FOLDER, prefix + Constants.COLUMNAR_EXT)));
+                        break;
+                    default:
+                        logger.warn("Unknown report sink: {}. Skipping.", sinkName);
+                }
+            }
+            if (!Constants.NO.equalsIgnoreCase(props.getProperty(Constants.FAILED_KEYS))) {
+                sinks.add(new FailedKeysSink(new File(Constants.OUTPUT_FOLDER, prefix + Constants.FAILED_KEYS_SUFFIX)));
+            }
+        } catch (IOException e) {
+            new ReportSinks(sinks).close();
+            throw e;
+        }
+        logger.info("Report sinks for {}: {}", type, props.getProperty(Constants.REPORT_SINKS, Constants.SINK_EXCEL));
+        return new ReportSinks(sinks);
+    }
+
+    /**
+     * Whether any configured sink writes the message and feedback text; the failed-keys file does not.
+     */
+    static boolean needsText(Properties props) {
+        for (String sinkName : props.getProperty(Constants.REPORT_SINKS, Constants.SINK_EXCEL).split(",")) {
+            switch (sinkName.trim().toUpperCase()) {
+                case Constants.SINK_EXCEL:
+                case Constants.SINK_CSV:
+                case Constants.SINK_JSONL:
+                case Constants.SINK_COLUMNAR:
+                    return true;
+                default:
+            }
+        }
+        return false;
+    }
+
+    static String[] headers(String matchHeader) {
+        return new String[]{
+                Constants.SEQ_NO,
+                Constants.RULE,
+                Constants.MESSAGE,
+                Constants.TAG,
+                Constants.SOURCE_INPUT,
+                Constants.TARGET_INPUT,
+                Constants.TARGET_COLUMN,
+                Constants.WATCHLIST,
+                Constants.NUID,
+                Constants.TRXN_TOKEN,
+                Constants.RUN_SKEY,
+                Constants.MATCH_COUNT,
+                Constants.FEEDBACK_STATUS,
+                matchHeader,
+                Constants.FEEDBACK,
+                Constants.TEST_STATUS,
+                Constants.COMMENTS,
+                Constants.MESSAGE_KEY
+        };
+    }
+
+    @Override
+    public void accept(ReportRow row) throws IOException {
+        for (ReportSink sink : sinks) {
+            sink.accept(row);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (ReportSink sink : sinks) {
+            try {
+                sink.close();
+            } catch (IOException e) {
+                logger.error("Error closing report sink {}: {}", sink.getClass().getSimpleName(), e.getMessage(), e);
+                if (failure == null) failure = e;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+}
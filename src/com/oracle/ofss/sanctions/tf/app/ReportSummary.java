@@ -0,0 +1,340 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Aggregates report rows per rule name, rule type (Exact / Fuzzy CED level / STOPWORD / SYNONYM), watchlist, tag and
+ * target column: counts, PASS / FAIL / column-mismatch rates with a 95% Wilson interval on the pass rate and a
+ * match-count distribution. A stratified sample takes the same number of rows from every stratum, so rare shapes are
+ * oversampled; rows that carry a stratum are therefore grouped per watchlist and stratum, and the rates and the
+ * interval weight each stratum by its watchlist row count. Counts stay those of the rows analysed. Without strata
+ * (a full generation) every row weighs the same.
+ * Accumulators are not thread-safe; each worker fills its own and they are combined with {@link #merge}.
+ */
+public class ReportSummary {
+    private static final Logger logger = LoggerFactory.getLogger(ReportSummary.class);
+
+    static final String DIM_RULE = "Rule Name";
+    static final String DIM_RULE_TYPE = "Rule Type";
+    static final String DIM_WATCHLIST = "Watchlist";
+    static final String DIM_TAG = "Tag";
+    static final String DIM_TARGET_COLUMN = "Target Column";
+    static final String DIM_RUN_SKEY = "Run Skey";
+
+    // Upper bounds (inclusive) of the match-count buckets; the last bucket is open ended
+    static final int[] MATCH_COUNT_BUCKETS = {0, 1, 5, 10, 50};
+    static final String[] MATCH_COUNT_BUCKET_LABELS = {"0", "1", "2-5", "6-10", "11-50", "51+"};
+    private static final double Z_95 = 1.959964;
+
+    private final Map<String, Map<String, GroupStats>> dimensions = new TreeMap<>();
+    private final GroupStats total = new GroupStats();
+
+    public void accept(ReportRow row, String ruleType) {
+        total.add(row);
+        group(DIM_RULE, row.ruleName).add(row);
+        group(DIM_RULE_TYPE, ruleType).add(row);
+        group(DIM_WATCHLIST, row.watchlist).add(row);
+        group(DIM_TAG, row.tag).add(row);
+        group(DIM_TARGET_COLUMN, row.targetColumn).add(row);
+    }
+
+    /**
+     * Takes back a row added by {@link #accept}, for a token that is scored again. Min and max match counts keep
+     * their extremes, since they cannot be undone without the other rows.
+     */
+    public void retract(ReportRow row) {
+        total.remove(row);
+        group(DIM_RULE, row.ruleName).remove(row);
+        group(DIM_RULE_TYPE, row.ruleType).remove(row);
+        group(DIM_WATCHLIST, row.watchlist).remove(row);
+        group(DIM_TAG, row.tag).remove(row);
+        group(DIM_TARGET_COLUMN, row.targetColumn).remove(row);
+    }
+
+    public ReportSummary merge(ReportSummary other) {
+        total.merge(other.total);
+        for (Map.Entry<String, Map<String, GroupStats>> dimension : other.dimensions.entrySet()) {
+            for (Map.Entry<String, GroupStats> entry : dimension.getValue().entrySet()) {
+                group(dimension.getKey(), entry.getKey()).merge(entry.getValue());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Merges the summary of one run skey and records its totals under the Run Skey dimension.
+     */
+    public ReportSummary mergeRun(String runSkey, ReportSummary other) {
+        merge(other);
+        group(DIM_RUN_SKEY, runSkey).merge(other.total);
+        return this;
+    }
+
+    public long getCount() {
+        return total.count;
+    }
+
+    private GroupStats group(String dimension, String value) {
+        return dimensions.computeIfAbsent(dimension, k -> new TreeMap<>())
+                .computeIfAbsent(value == null || value.isEmpty() ? "(blank)" : value, k -> new GroupStats());
+    }
+
+    // The rows of one watchlist stratum within a group, and the watchlist rows the stratum holds
+    static class Stratum {
+        long size;
+        long count;
+        long pass;
+        long fail;
+        long columnMismatch;
+
+        void add(ReportRow row, int sign) {
+            count += sign;
+            if (Constants.PASS.equalsIgnoreCase(row.testStatus)) pass += sign;
+            else fail += sign;
+            if (row.isColumnMismatch) columnMismatch += sign;
+        }
+
+        void merge(Stratum other) {
+            size = Math.max(size, other.size);
+            count += other.count;
+            pass += other.pass;
+            fail += other.fail;
+            columnMismatch += other.columnMismatch;
+        }
+    }
+
+    static class GroupStats {
+        long count;
+        long pass;
+        long fail;
+        long columnMismatch;
+        long matchCountSum;
+        int minMatchCount = Integer.MAX_VALUE;
+        int maxMatchCount;
+        final long[] matchCountBuckets = new long[MATCH_COUNT_BUCKET_LABELS.length];
+        // Per watchlist and stratum; rows without one share the "" stratum, which weighs its own row count
+        final Map<String, Stratum> strata = new HashMap<>();
+
+        void add(ReportRow row) {
+            stratum(row).add(row, 1);
+            count++;
+            if (Constants.PASS.equalsIgnoreCase(row.testStatus)) pass++;
+            else fail++;
+            if (row.isColumnMismatch) columnMismatch++;
+            matchCountSum += row.matchCount;
+            minMatchCount = Math.min(minMatchCount, row.matchCount);
+            maxMatchCount = Math.max(maxMatchCount, row.matchCount);
+            matchCountBuckets[bucket(row.matchCount)]++;
+        }
+
+        void remove(ReportRow row) {
+            stratum(row).add(row, -1);
+            count--;
+            if (Constants.PASS.equalsIgnoreCase(row.testStatus)) pass--;
+            else fail--;
+            if (row.isColumnMismatch) columnMismatch--;
+            matchCountSum -= row.matchCount;
+            matchCountBuckets[bucket(row.matchCount)]--;
+        }
+
+        private static int bucket(int matchCount) {
+            int bucket = 0;
+            while (bucket < MATCH_COUNT_BUCKETS.length && matchCount > MATCH_COUNT_BUCKETS[bucket]) bucket++;
+            return bucket;
+        }
+
+        void merge(GroupStats other) {
+            count += other.count;
+            pass += other.pass;
+            fail += other.fail;
+            columnMismatch += other.columnMismatch;
+            matchCountSum += other.matchCountSum;
+            minMatchCount = Math.min(minMatchCount, other.minMatchCount);
+            maxMatchCount = Math.max(maxMatchCount, other.maxMatchCount);
+            for (int i = 0; i < matchCountBuckets.length; i++) {
+                matchCountBuckets[i] += other.matchCountBuckets[i];
+            }
+            for (Map.Entry<String, Stratum> entry : other.strata.entrySet()) {
+                strata.computeIfAbsent(entry.getKey(), k -> new Stratum()).merge(entry.getValue());
+            }
+        }
+
+        private Stratum stratum(ReportRow row) {
+            String key = row.stratum == null || row.stratum.isEmpty() ? "" : row.watchlist + "|" + row.stratum;
+            Stratum stratum = strata.computeIfAbsent(key, k -> new Stratum());
+            stratum.size = Math.max(stratum.size, row.stratumSize);
+            return stratum;
+        }
+
+        private static double weight(Stratum stratum) {
+            return stratum.size > 0 ? stratum.size : stratum.count;
+        }
+
+        /**
+         * The stratum-weighted share of rows counted by {@code field}: each stratum's own share, weighted by its
+         * watchlist rows.
+         */
+        double fraction(ToLongFunction<Stratum> field) {
+            double weights = 0;
+            double sum = 0;
+            for (Stratum stratum : strata.values()) {
+                if (stratum.count <= 0) continue;
+                weights += weight(stratum);
+                sum += weight(stratum) * field.applyAsLong(stratum) / stratum.count;
+            }
+            return weights == 0 ? 0 : sum / weights;
+        }
+
+        double rate(ToLongFunction<Stratum> field) {
+            return percent(fraction(field));
+        }
+
+        /**
+         * Wilson score interval of the weighted pass rate at 95%, as {low, high} percentages; it stays inside 0-100
+         * and is usable on small counts, unlike the normal approximation. The stratified variance sets the effective
+         * sample size, which is the row count when every stratum weighs its own rows.
+         */
+        double[] passRateInterval() {
+            if (count == 0) return new double[]{0, 0};
+            double p = fraction(stratum -> stratum.pass);
+            double weights = 0;
+            for (Stratum stratum : strata.values()) {
+                if (stratum.count > 0) weights += weight(stratum);
+            }
+            double variance = 0;
+            for (Stratum stratum : strata.values()) {
+                if (stratum.count <= 0) continue;
+                double share = weight(stratum) / weights;
+                double ph = (double) stratum.pass / stratum.count;
+                variance += share * share * ph * (1 - ph) / stratum.count;
+            }
+            double n = variance > 0 ? p * (1 - p) / variance : count;
+            double z2n = Z_95 * Z_95 / n;
+            double centre = (p + z2n / 2) / (1 + z2n);
+            double halfWidth = Z_95 * Math.sqrt(p * (1 - p) / n + z2n / (4.0 * n)) / (1 + z2n);
+            return new double[]{percent(Math.max(0, centre - halfWidth)), percent(Math.min(1, centre + halfWidth))};
+        }
+
+        private static double percent(double fraction) {
+            return Math.round(fraction * 10000.0) / 100.0;
+        }
+
+        JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("count", count);
+            json.put("pass", pass);
+            json.put("fail", fail);
+            json.put("columnMismatch", columnMismatch);
+            json.put("passRate", rate(stratum -> stratum.pass));
+            double[] interval = passRateInterval();
+            json.put("passRateLow", interval[0]);
+            json.put("passRateHigh", interval[1]);
+            json.put("failRate", rate(stratum -> stratum.fail));
+            json.put("columnMismatchRate", rate(stratum -> stratum.columnMismatch));
+            json.put("avgMatchCount", count == 0 ? 0 : Math.round(matchCountSum * 100.0 / count) / 100.0);
+            json.put("minMatchCount", count == 0 ? 0 : minMatchCount);
+            json.put("maxMatchCount", maxMatchCount);
+            JSONObject distribution = new JSONObject();
+            for (int i = 0; i < matchCountBuckets.length; i++) {
+                distribution.put(MATCH_COUNT_BUCKET_LABELS[i], matchCountBuckets[i]);
+            }
+            json.put("matchCountDistribution", distribution);
+            return json;
+        }
+    }
+
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("total", total.toJson());
+        for (Map.Entry<String, Map<String, GroupStats>> dimension : dimensions.entrySet()) {
+            JSONArray groups = new JSONArray();
+            for (Map.Entry<String, GroupStats> entry : dimension.getValue().entrySet()) {
+                JSONObject group = entry.getValue().toJson();
+                group.put("value", entry.getKey());
+                groups.put(group);
+            }
+            json.put(dimension.getKey(), groups);
+        }
+        return json;
+    }
+
+    /**
+     * Writes {@code <prefix>_SUMMARY.json} and {@code <prefix>_SUMMARY.xlsx} to the output folder.
+     */
+    public void write(String prefix, String sheetName) throws IOException {
+        File jsonFile = new File(Constants.OUTPUT_FOLDER, prefix + "_SUMMARY" + Constants.JSON_EXT);
+        try (FileWriter writer = new FileWriter(jsonFile)) {
+            writer.write(toJson().toString(2));
+        }
+        logger.info("Summary written to: {}", jsonFile.getAbsolutePath());
+
+        String[] headers = {"Dimension", "Value", "Count", "Pass", "Fail", "Column Mismatch", "Pass %", "Fail %",
+                "Column Mismatch %", "Avg Match Count", "Min Match Count", "Max Match Count", "Pass % Low (95%)", "Pass % High (95%)"};
+        File xlsxFile = new File(Constants.OUTPUT_FOLDER, prefix + "_SUMMARY" + Constants.XLSX_EXT);
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            Sheet sheet = wb.createSheet(sheetName);
+            Font boldFont = wb.createFont();
+            boldFont.setBold(true);
+            CellStyle headerStyle = wb.createCellStyle();
+            headerStyle.setFont(boldFont);
+
+            Row headerRow = sheet.createRow(0);
+            for (int j = 0; j < headers.length + MATCH_COUNT_BUCKET_LABELS.length; j++) {
+                String header = j < headers.length ? headers[j] : "Matches " + MATCH_COUNT_BUCKET_LABELS[j - headers.length];
+                headerRow.createCell(j).setCellValue(header);
+                headerRow.getCell(j).setCellStyle(headerStyle);
+            }
+            int rowNum = 1;
+            rowNum = writeRow(sheet, rowNum, "Total", "", total);
+            for (Map.Entry<String, Map<String, GroupStats>> dimension : dimensions.entrySet()) {
+                for (Map.Entry<String, GroupStats> entry : dimension.getValue().entrySet()) {
+                    rowNum = writeRow(sheet, rowNum, dimension.getKey(), entry.getKey(), entry.getValue());
+                }
+            }
+            try (FileOutputStream fos = new FileOutputStream(xlsxFile)) {
+                wb.write(fos);
+            }
+        }
+        logger.info("Summary report generated at: {}", xlsxFile.getAbsolutePath());
+    }
+
+    private static int writeRow(Sheet sheet, int rowNum, String dimension, String value, GroupStats stats) {
+        Row row = sheet.createRow(rowNum);
+        row.createCell(0).setCellValue(dimension);
+        row.createCell(1).setCellValue(value);
+        row.createCell(2).setCellValue(stats.count);
+        row.createCell(3).setCellValue(stats.pass);
+        row.createCell(4).setCellValue(stats.fail);
+        row.createCell(5).setCellValue(stats.columnMismatch);
+        row.createCell(6).setCellValue(stats.rate(stratum -> stratum.pass));
+        row.createCell(7).setCellValue(stats.rate(stratum -> stratum.fail));
+        row.createCell(8).setCellValue(stats.rate(stratum -> stratum.columnMismatch));
+        row.createCell(9).setCellValue(stats.count == 0 ? 0 : (double) stats.matchCountSum / stats.count);
+        row.createCell(10).setCellValue(stats.count == 0 ? 0 : stats.minMatchCount);
+        row.createCell(11).setCellValue(stats.maxMatchCount);
+        double[] interval = stats.passRateInterval();
+        row.createCell(12).setCellValue(interval[0]);
+        row.createCell(13).setCellValue(interval[1]);
+        for (int i = 0; i < stats.matchCountBuckets.length; i++) {
+            row.createCell(14 + i).setCellValue(stats.matchCountBuckets[i]);
+        }
+        return rowNum + 1;
+    }
+}
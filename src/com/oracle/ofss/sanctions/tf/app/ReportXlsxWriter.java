@@ -0,0 +1,307 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes the analysis report for a chunk of {@link ReportRow}s straight into an .xlsx zip without going through POI.
+ * Low-cardinality columns (rule, tag, target column, watchlist, run skey, statuses, comments) go through the
+ * shared-strings table; message, inputs, N_UID, feedback and message key are written as inline strings.
+ * Cell styles match the POI writer: bold on bright green for PASS, yellow for PASS with a column mismatch, red otherwise.
+ */
+public class ReportXlsxWriter {
+    private static final Logger logger = LoggerFactory.getLogger(ReportXlsxWriter.class);
+
+    // Excel's hard limit on text in a single cell, enforced the same way POI does
+    private static final int MAX_CELL_TEXT = 32767;
+
+    private static final String[] COLUMN_REFS = {
+            "A", "B", "C", "D", "E", "F", "G", "H", "I", "J", "K", "L", "M", "N", "O", "P", "Q", "R"
+    };
+
+    // cellXfs indexes in styles.xml
+    private static final int STYLE_GREEN = 1;
+    private static final int STYLE_RED = 2;
+    private static final int STYLE_YELLOW = 3;
+
+    private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+    private static final String MAIN_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String REL_NS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    private final Map<String, Integer> sharedStringIndex = new HashMap<>();
+    private final List<String> sharedStrings = new ArrayList<>();
+    private int sharedStringRefs;
+
+    private ReportXlsxWriter() {
+    }
+
+    public static void write(List<ReportRow> chunk, File outputFile, String matchHeader, String sheetName) throws IOException {
+        new ReportXlsxWriter().writeWorkbook(chunk, outputFile, matchHeader, sheetName);
+        logger.info("Excel report generated at: {}", outputFile.getAbsolutePath());
+    }
+
+    private void writeWorkbook(List<ReportRow> chunk, File outputFile, String matchHeader, String sheetName) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile), 1 << 16))) {
+            Writer out = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+
+            putEntry(zip, out, "[Content_Types].xml", XML_HEADER +
+                    "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">" +
+                    "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>" +
+                    "<Default Extension=\"xml\" ContentType=\"application/xml\"/>" +
+                    "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>" +
+                    "<Override PartName=\"/xl/worksheets/sheet1.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>" +
+                    "<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>" +
+                    "<Override PartName=\"/xl/sharedStrings.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sharedStrings+xml\"/>" +
+                    "</Types>");
+            putEntry(zip, out, "_rels/.rels", XML_HEADER +
+                    "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">" +
+                    "<Relationship Id=\"rId1\" Type=\"" + REL_NS + "/officeDocument\" Target=\"xl/workbook.xml\"/>" +
+                    "</Relationships>");
+            putEntry(zip, out, "xl/workbook.xml", XML_HEADER +
+                    "<workbook xmlns=\"" + MAIN_NS + "\" xmlns:r=\"" + REL_NS + "\">" +
+                    "<sheets><sheet name=\"" + escape(sheetName) + "\" sheetId=\"1\" r:id=\"rId1\"/></sheets>" +
+                    "</workbook>");
+            putEntry(zip, out, "xl/_rels/workbook.xml.rels", XML_HEADER +
+                    "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">" +
+                    "<Relationship Id=\"rId1\" Type=\"" + REL_NS + "/worksheet\" Target=\"worksheets/sheet1.xml\"/>" +
+                    "<Relationship Id=\"rId2\" Type=\"" + REL_NS + "/styles\" Target=\"styles.xml\"/>" +
+                    "<Relationship Id=\"rId3\" Type=\"" + REL_NS + "/sharedStrings\" Target=\"sharedStrings.xml\"/>" +
+                    "</Relationships>");
+            putEntry(zip, out, "xl/styles.xml", XML_HEADER +
+                    "<styleSheet xmlns=\"" + MAIN_NS + "\">" +
+                    "<fonts count=\"2\">" +
+                    "<font><sz val=\"11\"/><name val=\"Calibri\"/><family val=\"2\"/></font>" +
+                    "<font><b/><sz val=\"11\"/><name val=\"Calibri\"/><family val=\"2\"/></font>" +
+                    "</fonts>" +
+                    "<fills count=\"5\">" +
+                    "<fill><patternFill patternType=\"none\"/></fill>" +
+                    "<fill><patternFill patternType=\"gray125\"/></fill>" +
+                    "<fill><patternFill patternType=\"solid\"><fgColor indexed=\"11\"/><bgColor indexed=\"64\"/></patternFill></fill>" +
+                    "<fill><patternFill patternType=\"solid\"><fgColor indexed=\"10\"/><bgColor indexed=\"64\"/></patternFill></fill>" +
+                    "<fill><patternFill patternType=\"solid\"><fgColor indexed=\"13\"/><bgColor indexed=\"64\"/></patternFill></fill>" +
+                    "</fills>" +
+                    "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>" +
+                    "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>" +
+                    "<cellXfs count=\"4\">" +
+                    "<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>" +
+                    "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"2\" borderId=\"0\" xfId=\"0\" applyFont=\"1\" applyFill=\"1\"/>" +
+                    "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"3\" borderId=\"0\" xfId=\"0\" applyFont=\"1\" applyFill=\"1\"/>" +
+                    "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"4\" borderId=\"0\" xfId=\"0\" applyFont=\"1\" applyFill=\"1\"/>" +
+                    "</cellXfs>" +
+                    "<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>" +
+                    "</styleSheet>");
+
+            zip.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+            writeSheet(out, chunk, matchHeader);
+            out.flush();
+            zip.closeEntry();
+
+            zip.putNextEntry(new ZipEntry("xl/sharedStrings.xml"));
+            out.write(XML_HEADER);
+            out.write("<sst xmlns=\"" + MAIN_NS + "\" count=\"" + sharedStringRefs + "\" uniqueCount=\"" + sharedStrings.size() + "\">");
+            for (String value : sharedStrings) {
+                out.write("<si><t xml:space=\"preserve\">");
+                writeEscaped(out, value);
+                out.write("</t></si>");
+            }
+            out.write("</sst>");
+            out.flush();
+            zip.closeEntry();
+        }
+    }
+
+    private void writeSheet(Writer out, List<ReportRow> chunk, String matchHeader) throws IOException {
+        out.write(XML_HEADER);
+        out.write("<worksheet xmlns=\"" + MAIN_NS + "\"><sheetData>");
+
+        String[] headers = {
+                Constants.SEQ_NO,
+                Constants.RULE,
+                Constants.MESSAGE,
+                Constants.TAG,
+                Constants.SOURCE_INPUT,
+                Constants.TARGET_INPUT,
+                Constants.TARGET_COLUMN,
+                Constants.WATCHLIST,
+                Constants.NUID,
+                Constants.TRXN_TOKEN,
+                Constants.RUN_SKEY,
+                Constants.MATCH_COUNT,
+                Constants.FEEDBACK_STATUS,
+                matchHeader,
+                Constants.FEEDBACK,
+                Constants.TEST_STATUS,
+                Constants.COMMENTS,
+                Constants.MESSAGE_KEY
+        };
+        out.write("<row r=\"1\">");
+        for (int j = 0; j < headers.length; j++) {
+            sharedCell(out, j, 1, headers[j], 0);
+        }
+        out.write("</row>");
+
+        int rowNum = 1;
+        for (ReportRow rr : chunk) {
+            int r = rowNum + 1;
+            out.write("<row r=\"");
+            out.write(Integer.toString(r));
+            out.write("\">");
+            numberCell(out, 0, r, rowNum);
+            sharedCell(out, 1, r, rr.ruleName, 0);
+            inlineCell(out, 2, r, rr.message);
+            sharedCell(out, 3, r, rr.tag, 0);
+            inlineCell(out, 4, r, rr.sourceInput);
+            inlineCell(out, 5, r, rr.targetInput);
+            sharedCell(out, 6, r, rr.targetColumn, 0);
+            sharedCell(out, 7, r, rr.watchlist, 0);
+            inlineCell(out, 8, r, rr.nUid);
+            numberCell(out, 9, r, rr.transactionToken);
+            sharedCell(out, 10, r, rr.runSkey, 0);
+            numberCell(out, 11, r, rr.matchCount);
+            sharedCell(out, 12, r, rr.feedbackStatus, 0);
+            numberCell(out, 13, r, rr.specificMatches);
+            inlineCell(out, 14, r, rr.feedback);
+
+            int statusStyle;
+            if (Constants.PASS.equalsIgnoreCase(rr.testStatus)) {
+                statusStyle = rr.isColumnMismatch ? STYLE_YELLOW : STYLE_GREEN;
+            } else {
+                statusStyle = STYLE_RED;
+            }
+            sharedCell(out, 15, r, rr.testStatus, statusStyle);
+            sharedCell(out, 16, r, rr.comments, 0);
+            inlineCell(out, 17, r, rr.messageKey);
+            out.write("</row>");
+            rowNum++;
+        }
+        out.write("</sheetData></worksheet>");
+    }
+
+    private static void numberCell(Writer out, int col, int row, long value) throws IOException {
+        out.write("<c r=\"");
+        out.write(COLUMN_REFS[col]);
+        out.write(Integer.toString(row));
+        out.write("\"><v>");
+        out.write(Long.toString(value));
+        out.write("</v></c>");
+    }
+
+    private void sharedCell(Writer out, int col, int row, String value, int style) throws IOException {
+        if (value == null) {
+            // Keep the status fill even when there is no text, as POI does for a styled blank cell
+            if (style != 0) {
+                out.write("<c r=\"" + COLUMN_REFS[col] + row + "\" s=\"" + style + "\"/>");
+            }
+            return;
+        }
+        checkLength(value);
+        Integer index = sharedStringIndex.get(value);
+        if (index == null) {
+            index = sharedStrings.size();
+            sharedStrings.add(value);
+            sharedStringIndex.put(value, index);
+        }
+        sharedStringRefs++;
+        out.write("<c r=\"");
+        out.write(COLUMN_REFS[col]);
+        out.write(Integer.toString(row));
+        if (style != 0) {
+            out.write("\" s=\"");
+            out.write(Integer.toString(style));
+        }
+        out.write("\" t=\"s\"><v>");
+        out.write(Integer.toString(index));
+        out.write("</v></c>");
+    }
+
+    private static void inlineCell(Writer out, int col, int row, String value) throws IOException {
+        if (value == null) return;
+        checkLength(value);
+        out.write("<c r=\"");
+        out.write(COLUMN_REFS[col]);
+        out.write(Integer.toString(row));
+        out.write("\" t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+        writeEscaped(out, value);
+        out.write("</t></is></c>");
+    }
+
+    private static void checkLength(String value) {
+        if (value.length() > MAX_CELL_TEXT) {
+            throw new IllegalArgumentException("The maximum length of cell contents (text) is " + MAX_CELL_TEXT + " characters");
+        }
+    }
+
+    private static void putEntry(ZipOutputStream zip, Writer out, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        out.write(content);
+        out.flush();
+        zip.closeEntry();
+    }
+
+    private static String escape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '&': sb.append("&amp;"); break;
+                case '<': sb.append("&lt;"); break;
+                case '>': sb.append("&gt;"); break;
+                case '"': sb.append("&quot;"); break;
+                default: sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Escapes XML markup and drops characters XML 1.0 cannot carry (control characters other than tab/CR/LF,
+     * unpaired surrogates, U+FFFE and U+FFFF).
+     */
+    private static void writeEscaped(Writer out, String value) throws IOException {
+        int len = value.length();
+        int runStart = 0;
+        for (int i = 0; i < len; i++) {
+            char ch = value.charAt(i);
+            String replacement;
+            if (ch == '&') {
+                replacement = "&amp;";
+            } else if (ch == '<') {
+                replacement = "&lt;";
+            } else if (ch == '>') {
+                replacement = "&gt;";
+            } else if (ch < 0x20 && ch != '\t' && ch != '\n' && ch != '\r') {
+                replacement = "";
+            } else if (ch == '\uFFFE' || ch == '\uFFFF') {
+                replacement = "";
+            } else if (Character.isHighSurrogate(ch)) {
+                if (i + 1 < len && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    i++;
+                    continue;
+                }
+                replacement = "";
+            } else if (Character.isLowSurrogate(ch)) {
+                replacement = "";
+            } else {
+                continue;
+            }
+            out.write(value, runStart, i - runStart);
+            out.write(replacement);
+            runStart = i + 1;
+        }
+        out.write(value, runStart, len - runStart);
+    }
+}
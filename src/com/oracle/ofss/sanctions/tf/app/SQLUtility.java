@@ -15,9 +15,32 @@ import com.zaxxer.hikari.HikariDataSource;
 
 public class SQLUtility {
     private static final Logger logger = LoggerFactory.getLogger(SQLUtility.class);
-    private static HikariDataSource dataSource;
+    private static volatile HikariDataSource dataSource;
 
-    static {
+    private static HikariDataSource dataSource() {
+        if (dataSource == null) {
+            synchronized (SQLUtility.class) {
+                if (dataSource == null) {
+                    dataSource = createDataSource();
+                }
+            }
+        }
+        return dataSource;
+    }
+
+    /**
+     * Replaces the pool built from common.properties, e.g. with one over an embedded database in the macro benchmark.
+     * The previous pool, if any, is closed.
+     */
+    public static synchronized void useDataSource(HikariDataSource replacement) {
+        HikariDataSource previous = dataSource;
+        dataSource = replacement;
+        if (previous != null && previous != replacement) {
+            previous.close();
+        }
+    }
+
+    private static HikariDataSource createDataSource() {
         try {
             Properties props = new Properties();
             try (FileReader reader = new FileReader(Constants.COMMON_CONFIG_FILE_PATH)) {
@@ -46,8 +69,14 @@ public class SQLUtility {
             config.addDataSourceProperty("oracle.jdbc.ReadTimeout", "60000");
             config.addDataSourceProperty("oracle.net.CONNECT_TIMEOUT", "10000");
             config.addDataSourceProperty("oracle.jdbc.defaultNChar", "true");
+            // Inline raw message / feedback CLOBs (up to 32 KB) with the row data instead of one LOB round-trip per value
+            config.addDataSourceProperty("oracle.jdbc.defaultLobPrefetchSize",
+                    props.getProperty(Constants.LOB_PREFETCH_SIZE, String.valueOf(Constants.DEFAULT_LOB_PREFETCH_SIZE)));
+            // Per-connection cache of parsed statements; pooled connections keep it, so repeated queries skip the parse
+            config.addDataSourceProperty("oracle.jdbc.implicitStatementCacheSize",
+                    props.getProperty(Constants.STATEMENT_CACHE_SIZE, String.valueOf(Constants.DEFAULT_STATEMENT_CACHE_SIZE)));
 
-            dataSource = new HikariDataSource(config);
+            return new HikariDataSource(config);
         } catch (Exception e) {
             logger.error("Error initializing connection pool: {}", e.getMessage(), e);
             throw new RuntimeException(e);
@@ -55,8 +84,12 @@ public class SQLUtility {
     }
 
     public static Connection getDbConnection() throws Exception {
-        Connection connection = dataSource.getConnection();
+        Connection connection = dataSource().getConnection();
         logger.info(Constants.CONNECTION_ESTABLISHED);
         return connection;
     }
+
+    public static int getMaximumPoolSize() {
+        return dataSource().getMaximumPoolSize();
+    }
 }
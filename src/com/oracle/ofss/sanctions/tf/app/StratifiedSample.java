@@ -0,0 +1,139 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.Function;
+
+/**
+ * Seeded, reproducible sample of a generation for smoke runs (generator.sample.perStratum &gt; 0). Each watchlist is
+ * queried on its own, and its rows are stratified by the length bucket and word count of the first
+ * replace.targetColumn. In every stratum the perStratum rows with the lowest {@code ORA_HASH(TO_CHAR(N_UID), max, seed)} are
+ * kept, so the same seed picks the same rows and rare shapes of name are covered as well as common ones. Every
+ * message records its stratum and the number of watchlist rows in it (additionalData stratum and stratumSize), so
+ * the analyzer can weight the sample back to the watchlist. The fuzzy, stopword and synonym stages then keep at most generator.sample.variantsPerType variants per value, again
+ * chosen by a seeded hash; the exact value is always kept.
+ */
+public class StratifiedSample {
+    // Upper bounds (inclusive) of the value length buckets; longer values fall into a last bucket
+    static final int[] LENGTH_BUCKETS = {10, 20, 40};
+    private static final int MAX_WORD_BUCKET = 4;
+    // Watchlist rows in the stratum of each sampled row, as returned by sampleQuery
+    static final String STRATUM_ROWS_COLUMN = "SAMPLE_STRATUM_ROWS";
+
+    private final int perStratum;
+    private final long seed;
+    private final int variantsPerType;
+    private final String stratifyColumn;
+
+    private StratifiedSample(int perStratum, long seed, int variantsPerType, String stratifyColumn) {
+        if (stratifyColumn == null || stratifyColumn.trim().isEmpty()) {
+            throw new IllegalArgumentException("Sampling needs " + Constants.REPLACE_TARGET_COLUMN + "[1] to stratify on");
+        }
+        this.perStratum = perStratum;
+        this.seed = seed;
+        this.variantsPerType = Math.max(1, variantsPerType);
+        this.stratifyColumn = stratifyColumn.trim();
+    }
+
+    /**
+     * The sample configured in the properties, or null for a full generation.
+     */
+    public static StratifiedSample from(Properties props) {
+        int perStratum = Integer.parseInt(props.getProperty(Constants.SAMPLE_PER_STRATUM, "0").trim());
+        if (perStratum <= 0) return null;
+        return new StratifiedSample(perStratum,
+                Long.parseLong(props.getProperty(Constants.SAMPLE_SEED, String.valueOf(Constants.DEFAULT_SAMPLE_SEED)).trim()),
+                Integer.parseInt(props.getProperty(Constants.SAMPLE_VARIANTS_PER_TYPE, String.valueOf(Constants.DEFAULT_SAMPLE_VARIANTS_PER_TYPE)).trim()),
+                props.getProperty(Constants.REPLACE_TARGET_COLUMN + "[1]"));
+    }
+
+    public int perStratum() {
+        return perStratum;
+    }
+
+    public String stratifyColumn() {
+        return stratifyColumn;
+    }
+
+    /**
+     * The length bucket of a value, from 1 to {@code LENGTH_BUCKETS.length + 1}.
+     */
+    static int lengthBucket(String value) {
+        for (int i = 0; i < LENGTH_BUCKETS.length; i++) {
+            if (value.length() <= LENGTH_BUCKETS[i]) return i + 1;
+        }
+        return LENGTH_BUCKETS.length + 1;
+    }
+
+    /**
+     * The stratum of a value of the stratify column, computed as {@link #sampleQuery} partitions it in SQL.
+     */
+    public String stratum(String value) {
+        if (value == null) return "";
+        String trimmed = value.trim();
+        int words = Math.min(trimmed.length() - trimmed.replace(" ", "").length() + 1, MAX_WORD_BUCKET);
+        return lengthBucket(value) + ":" + words;
+    }
+
+    private String lengthBucketSql() {
+        StringBuilder lengthBucket = new StringBuilder("CASE");
+        for (int i = 0; i < LENGTH_BUCKETS.length; i++) {
+            lengthBucket.append(" WHEN LENGTH(").append(stratifyColumn).append(") <= ").append(LENGTH_BUCKETS[i]).append(" THEN ").append(i + 1);
+        }
+        return lengthBucket.append(" ELSE ").append(LENGTH_BUCKETS.length + 1).append(" END").toString();
+    }
+
+    private String wordBucketSql() {
+        return "LEAST(LENGTH(TRIM(" + stratifyColumn + ")) - LENGTH(REPLACE(TRIM(" + stratifyColumn + "), ' ', '')) + 1, " + MAX_WORD_BUCKET + ")";
+    }
+
+    /**
+     * Wraps the watchlist query so the database counts the rows of every stratum, as STRATUM_LENGTH, STRATUM_WORDS and
+     * STRATUM_ROWS. {@link #stratum} of a value is STRATUM_LENGTH:STRATUM_WORDS; rows without a value, which the
+     * sample also partitions together, have a null STRATUM_WORDS.
+     */
+    public String strataQuery(String query) {
+        return "select " + lengthBucketSql() + " STRATUM_LENGTH, " + wordBucketSql() + " STRATUM_WORDS, count(*) STRATUM_ROWS from ("
+                + query + ") s group by " + lengthBucketSql() + ", " + wordBucketSql();
+    }
+
+    /**
+     * Wraps the watchlist query so the database ranks the rows of each stratum and returns the first perStratum.
+     */
+    public String sampleQuery(String query) {
+        String partition = "PARTITION BY " + lengthBucketSql() + ", " + wordBucketSql();
+        String rank = "ROW_NUMBER() OVER (" + partition
+                + " ORDER BY ORA_HASH(TO_CHAR(" + Constants.NUID + "), 4294967295, " + (seed & 0xFFFFFFFFL) + "), " + Constants.NUID + ")";
+        return "select * from (select s.*, " + rank + " SAMPLE_RN, COUNT(*) OVER (" + partition + ") " + STRATUM_ROWS_COLUMN
+                + " from (" + query + ") s) where SAMPLE_RN <= " + perStratum;
+    }
+
+    /**
+     * At most variantsPerType of the variants, the ones whose key has the lowest seeded hash.
+     */
+    public <T> List<T> pick(List<T> variants, Function<T, String> key) {
+        if (variants.size() <= variantsPerType) return variants;
+        List<T> ranked = new ArrayList<>(variants);
+        ranked.sort(Comparator.comparingLong(variant -> hash(key.apply(variant))));
+        return ranked.subList(0, variantsPerType);
+    }
+
+    // String.hashCode is fixed by the language spec, so the pick does not depend on the JVM
+    private long hash(String key) {
+        long h = seed * 0x9E3779B97F4A7C15L + (key == null ? 0 : key.hashCode());
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    public int variantsPerType() {
+        return variantsPerType;
+    }
+
+    @Override
+    public String toString() {
+        return perStratum + " rows per stratum of " + stratifyColumn + ", " + variantsPerType + " variants per type, seed " + seed;
+    }
+}
@@ -0,0 +1,34 @@
+package com.oracle.ofss.sanctions.tf.app;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary encoding for low-cardinality report strings (rule name, tag, watchlist, statuses, comments).
+ * Codes are dense and assigned in first-seen order; {@code null} is encoded as -1.
+ */
+public class StringDictionary {
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    public synchronized int encode(String value) {
+        if (value == null) return -1;
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            values.add(value);
+            codes.put(value, code);
+        }
+        return code;
+    }
+
+    public synchronized String decode(int code) {
+        return code < 0 ? null : values.get(code);
+    }
+
+    public synchronized int size() {
+        return values.size();
+    }
+}